@@ -20,10 +20,12 @@ import com.koloboke.collect.map.hash.HashObjObjMaps;
 
 import io.github.udaysagar2177.maps.OffHeapMap;
 import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.SwissOffHeapMap;
 import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
 import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
 import io.github.udaysagar2177.maps.sedeserializers.ByteArrByteArrEntrySeDeserializer;
 import io.github.udaysagar2177.maps.sedeserializers.ByteArrHolder;
+import io.github.udaysagar2177.maps.varlen.VarLenOffHeapMap;
 import net.openhft.chronicle.map.ChronicleMap;
 
 /**
@@ -49,6 +51,8 @@ public class ByteArrByteArrBenchmark {
     private ChronicleMap<byte[], byte[]> chronicleMap;
     private OffHeapMap<ByteArrHolder, ByteArrHolder> offHeapMap;
     private OffHeapMap<ByteArrHolder, ByteArrHolder> mmapOffHeapMap;
+    private OffHeapMap<ByteArrHolder, ByteArrHolder> swissOffHeapMap;
+    private VarLenOffHeapMap varLenOffHeapMap;
 
     private byte[] key = new byte[KEY_LENGTH];
     private byte[] value = new byte[VALUE_LENGTH];
@@ -74,10 +78,17 @@ public class ByteArrByteArrBenchmark {
                 (capacityInBytes) -> new MmapMemoryResource("/tmp", capacityInBytes),
                 () -> new ByteArrHolder(KEY_LENGTH),
                 () -> new ByteArrHolder(VALUE_LENGTH));
+        swissOffHeapMap = new SwissOffHeapMap<>(SIZE, 0.875f,
+                new ByteArrByteArrEntrySeDeserializer(KEY_LENGTH, VALUE_LENGTH),
+                DirectMemoryResource::new, () -> new ByteArrHolder(KEY_LENGTH),
+                () -> new ByteArrHolder(VALUE_LENGTH));
+        varLenOffHeapMap = new VarLenOffHeapMap(SIZE, 0.66f, DirectMemoryResource::new);
     }
 
     @TearDown
     public void tearDown() throws Exception {
+        varLenOffHeapMap.close();
+        swissOffHeapMap.close();
         mmapOffHeapMap.close();
         offHeapMap.close();
         chronicleMap.close();
@@ -104,6 +115,16 @@ public class ByteArrByteArrBenchmark {
         return benchmarkGetOnOffHeapMap(mmapOffHeapMap);
     }
 
+    @Benchmark
+    public ByteArrHolder testGetOnSwissOffHeapMap() {
+        return benchmarkGetOnOffHeapMap(swissOffHeapMap);
+    }
+
+    @Benchmark
+    public byte[] testGetOnVarLenOffHeapMap() {
+        return varLenOffHeapMap.get(getBytes(key, KEY_LENGTH));
+    }
+
     private ByteArrHolder benchmarkGetOnOffHeapMap(
             OffHeapMap<ByteArrHolder, ByteArrHolder> offHeapMap) {
         getBytes(keyHolder.getBytes(), KEY_LENGTH);
@@ -144,6 +165,22 @@ public class ByteArrByteArrBenchmark {
         return benchmarkPutOnOffHeapMap(mmapOffHeapMap);
     }
 
+    @Benchmark
+    public ByteArrHolder testPutOnSwissOffHeapMap() {
+        return benchmarkPutOnOffHeapMap(swissOffHeapMap);
+    }
+
+    @Benchmark
+    public byte[] testPutOnVarLenOffHeapMap() {
+        varLenOffHeapMap.clear();
+        for (int i = 0; i < SIZE; i++) {
+            getBytes(key, KEY_LENGTH);
+            getBytes(value, VALUE_LENGTH);
+            varLenOffHeapMap.put(key, value);
+        }
+        return varLenOffHeapMap.get(getBytes(key, KEY_LENGTH));
+    }
+
     private ByteArrHolder benchmarkPutOnOffHeapMap(
             OffHeapMap<ByteArrHolder, ByteArrHolder> offHeapMap) {
         offHeapMap.clear();
@@ -0,0 +1,142 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.primitive.IntIntOffHeapMap;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.RandomUtils;
+
+/**
+ * Benchmarks batched lookups with {@link OffHeapMap#getAll} against looping over
+ * {@link OffHeapMap#get} for the same keys. Half of the looked up keys are present. Each
+ * invocation looks up {@link #BATCH_SIZE} keys, taken in turn from a precomputed pool of random
+ * keys so that key generation isn't measured.
+ *
+ * Tables of 50M entries don't fit in the CPU caches, so every lookup is a cache and TLB miss
+ * and the batched lookups should show the biggest gains there. 50M is the largest size that
+ * {@link IntIntOffHeapMap} holds at a load factor of 0.75, and the runs need a few GB of off-heap
+ * memory.
+ *
+ * @author uday
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class GetAllBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int KEY_POOL_SIZE = 1 << 20;
+
+    @Param({"1000000", "50000000"})
+    private int size;
+
+    private OffHeapMap<IntHolder, IntHolder> offHeapMap;
+    private IntIntOffHeapMap intIntOffHeapMap;
+
+    private int[] keyPool;
+    private int keyPoolOffset;
+    private IntHolder[] keyHolders = new IntHolder[BATCH_SIZE];
+    private IntHolder[] valueHolders = new IntHolder[BATCH_SIZE];
+    private boolean[] found = new boolean[BATCH_SIZE];
+    private int[] keys = new int[BATCH_SIZE];
+    private int[] values = new int[BATCH_SIZE];
+
+    @Setup
+    public void setup() {
+        offHeapMap = new OffHeapMapImpl<>(size, 0.75f, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+        intIntOffHeapMap = new IntIntOffHeapMap(size, 0.75f, DirectMemoryResource::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        for (int i = 0; i < size; i++) {
+            // keys in [1, 2 * size) so that about half of the looked up keys are present.
+            int random = 1 + RandomUtils.randInt(2 * size - 1);
+            offHeapMap.put(key.setInt(random), value.setInt(random), null);
+            intIntOffHeapMap.put(random, random);
+        }
+        keyPool = new int[KEY_POOL_SIZE];
+        for (int i = 0; i < KEY_POOL_SIZE; i++) {
+            keyPool[i] = 1 + RandomUtils.randInt(2 * size - 1);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            keyHolders[i] = new IntHolder();
+            valueHolders[i] = new IntHolder();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        intIntOffHeapMap.close();
+        offHeapMap.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int testGetOnOffHeapMap() {
+        nextKeys();
+        int numFound = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (offHeapMap.get(keyHolders[i], valueHolders[i]) != null) {
+                numFound++;
+            }
+        }
+        return numFound;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int testGetAllOnOffHeapMap() {
+        nextKeys();
+        return offHeapMap.getAll(keyHolders, valueHolders, found);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int testGetOnIntIntOffHeapMap() {
+        nextKeys();
+        int sum = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += intIntOffHeapMap.get(keys[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int testGetAllOnIntIntOffHeapMap() {
+        nextKeys();
+        return intIntOffHeapMap.getAll(keys, values);
+    }
+
+    private void nextKeys() {
+        if (keyPoolOffset + BATCH_SIZE > KEY_POOL_SIZE) {
+            keyPoolOffset = 0;
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int key = keyPool[keyPoolOffset + i];
+            keys[i] = key;
+            keyHolders[i].setInt(key);
+        }
+        keyPoolOffset += BATCH_SIZE;
+    }
+}
@@ -21,6 +21,7 @@ import io.github.udaysagar2177.maps.OffHeapMap;
 import io.github.udaysagar2177.maps.OffHeapMapImpl;
 import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
 import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
+import io.github.udaysagar2177.maps.primitive.IntIntOffHeapMap;
 import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
 import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
 import io.github.udaysagar2177.maps.utils.RandomUtils;
@@ -56,6 +57,7 @@ public class IntIntMapBenchmark {
     private ChronicleMap<IntValue, IntValue> chronicleMap;
     private OffHeapMap<IntHolder, IntHolder> offHeapMap;
     private OffHeapMap<IntHolder, IntHolder> mmapOffHeapMap;
+    private IntIntOffHeapMap intIntOffHeapMap;
 
     private IntValue key = Values.newHeapInstance(IntValue.class);
     private IntValue value = Values.newHeapInstance(IntValue.class);
@@ -75,10 +77,12 @@ public class IntIntMapBenchmark {
         mmapOffHeapMap = new OffHeapMapImpl<>(SIZE, 0.66f, new IntIntEntrySeDeserializer(),
                 (capacityInBytes) -> new MmapMemoryResource("/tmp", capacityInBytes),
                 IntHolder::new, IntHolder::new);
+        intIntOffHeapMap = new IntIntOffHeapMap(SIZE, 0.66f, DirectMemoryResource::new);
     }
 
     @TearDown
     public void tearDown() throws Exception {
+        intIntOffHeapMap.close();
         mmapOffHeapMap.close();
         offHeapMap.close();
         chronicleMap.close();
@@ -105,6 +109,11 @@ public class IntIntMapBenchmark {
         return benchmarkGetOnOffHeapMap(mmapOffHeapMap);
     }
 
+    @Benchmark
+    public int testGetOnIntIntOffHeapMap() {
+        return intIntOffHeapMap.get(1 + RandomUtils.randInt(100000000));
+    }
+
     private IntHolder benchmarkGetOnOffHeapMap(OffHeapMap<IntHolder, IntHolder> offHeapMap) {
         keyHolder.setInt(1 + RandomUtils.randInt(100000000));
         return offHeapMap.get(keyHolder, valueHolder);
@@ -144,6 +153,17 @@ public class IntIntMapBenchmark {
         return benchmarkPutOnOffHeapMap(mmapOffHeapMap);
     }
 
+    @Benchmark
+    public int testPutOnIntIntOffHeapMap() {
+        intIntOffHeapMap.clear();
+        int size = SIZE;
+        for (int i = 0; i < size; i++) {
+            int random = RandomUtils.randInt(100000000);
+            intIntOffHeapMap.put(random, random);
+        }
+        return intIntOffHeapMap.get(RandomUtils.randInt(100000000));
+    }
+
     private IntHolder benchmarkPutOnOffHeapMap(OffHeapMap<IntHolder, IntHolder> offHeapMap) {
         offHeapMap.clear();
         int size = SIZE;
@@ -157,6 +177,29 @@ public class IntIntMapBenchmark {
         return offHeapMap.get(keyHolder, valueHolder);
     }
 
+    /**
+     * Grows a map from the smallest size to {@link #SIZE} entries, so that the time is dominated
+     * by rehash operations.
+     */
+    @Benchmark
+    public int testPutWithRehashOnOffHeapMap() throws Exception {
+        OffHeapMap<IntHolder, IntHolder> growingMap = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        try {
+            int size = SIZE;
+            for (int i = 0; i < size; i++) {
+                int random = RandomUtils.randInt(100000000);
+                keyHolder.setInt(random);
+                valueHolder.setInt(random);
+                growingMap.put(keyHolder, valueHolder, null);
+            }
+            return growingMap.size();
+        } finally {
+            growingMap.close();
+        }
+    }
+
     public static void main(String[] args) {
         IntIntMapBenchmark mapBenchmark = new IntIntMapBenchmark();
         mapBenchmark.setup();
@@ -0,0 +1,102 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.ProbingScheme;
+import io.github.udaysagar2177.maps.RehashMode;
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.RandomUtils;
+
+/**
+ * Sweeps load factors for each {@link ProbingScheme} to show the trade-off between off-heap
+ * memory and lookup latency. Every run uses a Hash Table of {@link #HASH_TABLE_SIZE} slots (16MB
+ * for int-int entries), filled up to the load factor, so the memory stays the same while the
+ * no. of entries grows with the load factor. The memory needed for a given no. of entries is
+ * therefore proportional to 1 / loadFactor.
+ *
+ * @author uday
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class LoadFactorBenchmark {
+
+    private static final int HASH_TABLE_SIZE = 1 << 21;
+    private static final int KEY_POOL_SIZE = 1 << 16;
+
+    @Param({"0.5", "0.6", "0.7", "0.8", "0.9", "0.95"})
+    private float loadFactor;
+
+    @Param({"LINEAR", "ROBIN_HOOD"})
+    private ProbingScheme probingScheme;
+
+    private OffHeapMapImpl<IntHolder, IntHolder> offHeapMap;
+    private int[] presentKeys = new int[KEY_POOL_SIZE];
+    private int[] missingKeys = new int[KEY_POOL_SIZE];
+    private int keyIndex;
+    private IntHolder keyHolder = new IntHolder();
+    private IntHolder valueHolder = new IntHolder();
+
+    @Setup
+    public void setup() {
+        int numEntries = (int) (HASH_TABLE_SIZE * (double) loadFactor);
+        offHeapMap = new OffHeapMapImpl<>(numEntries, loadFactor, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new,
+                RehashMode.ALL_AT_ONCE, probingScheme);
+        // present keys are positive and missing keys are negative. One slot below the threshold
+        // is left, so that testPutRemove never triggers a rehash.
+        while (offHeapMap.size() < numEntries - 1) {
+            int random = 1 + RandomUtils.randInt(Integer.MAX_VALUE - 1);
+            offHeapMap.put(keyHolder.setInt(random), valueHolder.setInt(random), null);
+            presentKeys[offHeapMap.size() % KEY_POOL_SIZE] = random;
+        }
+        for (int i = 0; i < KEY_POOL_SIZE; i++) {
+            missingKeys[i] = -1 - RandomUtils.randInt(Integer.MAX_VALUE - 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        offHeapMap.close();
+    }
+
+    @Benchmark
+    public IntHolder testGetPresentKey() {
+        keyIndex = (keyIndex + 1) & (KEY_POOL_SIZE - 1);
+        return offHeapMap.get(keyHolder.setInt(presentKeys[keyIndex]), valueHolder);
+    }
+
+    @Benchmark
+    public IntHolder testGetMissingKey() {
+        keyIndex = (keyIndex + 1) & (KEY_POOL_SIZE - 1);
+        return offHeapMap.get(keyHolder.setInt(missingKeys[keyIndex]), valueHolder);
+    }
+
+    @Benchmark
+    public IntHolder testPutRemove() {
+        keyIndex = (keyIndex + 1) & (KEY_POOL_SIZE - 1);
+        keyHolder.setInt(missingKeys[keyIndex]);
+        offHeapMap.put(keyHolder, valueHolder, null);
+        return offHeapMap.remove(keyHolder, valueHolder);
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.memory.SparseMmapMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.RandomUtils;
+
+/**
+ * Compares {@link DirectMemoryResource}, which zeroes every page up front, with
+ * {@link SparseMmapMemoryResource}, which gets zeroed pages from the kernel on first touch.
+ * {@link #testCreateMap()} measures the construction of an empty {@link OffHeapMapImpl} sized for
+ * {@link #size} entries, and {@link #testGet()} the random gets on a map filled with that many
+ * entries, which shows whether the lazily committed pages slow down the probes.
+ *
+ * @author uday
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class MemoryResourceBenchmark {
+
+    @Param({"DIRECT", "SPARSE_MMAP"})
+    private String memoryResource;
+
+    @Param({"10000000", "100000000"})
+    private int size;
+
+    private Function<Integer, MemoryResource> memoryResourceFactory;
+    private OffHeapMap<IntHolder, IntHolder> offHeapMap;
+    private IntHolder key = new IntHolder();
+    private IntHolder value = new IntHolder();
+
+    @Setup
+    public void setup() {
+        memoryResourceFactory = memoryResource.equals("DIRECT") ? DirectMemoryResource::new
+                : SparseMmapMemoryResource::new;
+        offHeapMap = createMap();
+        for (int i = 0; i < size; i++) {
+            int random = 1 + RandomUtils.randInt(Integer.MAX_VALUE - 1);
+            offHeapMap.put(key.setInt(random), value.setInt(random), null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        offHeapMap.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public int testCreateMap() throws Exception {
+        OffHeapMap<IntHolder, IntHolder> map = createMap();
+        int size = map.size();
+        map.close();
+        return size;
+    }
+
+    @Benchmark
+    public IntHolder testGet() {
+        return offHeapMap.get(key.setInt(RandomUtils.randInt(Integer.MAX_VALUE)), value);
+    }
+
+    private OffHeapMap<IntHolder, IntHolder> createMap() {
+        return new OffHeapMapImpl<>(size, 0.66f, new IntIntEntrySeDeserializer(),
+                memoryResourceFactory, IntHolder::new, IntHolder::new);
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.SegmentedOffHeapMap;
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.RandomUtils;
+
+/**
+ * Benchmarks a {@link SegmentedOffHeapMap} shared by several threads against an
+ * {@link OffHeapMapImpl} guarded by a single lock. Run with {@code -t} to change the no. of
+ * threads and see how each map scales with cores. Keys are drawn from a {@link ThreadLocalRandom},
+ * so that the threads don't contend on a shared {@link java.util.Random}.
+ *
+ * @author uday
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class SegmentedOffHeapMapBenchmark {
+
+    private static final int SIZE = 1_000_000;
+    private static final int KEY_RANGE = 2 * SIZE;
+
+    private OffHeapMap<IntHolder, IntHolder> synchronizedMap;
+    private OffHeapMap<IntHolder, IntHolder> segmentedMap;
+
+    @State(Scope.Thread)
+    public static class Flyweights {
+        private final IntHolder key = new IntHolder();
+        private final IntHolder value = new IntHolder();
+    }
+
+    @Setup
+    public void setup() {
+        synchronizedMap = new OffHeapMapImpl<>(SIZE, 0.66f, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+        segmentedMap = new SegmentedOffHeapMap<>(SIZE, 0.66f, 64,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        for (int i = 0; i < SIZE; i++) {
+            int random = 1 + RandomUtils.randInt(KEY_RANGE);
+            synchronizedMap.put(key.setInt(random), value.setInt(random), null);
+            segmentedMap.put(key, value, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        segmentedMap.close();
+        synchronizedMap.close();
+    }
+
+    @Benchmark
+    public IntHolder testGetOnSynchronizedMap(Flyweights flyweights) {
+        flyweights.key.setInt(1 + ThreadLocalRandom.current().nextInt(KEY_RANGE));
+        synchronized (synchronizedMap) {
+            return synchronizedMap.get(flyweights.key, flyweights.value);
+        }
+    }
+
+    @Benchmark
+    public IntHolder testGetOnSegmentedMap(Flyweights flyweights) {
+        flyweights.key.setInt(1 + ThreadLocalRandom.current().nextInt(KEY_RANGE));
+        return segmentedMap.get(flyweights.key, flyweights.value);
+    }
+
+    @Benchmark
+    public IntHolder testPutOnSynchronizedMap(Flyweights flyweights) {
+        int random = 1 + ThreadLocalRandom.current().nextInt(KEY_RANGE);
+        flyweights.key.setInt(random);
+        flyweights.value.setInt(random);
+        synchronized (synchronizedMap) {
+            return synchronizedMap.put(flyweights.key, flyweights.value, null);
+        }
+    }
+
+    @Benchmark
+    public IntHolder testPutOnSegmentedMap(Flyweights flyweights) {
+        int random = 1 + ThreadLocalRandom.current().nextInt(KEY_RANGE);
+        flyweights.key.setInt(random);
+        flyweights.value.setInt(random);
+        return segmentedMap.put(flyweights.key, flyweights.value, null);
+    }
+}
@@ -0,0 +1,324 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.koloboke.collect.hash.HashConfig;
+import com.koloboke.collect.map.IntIntMap;
+import com.koloboke.collect.map.hash.HashIntIntMaps;
+
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import net.openhft.chronicle.core.values.IntValue;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.values.Values;
+
+/**
+ * Measures the latency distribution (p50/p99/p99.9 with {@link Mode#SampleTime}) of a single
+ * map operation over a matrix of workloads, for {@link OffHeapMap} impls in comparison to Koloboke
+ * and Chronicle maps.
+ *
+ * The map is filled with {@link #size} random keys before the measurement. The operations and
+ * their keys are precomputed into arrays, so that random number generation isn't measured and
+ * every implementation sees the same sequence:
+ * <ul>
+ * <li>{@link #hitRatio} is the fraction of gets whose key is present. Missing keys are never
+ * inserted, so the ratio holds for the whole run.</li>
+ * <li>{@link #keyDistribution} picks present keys uniformly or with a Zipfian skew, where a few
+ * hot keys take most of the operations.</li>
+ * <li>{@link #operationMix} gives the percentages of gets, puts and removes. Puts update present
+ * keys, and every remove is followed by a put of its key, so the size and the hit ratio stay the
+ * same. These puts are sampled on their own and count towards the puts of the mix, so there must
+ * be at least as many puts as removes.</li>
+ * </ul>
+ *
+ * The full matrix is large, so pick the parts of interest with {@code -p}, for example
+ * {@code -p implementation=OFF_HEAP,KOLOBOKE -p operationMix=90_5_5}. {@link #loadFactor} is the
+ * load factor that the {@link OffHeapMap} impls and Koloboke grow at. Chronicle maps don't have
+ * one and ignore it.
+ *
+ * @author uday
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class WorkloadBenchmark {
+
+    private static final int NUM_OPERATIONS = 1 << 20;
+    private static final byte GET = 0;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    @Param({"OFF_HEAP", "MMAP_OFF_HEAP", "KOLOBOKE", "CHRONICLE"})
+    private String implementation;
+
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    @Param({"0.5", "0.66", "0.8"})
+    private float loadFactor;
+
+    @Param({"0.5", "1.0"})
+    private double hitRatio;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private String keyDistribution;
+
+    /**
+     * Percentages of gets, puts and removes.
+     */
+    @Param({"100_0_0", "90_5_5", "50_25_25"})
+    private String operationMix;
+
+    private MapOperations map;
+    private final byte[] operations = new byte[NUM_OPERATIONS];
+    private final int[] keys = new int[NUM_OPERATIONS];
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        map = createMap();
+        // present keys are positive, missing keys are negative.
+        int[] presentKeys = new int[size];
+        for (int i = 0; i < size; ) {
+            int key = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            if (!map.containsKey(key)) {
+                map.put(key, key);
+                presentKeys[i++] = key;
+            }
+        }
+        String[] percentages = operationMix.split("_");
+        int getPercentage = Integer.parseInt(percentages[0]);
+        int putPercentage = Integer.parseInt(percentages[1]);
+        int removePercentage = Integer.parseInt(percentages[2]);
+        if (putPercentage < removePercentage) {
+            throw new IllegalArgumentException("Every remove needs a put of its key: "
+                    + operationMix);
+        }
+        ZipfianGenerator zipfianGenerator = keyDistribution.equals("ZIPFIAN")
+                ? new ZipfianGenerator(size, ZipfianGenerator.DEFAULT_THETA, random) : null;
+        // a remove draws its put along, so removes are drawn as pairs out of the other puts.
+        for (int i = 0; i < NUM_OPERATIONS; ) {
+            int percentile = random.nextInt(100 - removePercentage);
+            if (percentile < getPercentage) {
+                operations[i] = GET;
+                keys[i++] = random.nextDouble() < hitRatio
+                        ? presentKey(presentKeys, zipfianGenerator, random)
+                        : -1 - random.nextInt(Integer.MAX_VALUE - 1);
+            } else if (percentile < getPercentage + putPercentage - removePercentage) {
+                operations[i] = PUT;
+                keys[i++] = presentKey(presentKeys, zipfianGenerator, random);
+            } else if (i + 1 < NUM_OPERATIONS) {
+                int key = presentKey(presentKeys, zipfianGenerator, random);
+                operations[i] = REMOVE;
+                keys[i++] = key;
+                operations[i] = PUT;
+                keys[i++] = key;
+            }
+        }
+    }
+
+    private int presentKey(int[] presentKeys, ZipfianGenerator zipfianGenerator, Random random) {
+        int rank = zipfianGenerator != null ? (int) zipfianGenerator.next() : random.nextInt(size);
+        return presentKeys[rank];
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        map.close();
+    }
+
+    @Benchmark
+    public int testOperation() {
+        int i = index;
+        index = (i + 1) & (NUM_OPERATIONS - 1);
+        int key = keys[i];
+        switch (operations[i]) {
+            case GET:
+                return map.get(key);
+            case PUT:
+                map.put(key, i);
+                return i;
+            default:
+                map.remove(key);
+                return i;
+        }
+    }
+
+    private MapOperations createMap() {
+        switch (implementation) {
+            case "OFF_HEAP":
+                return new OffHeapMapOperations(new OffHeapMapImpl<>(size, loadFactor,
+                        new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                        IntHolder::new, IntHolder::new));
+            case "MMAP_OFF_HEAP":
+                return new OffHeapMapOperations(new OffHeapMapImpl<>(size, loadFactor,
+                        new IntIntEntrySeDeserializer(),
+                        (capacityInBytes) -> new MmapMemoryResource("/tmp", capacityInBytes),
+                        IntHolder::new, IntHolder::new));
+            case "KOLOBOKE":
+                // grows once the load factor is exceeded, to half of it like a doubled table.
+                return new KolobokeMapOperations(HashIntIntMaps.getDefaultFactory()
+                        .withHashConfig(HashConfig.fromLoads(loadFactor / 4, loadFactor / 2,
+                                loadFactor))
+                        .newMutableMap(size));
+            case "CHRONICLE":
+                return new ChronicleMapOperations(ChronicleMap
+                        .of(IntValue.class, IntValue.class)
+                        .name("workload")
+                        .entries(size)
+                        .putReturnsNull(true).create());
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    /**
+     * The operations of the benchmark on int keys and values, so that each map is used with its
+     * own idioms. Only one implementation is loaded per fork, so the calls stay monomorphic.
+     */
+    private interface MapOperations extends AutoCloseable {
+
+        int get(int key);
+
+        boolean containsKey(int key);
+
+        void put(int key, int value);
+
+        void remove(int key);
+    }
+
+    private static final class OffHeapMapOperations implements MapOperations {
+
+        private final OffHeapMap<IntHolder, IntHolder> map;
+        private final IntHolder key = new IntHolder();
+        private final IntHolder value = new IntHolder();
+
+        private OffHeapMapOperations(OffHeapMap<IntHolder, IntHolder> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int get(int key) {
+            IntHolder value = map.get(this.key.setInt(key), this.value);
+            return value == null ? 0 : value.getInt();
+        }
+
+        @Override
+        public boolean containsKey(int key) {
+            return map.get(this.key.setInt(key), value) != null;
+        }
+
+        @Override
+        public void put(int key, int value) {
+            map.put(this.key.setInt(key), this.value.setInt(value), null);
+        }
+
+        @Override
+        public void remove(int key) {
+            map.remove(this.key.setInt(key), null);
+        }
+
+        @Override
+        public void close() throws Exception {
+            map.close();
+        }
+    }
+
+    private static final class KolobokeMapOperations implements MapOperations {
+
+        private final IntIntMap map;
+
+        private KolobokeMapOperations(IntIntMap map) {
+            this.map = map;
+        }
+
+        @Override
+        public int get(int key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public void put(int key, int value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void remove(int key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class ChronicleMapOperations implements MapOperations {
+
+        private final ChronicleMap<IntValue, IntValue> map;
+        private final IntValue key = Values.newHeapInstance(IntValue.class);
+        private final IntValue value = Values.newHeapInstance(IntValue.class);
+
+        private ChronicleMapOperations(ChronicleMap<IntValue, IntValue> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int get(int key) {
+            this.key.setValue(key);
+            IntValue value = map.getUsing(this.key, this.value);
+            return value == null ? 0 : value.getValue();
+        }
+
+        @Override
+        public boolean containsKey(int key) {
+            this.key.setValue(key);
+            return map.containsKey(this.key);
+        }
+
+        @Override
+        public void put(int key, int value) {
+            this.key.setValue(key);
+            this.value.setValue(value);
+            map.put(this.key, this.value);
+        }
+
+        @Override
+        public void remove(int key) {
+            this.key.setValue(key);
+            map.remove(this.key);
+        }
+
+        @Override
+        public void close() {
+            map.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.udaysagar2177.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates ranks in {@code [0, numItems)} following a Zipfian distribution, where rank 0 is the
+ * most frequent. Uses the constant time method of Gray et al., "Quickly Generating Billion-Record
+ * Synthetic Databases", as YCSB does, which only needs an O(numItems) setup.
+ *
+ * @author uday
+ */
+public class ZipfianGenerator {
+
+    /**
+     * The skew that YCSB uses by default.
+     */
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final Random random;
+    private final long numItems;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    public ZipfianGenerator(long numItems, double theta, Random random) {
+        if (numItems < 2) {
+            throw new IllegalArgumentException("numItems must be at least 2");
+        }
+        this.random = random;
+        this.numItems = numItems;
+        this.theta = theta;
+        this.alpha = 1 / (1 - theta);
+        this.zetaN = zeta(numItems, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / numItems, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    public long next() {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(numItems - 1,
+                (long) (numItems * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
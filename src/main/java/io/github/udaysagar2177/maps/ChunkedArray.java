@@ -0,0 +1,142 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import net.openhft.chronicle.core.OS;
+import sun.misc.Unsafe;
+
+/**
+ * A fixed length off-heap array of elements of the same size, spread over {@link MemoryResource}s
+ * of the same power of two no. of elements, in the same way as the Hash Table of
+ * {@link OffHeapMapImpl}, so that it can hold more than 2<sup>31</sup> bytes.
+ *
+ * @author uday
+ */
+final class ChunkedArray implements AutoCloseable {
+
+    private static final int MAX_MEMORY_RESOURCE_CAPACITY = Integer.MAX_VALUE;
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    private final List<MemoryResource> memoryResources;
+    private final long[] addresses;
+    private final long length;
+    private final int elementSize;
+    private final int chunkShift;
+    private final long chunkMask;
+
+    ChunkedArray(long length, int elementSize,
+                 Function<Integer, MemoryResource> memoryResourceFactory) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative");
+        }
+        this.length = length;
+        this.elementSize = elementSize;
+        int numElementsPerChunk = Integer.highestOneBit(MAX_MEMORY_RESOURCE_CAPACITY / elementSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(numElementsPerChunk);
+        this.chunkMask = numElementsPerChunk - 1;
+        // at least one element, so that even an empty array has an address.
+        long remaining = Math.max(1, length);
+        int numChunks = (int) ((remaining + chunkMask) >>> chunkShift);
+        this.memoryResources = new ArrayList<>(numChunks);
+        this.addresses = new long[numChunks];
+        try {
+            for (int i = 0; i < numChunks; i++) {
+                int numElements = (int) Math.min(numElementsPerChunk, remaining);
+                MemoryResource memoryResource =
+                        memoryResourceFactory.apply(numElements * elementSize);
+                memoryResources.add(memoryResource);
+                addresses[i] = memoryResource.getAddress();
+                remaining -= numElements;
+            }
+        } catch (RuntimeException | Error e) {
+            closeQuietly(e);
+            throw e;
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * @return no. of bytes held by this array.
+     */
+    long sizeInBytes() {
+        long sizeInBytes = 0;
+        for (MemoryResource memoryResource : memoryResources) {
+            sizeInBytes += memoryResource.capacityInBytes();
+        }
+        return sizeInBytes;
+    }
+
+    /**
+     * Returns the address of the element at the given index.
+     */
+    long address(long index) {
+        return addresses[(int) (index >>> chunkShift)] + (index & chunkMask) * elementSize;
+    }
+
+    long getLong(long index) {
+        return OS.memory().readLong(address(index));
+    }
+
+    void setLong(long index, long value) {
+        OS.memory().writeLong(address(index), value);
+    }
+
+    /**
+     * Writes the elements to the given channel at its position, chunk by chunk, so that an array
+     * created with a {@link MemoryResource} factory that maps consecutive regions of the written
+     * bytes holds the same elements. An empty array writes the one element it holds.
+     */
+    void writeTo(FileChannel fileChannel) throws IOException {
+        long sizeInBytes = Math.max(1, length) * elementSize;
+        byte[] bytes = new byte[(int) Math.min(COPY_BUFFER_SIZE, sizeInBytes)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long remaining = Math.max(1, length);
+        for (long address : addresses) {
+            long numElements = Math.min(chunkMask + 1, remaining);
+            long chunkSizeInBytes = numElements * elementSize;
+            for (long offset = 0; offset < chunkSizeInBytes; offset += bytes.length) {
+                int numBytes = (int) Math.min(bytes.length, chunkSizeInBytes - offset);
+                OS.memory().copyMemory(address + offset, bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET,
+                        numBytes);
+                buffer.clear();
+                buffer.limit(numBytes);
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+            }
+            remaining -= numElements;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (MemoryResource memoryResource : memoryResources) {
+            try {
+                memoryResource.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        memoryResources.clear();
+    }
+
+    private void closeQuietly(Throwable throwable) {
+        for (MemoryResource memoryResource : memoryResources) {
+            try {
+                memoryResource.close();
+            } catch (Exception e) {
+                throwable.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.udaysagar2177.maps;
+
+/**
+ * A cursor over the entries of an {@link OffHeapMap}. The cursor reads each entry into the same
+ * key and value flyweights, so that no objects are allocated while moving over the entries.
+ *
+ * A cursor is positioned before the first entry when it's created. Modifying the map while a
+ * cursor is in use, other than through {@link #remove()}, leaves the cursor in an undefined
+ * state.
+ *
+ * @param <K>
+ *         a flyweight object that holds the key data.
+ * @param <V>
+ *         a flyweight object that holds the value data.
+ * @author uday
+ */
+public interface Cursor<K, V> {
+
+    /**
+     * Moves the cursor to the next entry.
+     *
+     * @return true if the cursor moved to an entry, false if there are no more entries.
+     */
+    boolean next();
+
+    /**
+     * Returns the key of the current entry. The returned flyweight is overwritten by the next
+     * call to {@link #next()}.
+     *
+     * @return the key of the current entry.
+     * @throws IllegalStateException
+     *         if the cursor isn't positioned on an entry
+     */
+    K key();
+
+    /**
+     * Returns the value of the current entry. The returned flyweight is overwritten by the next
+     * call to {@link #next()}.
+     *
+     * @return the value of the current entry.
+     * @throws IllegalStateException
+     *         if the cursor isn't positioned on an entry
+     */
+    V value();
+
+    /**
+     * Removes the current entry from the map. The cursor must be moved with {@link #next()}
+     * before the next call to this method.
+     *
+     * @throws IllegalStateException
+     *         if the cursor isn't positioned on an entry
+     */
+    void remove();
+}
@@ -0,0 +1,764 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.memory.ReadOnlyMmapMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.SeededEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.FileUtils;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+
+/**
+ * An immutable {@link OffHeapMap} for data that is built once and then only read. The entries are
+ * packed densely, without empty slots, and each key is mapped to the index of its entry by a
+ * minimal perfect hash function, so a lookup compares exactly one entry and the footprint is the
+ * raw size of the entries plus about 3.5 bits per key.
+ *
+ * The minimal perfect hash function follows BBHash (Limasset et al., "Fast and scalable minimal
+ * perfect hashing for massive key sets"). It is a cascade of bit arrays. At each level, the keys
+ * that are left are hashed into a bit array of {@code gamma} bits per key, and the keys that land
+ * alone on a bit set it and stay at that level, while the ones that collide move on to the next
+ * level. The index of a key is the rank of its bit among the set bits of all levels, computed from
+ * a count sampled every 512 bits. Keys whose {@link EntrySeDeserializer#hash64(Object)} collide
+ * with another key can't be separated by any level, so they, and the very rare keys that are left
+ * after the last level, are looked up in a small linear probing table of entry indices instead.
+ *
+ * Keys that aren't in the map also map to an entry, or to no level, so the key of the entry is
+ * always compared before its value is returned.
+ *
+ * Every modification throws {@link UnsupportedOperationException}. The map is safe to read from
+ * any no. of threads once it's built.
+ *
+ * A frozen map can be published into a file with {@link #publish(File)}, and mapped read only by
+ * any no. of processes with {@link #open(File, EntrySeDeserializer, Supplier, Supplier)}, which
+ * then share its pages in the page cache. {@link PublishedOffHeapMap} follows the file as new
+ * images are published over it.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class FrozenOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    /**
+     * No. of bits per remaining key at each level. Larger values need fewer levels, so lookups
+     * are faster, at the cost of more bits per key.
+     */
+    public static final double DEFAULT_GAMMA = 2.0;
+
+    private static final int MAX_NUM_LEVELS = 32;
+    private static final int WORDS_PER_RANK_SAMPLE_SHIFT = 3;
+    private static final long NO_INDEX = -1;
+    private static final int IMAGE_MAGIC = 0x41555246;
+    private static final int IMAGE_VERSION = 1;
+    private static final int IMAGE_PREAMBLE_LENGTH = Integer.BYTES * 3;
+    private static final int IMAGE_ALIGNMENT = Long.BYTES;
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final Supplier<K> keyFactory;
+    private final Supplier<V> valueFactory;
+    private final long size;
+    private final List<ChunkedArray> levelBits;
+    private final List<ChunkedArray> levelRanks;
+    private final long[] levelSizes;
+    private final long[] levelRankBases;
+    private final ChunkedArray fallbackIndices;
+    private final long fallbackModulo;
+    private final ChunkedArray entries;
+
+    private FrozenOffHeapMap(EntrySeDeserializer<K, V> entrySeDeserializer,
+                             Supplier<K> keyFactory,
+                             Supplier<V> valueFactory,
+                             long size,
+                             List<ChunkedArray> levelBits,
+                             List<ChunkedArray> levelRanks,
+                             long[] levelSizes,
+                             long[] levelRankBases,
+                             ChunkedArray fallbackIndices,
+                             ChunkedArray entries) {
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.keyFactory = keyFactory;
+        this.valueFactory = valueFactory;
+        this.size = size;
+        this.levelBits = levelBits;
+        this.levelRanks = levelRanks;
+        this.levelSizes = levelSizes;
+        this.levelRankBases = levelRankBases;
+        this.fallbackIndices = fallbackIndices;
+        this.fallbackModulo = fallbackIndices.length() - 1;
+        this.entries = entries;
+    }
+
+    /**
+     * Builds a frozen copy of the given map with {@link #DEFAULT_GAMMA}. The given map isn't
+     * modified and can be closed afterwards.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> FrozenOffHeapMap<K, V> freeze(
+            OffHeapMap<K, V> source,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Function<Integer, MemoryResource> memoryResourceFactory,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory) {
+        return freeze(source::cursor, DEFAULT_GAMMA, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory);
+    }
+
+    /**
+     * Builds a frozen map from the entries of the cursors given by the supplier, which must all
+     * return the same distinct keys. The entries are read twice, once to build the minimal perfect
+     * hash function from the hashes of the keys and once to copy them in place.
+     *
+     * Building needs 8 bytes of temporary off-heap memory per key, on top of the frozen map.
+     *
+     * @param gamma
+     *         no. of bits per remaining key at each level of the minimal perfect hash function,
+     *         at least 1.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> FrozenOffHeapMap<K, V> freeze(
+            Supplier<Cursor<K, V>> entries,
+            double gamma,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Function<Integer, MemoryResource> memoryResourceFactory,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory) {
+        if (gamma < 1) {
+            throw new IllegalArgumentException("gamma must be at least 1");
+        }
+        return new Builder<>(gamma, entrySeDeserializer, memoryResourceFactory, keyFactory,
+                valueFactory).build(entries);
+    }
+
+    /**
+     * Maps an image written by {@link #publish(File)} read only. The returned map shares the
+     * pages of the file with every other process that maps it, and stays valid when the file is
+     * replaced or deleted, until it's closed. The image only records the class of the
+     * {@link EntrySeDeserializer}, so a {@link SeededEntrySeDeserializer} isn't supported.
+     *
+     * @throws IllegalStateException
+     *         if the file isn't an image, or was published with a different
+     *         {@link EntrySeDeserializer}.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> FrozenOffHeapMap<K, V> open(
+            File file,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory) {
+        if (entrySeDeserializer instanceof SeededEntrySeDeserializer) {
+            throw new IllegalArgumentException("Seeded hashes can't be published");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ImageHeader header = ImageHeader.read(raf, file);
+            if (!header.entrySeDeserializerClassName.equals(
+                    entrySeDeserializer.getClass().getName())
+                    || header.numBytesPerEntry != entrySeDeserializer.numBytesPerEntry()) {
+                throw new IllegalStateException(String.format(
+                        "Image %s was published with %s and %s bytes per entry",
+                        file.getAbsolutePath(), header.entrySeDeserializerClassName,
+                        header.numBytesPerEntry));
+            }
+            ImageMapping mapping = new ImageMapping(raf.getChannel(), header.dataOffset);
+            List<ChunkedArray> arrays = new ArrayList<>();
+            try {
+                List<ChunkedArray> levelBits = new ArrayList<>();
+                List<ChunkedArray> levelRanks = new ArrayList<>();
+                for (long levelSize : header.levelSizes) {
+                    long numWords = levelSize >>> 6;
+                    levelBits.add(mapping.map(numWords, Long.BYTES, arrays));
+                    levelRanks.add(mapping.map(numRankSamples(numWords), Long.BYTES, arrays));
+                }
+                ChunkedArray fallbackIndices = mapping.map(header.fallbackLength, Long.BYTES,
+                        arrays);
+                ChunkedArray entries = mapping.map(header.size, header.numBytesPerEntry, arrays);
+                return new FrozenOffHeapMap<>(entrySeDeserializer, keyFactory, valueFactory,
+                        header.size, levelBits, levelRanks, header.levelSizes,
+                        header.levelRankBases, fallbackIndices, entries);
+            } catch (RuntimeException | Error e) {
+                for (ChunkedArray array : arrays) {
+                    array.close();
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes an image of this map into the given file, to be mapped with
+     * {@link #open(File, EntrySeDeserializer, Supplier, Supplier)}.
+     *
+     * The image is written to a temporary file next to the given one, forced to the storage
+     * device and then renamed over the given file, so readers never see a partial image, and the
+     * processes that mapped the previous image keep reading it until they open the new one.
+     * Maps frozen with a {@link SeededEntrySeDeserializer} can't be published.
+     */
+    public void publish(File file) {
+        if (entrySeDeserializer instanceof SeededEntrySeDeserializer) {
+            throw new IllegalArgumentException("Seeded hashes can't be published");
+        }
+        File temporaryFile = new File(file.getAbsoluteFile().getParentFile(),
+                file.getName() + ".tmp");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(temporaryFile, "rw")) {
+                raf.setLength(0);
+                FileChannel fileChannel = raf.getChannel();
+                ImageHeader header = new ImageHeader();
+                header.entrySeDeserializerClassName = entrySeDeserializer.getClass().getName();
+                header.numBytesPerEntry = entrySeDeserializer.numBytesPerEntry();
+                header.size = size;
+                header.levelSizes = levelSizes;
+                header.levelRankBases = levelRankBases;
+                header.fallbackLength = fallbackIndices.length();
+                header.write(fileChannel);
+                for (int level = 0; level < levelSizes.length; level++) {
+                    writeAligned(levelBits.get(level), fileChannel);
+                    writeAligned(levelRanks.get(level), fileChannel);
+                }
+                writeAligned(fallbackIndices, fileChannel);
+                writeAligned(entries, fileChannel);
+                fileChannel.force(true);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            FileUtils.forceDirectory(file.getAbsoluteFile().getParentFile());
+        } catch (IOException e) {
+            temporaryFile.delete();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is immutable.
+     */
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        throw new UnsupportedOperationException("FrozenOffHeapMap is immutable");
+    }
+
+    @Override
+    public V get(K key, V usingValue) {
+        long index = indexOf(key, entrySeDeserializer.hash64(key));
+        if (index == NO_INDEX) {
+            return null;
+        }
+        entrySeDeserializer.readValue(entries.address(index), usingValue);
+        return usingValue;
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is immutable.
+     */
+    @Override
+    public V remove(K key, V usingValue) {
+        throw new UnsupportedOperationException("FrozenOffHeapMap is immutable");
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long sizeAsLong() {
+        return size;
+    }
+
+    /**
+     * @return no. of off-heap bytes held by this map.
+     */
+    public long sizeInBytes() {
+        long sizeInBytes = fallbackIndices.sizeInBytes() + entries.sizeInBytes();
+        for (int level = 0; level < levelSizes.length; level++) {
+            sizeInBytes += levelBits.get(level).sizeInBytes() + levelRanks.get(level).sizeInBytes();
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Cursor<K, V> cursor = cursor();
+        while (cursor.next()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The entries are visited in the order of their indices. {@link Cursor#remove()} throws
+     * {@link UnsupportedOperationException}.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new IndexCursor();
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is immutable.
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("FrozenOffHeapMap is immutable");
+    }
+
+    @Override
+    public void close() {
+        for (int level = 0; level < levelSizes.length; level++) {
+            levelBits.get(level).close();
+            levelRanks.get(level).close();
+        }
+        fallbackIndices.close();
+        entries.close();
+    }
+
+    /**
+     * Returns the index of the entry of the given key, or {@link #NO_INDEX} if the key isn't
+     * present.
+     */
+    private long indexOf(K key, long hash) {
+        long index = mphIndex(levelBits, levelRanks, levelSizes, levelRankBases, hash);
+        if (index != NO_INDEX) {
+            return entrySeDeserializer.equalsKey(entries.address(index), key) ? index : NO_INDEX;
+        }
+        long position = MapUtils.phiMix64(hash) & fallbackModulo;
+        do {
+            long fallbackIndex = fallbackIndices.getLong(position) - 1;
+            if (fallbackIndex == NO_INDEX) {
+                return NO_INDEX;
+            }
+            if (entrySeDeserializer.equalsKey(entries.address(fallbackIndex), key)) {
+                return fallbackIndex;
+            }
+            position = (position + 1) & fallbackModulo;
+        } while (true);
+    }
+
+    /**
+     * Evaluates the minimal perfect hash function over the given levels.
+     *
+     * @return the index of the hash, or {@link #NO_INDEX} if its bit isn't set at any level.
+     */
+    private static long mphIndex(List<ChunkedArray> levelBits, List<ChunkedArray> levelRanks,
+                                 long[] levelSizes, long[] levelRankBases, long hash) {
+        for (int level = 0; level < levelSizes.length; level++) {
+            long position = levelPosition(hash, level, levelSizes[level]);
+            ChunkedArray bits = levelBits.get(level);
+            long word = bits.getLong(position >>> 6);
+            if ((word & (1L << position)) != 0) {
+                return levelRankBases[level] + rank(bits, levelRanks.get(level), position);
+            }
+        }
+        return NO_INDEX;
+    }
+
+    /**
+     * Returns the position of the given hash in the bit array of the given level.
+     */
+    private static long levelPosition(long hash, int level, long levelSize) {
+        long levelHash = MapUtils.phiMix64(hash ^ (0x9E3779B97F4A7C15L * (level + 1)));
+        return Long.remainderUnsigned(levelHash, levelSize);
+    }
+
+    /**
+     * Returns the no. of set bits before the given position.
+     */
+    private static long rank(ChunkedArray bits, ChunkedArray ranks, long position) {
+        long wordIndex = position >>> 6;
+        long sampleIndex = wordIndex >>> WORDS_PER_RANK_SAMPLE_SHIFT;
+        long rank = ranks.getLong(sampleIndex);
+        for (long i = sampleIndex << WORDS_PER_RANK_SAMPLE_SHIFT; i < wordIndex; i++) {
+            rank += Long.bitCount(bits.getLong(i));
+        }
+        return rank + Long.bitCount(bits.getLong(wordIndex) & ((1L << position) - 1));
+    }
+
+    /**
+     * Returns the no. of rank samples of a bit array of the given no. of words.
+     */
+    private static long numRankSamples(long numWords) {
+        return ((numWords - 1) >>> WORDS_PER_RANK_SAMPLE_SHIFT) + 1;
+    }
+
+    private static void writeAligned(ChunkedArray array, FileChannel fileChannel)
+            throws IOException {
+        fileChannel.position(align(fileChannel.position()));
+        array.writeTo(fileChannel);
+    }
+
+    private static long align(long position) {
+        return (position + IMAGE_ALIGNMENT - 1) & -IMAGE_ALIGNMENT;
+    }
+
+    /**
+     * The header of an image, which describes the arrays that follow it. It starts with the
+     * magic, the version and the length of its body, and its body ends with a CRC32 of the
+     * preceding bytes.
+     */
+    private static final class ImageHeader {
+
+        private String entrySeDeserializerClassName;
+        private int numBytesPerEntry;
+        private long size;
+        private long[] levelSizes;
+        private long[] levelRankBases;
+        private long fallbackLength;
+        private long dataOffset;
+
+        private void write(FileChannel fileChannel) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeUTF(entrySeDeserializerClassName);
+            out.writeInt(numBytesPerEntry);
+            out.writeLong(size);
+            out.writeInt(levelSizes.length);
+            for (int level = 0; level < levelSizes.length; level++) {
+                out.writeLong(levelSizes[level]);
+                out.writeLong(levelRankBases[level]);
+            }
+            out.writeLong(fallbackLength);
+            out.flush();
+            byte[] bodyBytes = body.toByteArray();
+            ByteBuffer buffer = ByteBuffer.allocate(IMAGE_PREAMBLE_LENGTH + bodyBytes.length
+                    + Long.BYTES);
+            buffer.putInt(IMAGE_MAGIC);
+            buffer.putInt(IMAGE_VERSION);
+            buffer.putInt(bodyBytes.length);
+            buffer.put(bodyBytes);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+        }
+
+        private static ImageHeader read(RandomAccessFile raf, File file) throws IOException {
+            if (raf.length() < IMAGE_PREAMBLE_LENGTH || raf.readInt() != IMAGE_MAGIC) {
+                throw new IllegalStateException(String.format("%s is not a map image",
+                        file.getAbsolutePath()));
+            }
+            int version = raf.readInt();
+            if (version != IMAGE_VERSION) {
+                throw new IllegalStateException(String.format(
+                        "Image %s has unsupported version %s", file.getAbsolutePath(), version));
+            }
+            int bodyLength = raf.readInt();
+            if (bodyLength < 0
+                    || raf.length() < IMAGE_PREAMBLE_LENGTH + (long) bodyLength + Long.BYTES) {
+                throw new IllegalStateException(String.format("Image %s is truncated",
+                        file.getAbsolutePath()));
+            }
+            byte[] bytes = new byte[IMAGE_PREAMBLE_LENGTH + bodyLength];
+            raf.seek(0);
+            raf.readFully(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if (crc.getValue() != raf.readLong()) {
+                throw new IllegalStateException(String.format("Image %s is corrupted",
+                        file.getAbsolutePath()));
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes,
+                    IMAGE_PREAMBLE_LENGTH, bodyLength));
+            ImageHeader header = new ImageHeader();
+            header.entrySeDeserializerClassName = in.readUTF();
+            header.numBytesPerEntry = in.readInt();
+            header.size = in.readLong();
+            int numLevels = in.readInt();
+            header.levelSizes = new long[numLevels];
+            header.levelRankBases = new long[numLevels];
+            for (int level = 0; level < numLevels; level++) {
+                header.levelSizes[level] = in.readLong();
+                header.levelRankBases[level] = in.readLong();
+            }
+            header.fallbackLength = in.readLong();
+            header.dataOffset = raf.getFilePointer();
+            return header;
+        }
+    }
+
+    /**
+     * Maps the arrays of an image one after another, each from the next aligned position of the
+     * file.
+     */
+    private static final class ImageMapping implements Function<Integer, MemoryResource> {
+
+        private final FileChannel fileChannel;
+        private long position;
+
+        private ImageMapping(FileChannel fileChannel, long position) {
+            this.fileChannel = fileChannel;
+            this.position = position;
+        }
+
+        private ChunkedArray map(long length, int elementSize, List<ChunkedArray> arrays) {
+            position = align(position);
+            ChunkedArray array = new ChunkedArray(length, elementSize, this);
+            arrays.add(array);
+            return array;
+        }
+
+        @Override
+        public MemoryResource apply(Integer capacityInBytes) {
+            MemoryResource memoryResource = new ReadOnlyMmapMemoryResource(fileChannel, position,
+                    capacityInBytes);
+            position += capacityInBytes;
+            return memoryResource;
+        }
+    }
+
+    /**
+     * Builds the levels of the minimal perfect hash function from the hashes of the keys, and
+     * then places every entry at its index.
+     */
+    private static final class Builder<K extends Copyable<K>, V extends Copyable<V>> {
+
+        private final double gamma;
+        private final EntrySeDeserializer<K, V> entrySeDeserializer;
+        private final Function<Integer, MemoryResource> memoryResourceFactory;
+        private final Supplier<K> keyFactory;
+        private final Supplier<V> valueFactory;
+        private final List<ChunkedArray> levelBits = new ArrayList<>();
+        private final List<ChunkedArray> levelRanks = new ArrayList<>();
+        private final List<Long> levelSizes = new ArrayList<>();
+        private final List<Long> levelRankBases = new ArrayList<>();
+
+        private Builder(double gamma,
+                        EntrySeDeserializer<K, V> entrySeDeserializer,
+                        Function<Integer, MemoryResource> memoryResourceFactory,
+                        Supplier<K> keyFactory,
+                        Supplier<V> valueFactory) {
+            this.gamma = gamma;
+            this.entrySeDeserializer = entrySeDeserializer;
+            this.memoryResourceFactory = memoryResourceFactory;
+            this.keyFactory = keyFactory;
+            this.valueFactory = valueFactory;
+        }
+
+        private FrozenOffHeapMap<K, V> build(Supplier<Cursor<K, V>> entries) {
+            ChunkedArray fallbackIndices = null;
+            ChunkedArray entryArray = null;
+            try {
+                long size = 0;
+                Cursor<K, V> cursor = entries.get();
+                while (cursor.next()) {
+                    size++;
+                }
+                long numRemaining;
+                ChunkedArray hashes = new ChunkedArray(size, Long.BYTES,
+                        DirectMemoryResource::new);
+                try {
+                    cursor = entries.get();
+                    for (long i = 0; i < size && cursor.next(); i++) {
+                        hashes.setLong(i, entrySeDeserializer.hash64(cursor.key()));
+                    }
+                    numRemaining = size;
+                    long rankBase = 0;
+                    while (numRemaining > 0 && levelSizes.size() < MAX_NUM_LEVELS) {
+                        rankBase += buildLevel(hashes, numRemaining, rankBase);
+                        numRemaining = retainCollidedHashes(hashes, numRemaining);
+                    }
+                } finally {
+                    hashes.close();
+                }
+                // hashes that no level could separate, at most half of the slots are used.
+                long fallbackSize = Math.max(2, Long.highestOneBit(Math.max(1, numRemaining)) << 2);
+                fallbackIndices = new ChunkedArray(fallbackSize, Long.BYTES,
+                        memoryResourceFactory);
+                entryArray = new ChunkedArray(size, entrySeDeserializer.numBytesPerEntry(),
+                        memoryResourceFactory);
+                placeEntries(entries, size, size - numRemaining, fallbackIndices, entryArray);
+                return new FrozenOffHeapMap<>(entrySeDeserializer, keyFactory, valueFactory, size,
+                        levelBits, levelRanks, toArray(levelSizes), toArray(levelRankBases),
+                        fallbackIndices, entryArray);
+            } catch (RuntimeException | Error e) {
+                for (ChunkedArray array : levelBits) {
+                    array.close();
+                }
+                for (ChunkedArray array : levelRanks) {
+                    array.close();
+                }
+                if (fallbackIndices != null) {
+                    fallbackIndices.close();
+                }
+                if (entryArray != null) {
+                    entryArray.close();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Builds the next level from the first given no. of hashes.
+         *
+         * @return no. of hashes that got a bit at this level.
+         */
+        private long buildLevel(ChunkedArray hashes, long numHashes, long rankBase) {
+            int level = levelSizes.size();
+            long numWords = Math.max(1, ((long) Math.ceil(numHashes * gamma) + 63) >>> 6);
+            long levelSize = numWords << 6;
+            ChunkedArray bits = new ChunkedArray(numWords, Long.BYTES, memoryResourceFactory);
+            levelBits.add(bits);
+            levelSizes.add(levelSize);
+            levelRankBases.add(rankBase);
+            ChunkedArray collisions = new ChunkedArray(numWords, Long.BYTES,
+                    DirectMemoryResource::new);
+            try {
+                for (long i = 0; i < numHashes; i++) {
+                    long position = levelPosition(hashes.getLong(i), level, levelSize);
+                    long wordIndex = position >>> 6;
+                    long bit = 1L << position;
+                    long word = bits.getLong(wordIndex);
+                    if ((word & bit) != 0) {
+                        collisions.setLong(wordIndex, collisions.getLong(wordIndex) | bit);
+                    } else {
+                        bits.setLong(wordIndex, word | bit);
+                    }
+                }
+                for (long i = 0; i < numWords; i++) {
+                    bits.setLong(i, bits.getLong(i) & ~collisions.getLong(i));
+                }
+            } finally {
+                collisions.close();
+            }
+            ChunkedArray ranks = new ChunkedArray(numRankSamples(numWords), Long.BYTES,
+                    memoryResourceFactory);
+            levelRanks.add(ranks);
+            long rank = 0;
+            for (long i = 0; i < numWords; i++) {
+                if ((i & ((1 << WORDS_PER_RANK_SAMPLE_SHIFT) - 1)) == 0) {
+                    ranks.setLong(i >>> WORDS_PER_RANK_SAMPLE_SHIFT, rank);
+                }
+                rank += Long.bitCount(bits.getLong(i));
+            }
+            return rank;
+        }
+
+        /**
+         * Moves the hashes that didn't get a bit at the last level to the front.
+         *
+         * @return no. of hashes that are left.
+         */
+        private long retainCollidedHashes(ChunkedArray hashes, long numHashes) {
+            int level = levelSizes.size() - 1;
+            ChunkedArray bits = levelBits.get(level);
+            long levelSize = levelSizes.get(level);
+            long numRemaining = 0;
+            for (long i = 0; i < numHashes; i++) {
+                long hash = hashes.getLong(i);
+                long position = levelPosition(hash, level, levelSize);
+                if ((bits.getLong(position >>> 6) & (1L << position)) == 0) {
+                    hashes.setLong(numRemaining++, hash);
+                }
+            }
+            return numRemaining;
+        }
+
+        /**
+         * Writes every entry at its index, the ones without a bit at any level after the
+         * entries placed by the minimal perfect hash function.
+         */
+        private void placeEntries(Supplier<Cursor<K, V>> entries, long size, long numPlaced,
+                                  ChunkedArray fallbackIndices, ChunkedArray entryArray) {
+            long[] levelSizes = toArray(this.levelSizes);
+            long[] levelRankBases = toArray(this.levelRankBases);
+            long fallbackModulo = fallbackIndices.length() - 1;
+            long nextFallbackIndex = numPlaced;
+            Cursor<K, V> cursor = entries.get();
+            for (long i = 0; i < size && cursor.next(); i++) {
+                K key = cursor.key();
+                long hash = entrySeDeserializer.hash64(key);
+                long index = mphIndex(levelBits, levelRanks, levelSizes, levelRankBases, hash);
+                if (index == NO_INDEX) {
+                    index = nextFallbackIndex++;
+                    long position = MapUtils.phiMix64(hash) & fallbackModulo;
+                    while (fallbackIndices.getLong(position) != 0) {
+                        position = (position + 1) & fallbackModulo;
+                    }
+                    fallbackIndices.setLong(position, index + 1);
+                }
+                entrySeDeserializer.write(entryArray.address(index), key, cursor.value());
+            }
+        }
+
+        private static long[] toArray(List<Long> values) {
+            long[] array = new long[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+    }
+
+    /**
+     * {@link Cursor} over the entries in the order of their indices.
+     */
+    private final class IndexCursor implements Cursor<K, V> {
+
+        private final K key = keyFactory.get();
+        private final V value = valueFactory.get();
+        private long index = -1;
+
+        @Override
+        public boolean next() {
+            if (index + 1 >= size) {
+                index = size;
+                return false;
+            }
+            index++;
+            return true;
+        }
+
+        @Override
+        public K key() {
+            checkPositioned();
+            entrySeDeserializer.readKey(entries.address(index), key);
+            return key;
+        }
+
+        @Override
+        public V value() {
+            checkPositioned();
+            entrySeDeserializer.readValue(entries.address(index), value);
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("FrozenOffHeapMap is immutable");
+        }
+
+        private void checkPositioned() {
+            if (index < 0 || index >= size) {
+                throw new IllegalStateException("Cursor is not positioned on an entry");
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.udaysagar2177.maps;
+
+/**
+ * Policies that {@link JournaledOffHeapMap} can use to force its journal to the storage device.
+ * The modifications are buffered in memory and written to the file in batches, so only
+ * {@link #ALWAYS} writes each one before it's applied. With the other policies, the buffered
+ * modifications are lost by a crash of the process as well as by a crash of the whole system.
+ *
+ * @author uday
+ */
+public enum JournalForcePolicy {
+
+    /**
+     * Writes and forces the journal in every modification, before the modification is applied.
+     * Nothing is lost, but every modification waits for the storage device.
+     */
+    ALWAYS,
+
+    /**
+     * Writes and forces the journal from a background thread at a fixed interval, so that all of
+     * the modifications of an interval are committed together with one force. At most the
+     * modifications of the last interval are lost.
+     */
+    PERIODIC,
+
+    /**
+     * Writes the journal whenever its buffer is full and leaves forcing it to the operating
+     * system, except on {@link JournaledOffHeapMap#sync()}, checkpoints and close. The
+     * modifications that are still buffered are lost even if only the process crashes.
+     */
+    NEVER
+}
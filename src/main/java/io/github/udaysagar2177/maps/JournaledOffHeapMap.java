@@ -0,0 +1,273 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.GenerationalEntrySeDeserializer;
+
+/**
+ * A crash consistent {@link OffHeapMap} that logs every modification into an append-only journal
+ * before it applies it to an {@link OffHeapMapImpl}, and recovers the map from its last
+ * checkpoint and the journal when it's opened again.
+ *
+ * The map is kept in a directory under a name, as a checkpoint file {@code <name>.snapshot}
+ * written by {@link OffHeapMapImpl#snapshotTo(Path)} and a journal file {@code <name>.journal}.
+ * {@link #checkpoint()} writes a new checkpoint and then truncates the journal. A crash in between
+ * replays the journal onto a checkpoint that already has its modifications, which is harmless,
+ * as replaying puts and removes onto a map that has them leaves the same entries.
+ *
+ * The underlying map only lives in the given {@link MemoryResource}s and is rebuilt when the map
+ * is opened, so it's never read in the torn state that a crash in the middle of a rehash or a
+ * remove leaves behind. How much of the journal survives a crash depends on the
+ * {@link JournalForcePolicy}. With {@link JournalForcePolicy#PERIODIC}, a background thread
+ * commits the modifications of every interval with a single force, which sustains hundreds of
+ * thousands of modifications per second. Removes of missing keys aren't logged.
+ *
+ * Like {@link OffHeapMapImpl}, this map isn't threadsafe. The journal grows until the next
+ * checkpoint, so call {@link #checkpoint()} regularly, e.g. once {@link #journalSizeInBytes()}
+ * gets large.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class JournaledOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    private final OffHeapMapImpl<K, V> map;
+    private final MapJournal<K, V> journal;
+    private final Path snapshotPath;
+    private final V removedValue;
+
+    private JournaledOffHeapMap(OffHeapMapImpl<K, V> map, MapJournal<K, V> journal,
+                                Path snapshotPath, Supplier<V> valueFactory) {
+        this.map = map;
+        this.journal = journal;
+        this.snapshotPath = snapshotPath;
+        this.removedValue = valueFactory.get();
+    }
+
+    /**
+     * Opens the journaled map with the given name in the given directory, or creates it if it
+     * doesn't exist. The last checkpoint is loaded, if any, and the journal is replayed onto it.
+     *
+     * The expected no. of elements and the load factor only apply when there is no checkpoint.
+     *
+     * @param forceIntervalMillis
+     *         interval between two forces of the journal with {@link JournalForcePolicy#PERIODIC}.
+     * @throws IllegalStateException
+     *         if the checkpoint or the journal were written with a different entry layout.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> JournaledOffHeapMap<K, V> open(
+            File directory,
+            String name,
+            long expectedElements,
+            float loadFactor,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Function<Integer, MemoryResource> memoryResourceFactory,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory,
+            JournalForcePolicy forcePolicy,
+            long forceIntervalMillis) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException(String.format("%s is not a directory",
+                    directory.getAbsolutePath()));
+        }
+        if (entrySeDeserializer instanceof GenerationalEntrySeDeserializer) {
+            throw new IllegalArgumentException("Generations of entries can't be journaled");
+        }
+        Path snapshotPath = new File(directory, name + ".snapshot").toPath();
+        Path journalPath = new File(directory, name + ".journal").toPath();
+        OffHeapMapImpl<K, V> map = Files.exists(snapshotPath)
+                ? OffHeapMapImpl.loadFrom(snapshotPath, entrySeDeserializer,
+                memoryResourceFactory, keyFactory, valueFactory)
+                : new OffHeapMapImpl<>(expectedElements, loadFactor, entrySeDeserializer,
+                memoryResourceFactory, keyFactory, valueFactory);
+        try {
+            K key = keyFactory.get();
+            V value = valueFactory.get();
+            MapJournal<K, V> journal = new MapJournal<>(journalPath, entrySeDeserializer,
+                    forcePolicy, forceIntervalMillis, (type, entryAddress) -> {
+                        if (type == MapJournal.CLEAR) {
+                            map.clear();
+                            return;
+                        }
+                        entrySeDeserializer.readKey(entryAddress, key);
+                        if (type == MapJournal.PUT) {
+                            entrySeDeserializer.readValue(entryAddress, value);
+                            map.put(key, value, null);
+                        } else {
+                            map.remove(key, value);
+                        }
+                    });
+            return new JournaledOffHeapMap<>(map, journal, snapshotPath, valueFactory);
+        } catch (RuntimeException e) {
+            try {
+                map.close();
+            } catch (Exception closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The put is logged before it's applied.
+     */
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        journal.append(MapJournal.PUT, key, value);
+        return map.put(key, value, previousValueHolder);
+    }
+
+    @Override
+    public V get(K key, V usingValue) {
+        return map.get(key, usingValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The remove is logged before it's applied, if the key is present.
+     */
+    @Override
+    public V remove(K key, V usingValue) {
+        if (map.get(key, removedValue) == null) {
+            return null;
+        }
+        journal.append(MapJournal.REMOVE, key, removedValue);
+        return map.remove(key, usingValue);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public long sizeAsLong() {
+        return map.sizeAsLong();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach(action);
+    }
+
+    @Override
+    public Cursor<K, V> cursor() {
+        return new JournalingCursor(map.cursor());
+    }
+
+    @Override
+    public void clear() {
+        journal.append(MapJournal.CLEAR, null, null);
+        map.clear();
+    }
+
+    /**
+     * Writes the buffered modifications into the journal and forces it to the storage device,
+     * whatever the {@link JournalForcePolicy}.
+     */
+    public void sync() {
+        try {
+            journal.force();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Same as {@link #sync()}, as the journal is what makes the modifications durable.
+     */
+    @Override
+    public void flush() {
+        sync();
+    }
+
+    /**
+     * Writes a snapshot of the map as the new checkpoint and truncates the journal. The journal
+     * is only truncated once the snapshot and its rename are durable.
+     */
+    public void checkpoint() {
+        map.snapshotTo(snapshotPath);
+        try {
+            journal.truncate();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return no. of bytes of the journal that would be replayed if the map was opened again.
+     */
+    public long journalSizeInBytes() {
+        try {
+            return journal.sizeInBytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Forces the journal and closes the map. The journal is replayed when the map is opened
+     * again, so call {@link #checkpoint()} before to make the next open faster.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            journal.close();
+        } finally {
+            map.close();
+        }
+    }
+
+    /**
+     * {@link Cursor} that logs the removals.
+     */
+    private final class JournalingCursor implements Cursor<K, V> {
+
+        private final Cursor<K, V> cursor;
+
+        private JournalingCursor(Cursor<K, V> cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean next() {
+            return cursor.next();
+        }
+
+        @Override
+        public K key() {
+            return cursor.key();
+        }
+
+        @Override
+        public V value() {
+            return cursor.value();
+        }
+
+        @Override
+        public void remove() {
+            journal.append(MapJournal.REMOVE, cursor.key(), cursor.value());
+            cursor.remove();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import net.openhft.chronicle.core.OS;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * The append-only journal of a {@link JournaledOffHeapMap}. It starts with a header of the magic,
+ * the version and the entry length, followed by records of the same length: the type of the
+ * modification, the entry as written by the {@link EntrySeDeserializer}, and a CRC32 of both.
+ *
+ * Records are appended into a direct buffer that is written to the file when it's full or when
+ * the journal is forced, according to the {@link JournalForcePolicy}. A crash can leave a torn
+ * record at the end of the file, which fails its CRC32 and is cut off when the journal is
+ * replayed.
+ *
+ * Records are appended by one thread, and with {@link JournalForcePolicy#PERIODIC} the journal is
+ * forced by a background thread, which only holds the lock of the journal while it writes the
+ * buffer, not while it forces the file.
+ *
+ * @author uday
+ */
+final class MapJournal<K extends Copyable<K>, V extends Copyable<V>> implements AutoCloseable {
+
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+    static final byte CLEAR = 3;
+
+    private static final int MAGIC = 0x4155524A;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = Integer.BYTES * 3;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final int numBytesPerEntry;
+    private final int recordLength;
+    private final JournalForcePolicy forcePolicy;
+    private final FileChannel fileChannel;
+    private final ByteBuffer buffer;
+    private final ByteBuffer crcView;
+    private final long bufferAddress;
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService forceExecutor;
+    private volatile Throwable forceFailure;
+
+    /**
+     * Opens the journal at the given path, or creates it, and passes every intact record of an
+     * existing journal to the given consumer, in the order they were appended. The records that
+     * follow the first torn one are cut off.
+     */
+    MapJournal(Path path,
+               EntrySeDeserializer<K, V> entrySeDeserializer,
+               JournalForcePolicy forcePolicy,
+               long forceIntervalMillis,
+               RecordConsumer replayConsumer) {
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.numBytesPerEntry = entrySeDeserializer.numBytesPerEntry();
+        this.recordLength = 1 + numBytesPerEntry + Integer.BYTES;
+        this.forcePolicy = forcePolicy;
+        if (forcePolicy == JournalForcePolicy.PERIODIC && forceIntervalMillis <= 0) {
+            throw new IllegalArgumentException("forceIntervalMillis must be positive");
+        }
+        try {
+            this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, recordLength)
+                / recordLength * recordLength);
+        this.crcView = buffer.duplicate();
+        this.bufferAddress = ((DirectBuffer) buffer).address();
+        try {
+            if (fileChannel.size() < HEADER_LENGTH) {
+                writeHeader();
+            } else {
+                checkHeader(path);
+                replay(replayConsumer);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(e);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(e);
+        }
+        if (forcePolicy == JournalForcePolicy.PERIODIC) {
+            this.forceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "map-journal-force");
+                thread.setDaemon(true);
+                return thread;
+            });
+            forceExecutor.scheduleWithFixedDelay(this::forceInBackground, forceIntervalMillis,
+                    forceIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.forceExecutor = null;
+        }
+    }
+
+    /**
+     * Passes the intact records to the given consumer, cuts off the rest of the file and leaves
+     * the position of the channel after the last intact record.
+     */
+    private void replay(RecordConsumer consumer) throws IOException {
+        long position = HEADER_LENGTH;
+        boolean torn = false;
+        while (!torn) {
+            buffer.clear();
+            MapSnapshot.readFully(fileChannel, buffer, position);
+            int numBytes = buffer.position();
+            int offset = 0;
+            for (; offset + recordLength <= numBytes; offset += recordLength) {
+                byte type = buffer.get(offset);
+                if ((type != PUT && type != REMOVE && type != CLEAR)
+                        || crc(offset) != buffer.getInt(offset + 1 + numBytesPerEntry)) {
+                    torn = true;
+                    break;
+                }
+                consumer.accept(type, bufferAddress + offset + 1);
+            }
+            position += offset;
+            if (numBytes < buffer.capacity()) {
+                break;
+            }
+        }
+        buffer.clear();
+        if (position < fileChannel.size()) {
+            fileChannel.truncate(position);
+            fileChannel.force(false);
+        }
+        fileChannel.position(position);
+    }
+
+    /**
+     * Appends a record of the given type. The key and the value aren't read for
+     * {@link #CLEAR} records.
+     */
+    synchronized void append(byte type, K key, V value) {
+        Throwable failure = forceFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Journal couldn't be forced", failure);
+        }
+        try {
+            if (buffer.remaining() < recordLength) {
+                writeBuffer();
+            }
+            int offset = buffer.position();
+            buffer.put(offset, type);
+            long entryAddress = bufferAddress + offset + 1;
+            if (type == CLEAR) {
+                OS.memory().setMemory(entryAddress, numBytesPerEntry, (byte) 0);
+            } else {
+                entrySeDeserializer.write(entryAddress, key, value);
+            }
+            buffer.putInt(offset + 1 + numBytesPerEntry, crc(offset));
+            buffer.position(offset + recordLength);
+            if (forcePolicy == JournalForcePolicy.ALWAYS) {
+                writeBuffer();
+                fileChannel.force(false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces the file to the storage device.
+     */
+    void force() throws IOException {
+        synchronized (this) {
+            writeBuffer();
+        }
+        // appends go on while the file is forced.
+        fileChannel.force(false);
+    }
+
+    /**
+     * Drops every record, once they are all reflected in a checkpoint.
+     */
+    synchronized void truncate() throws IOException {
+        buffer.clear();
+        fileChannel.truncate(HEADER_LENGTH);
+        fileChannel.position(HEADER_LENGTH);
+        fileChannel.force(false);
+    }
+
+    /**
+     * @return no. of bytes of the journal, including the buffered records.
+     */
+    synchronized long sizeInBytes() throws IOException {
+        return fileChannel.position() + buffer.position();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (forceExecutor != null) {
+            forceExecutor.shutdown();
+            forceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        try {
+            force();
+        } finally {
+            fileChannel.close();
+            ((DirectBuffer) buffer).cleaner().clean();
+        }
+    }
+
+    private void forceInBackground() {
+        try {
+            force();
+        } catch (IOException | RuntimeException e) {
+            forceFailure = e;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int crc(int offset) {
+        crcView.clear();
+        crcView.position(offset);
+        crcView.limit(offset + 1 + numBytesPerEntry);
+        crc.reset();
+        crc.update(crcView);
+        return (int) crc.getValue();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(numBytesPerEntry);
+        header.flip();
+        fileChannel.truncate(0);
+        MapSnapshot.writeFully(fileChannel, header, 0);
+        fileChannel.force(false);
+        fileChannel.position(HEADER_LENGTH);
+    }
+
+    private void checkHeader(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        MapSnapshot.readFully(fileChannel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException(String.format("%s is not a map journal", path));
+        }
+        if (header.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalStateException(String.format(
+                    "Journal %s has unsupported version %s", path, header.getInt(Integer.BYTES)));
+        }
+        if (header.getInt(Integer.BYTES * 2) != numBytesPerEntry) {
+            throw new IllegalStateException(String.format(
+                    "Journal %s was written with %s bytes per entry", path,
+                    header.getInt(Integer.BYTES * 2)));
+        }
+    }
+
+    private void closeQuietly(Exception exception) {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            exception.addSuppressed(e);
+        }
+        ((DirectBuffer) buffer).cleaner().clean();
+    }
+
+    /**
+     * Consumer of the replayed records, with the address of their entry.
+     */
+    interface RecordConsumer {
+
+        void accept(byte type, long entryAddress);
+    }
+}
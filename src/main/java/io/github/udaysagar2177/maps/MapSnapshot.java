@@ -0,0 +1,254 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * The file format of {@link OffHeapMapImpl#snapshotTo(Path)}: a header followed by the occupied
+ * entries of the Hash Table, packed in the order of their positions.
+ *
+ * The Hash Table is split into a power of two no. of partitions of consecutive positions, and the
+ * header records the index of the first entry of every partition, so that the partitions can be
+ * written and loaded by several threads at once, each at its own offset of the file. The header
+ * starts with the magic, the version and the length of its body, which ends with a CRC32 of the
+ * preceding bytes, and the entries start at the next multiple of 8 bytes.
+ *
+ * @author uday
+ */
+final class MapSnapshot {
+
+    static final int MAX_NUM_PARTITIONS = 1024;
+    static final int BUFFER_SIZE = 8 << 20;
+
+    private static final int MAGIC = 0x41555253;
+    private static final int VERSION = 1;
+    private static final int PREAMBLE_LENGTH = Integer.BYTES * 3;
+
+    private MapSnapshot() { /* do nothing. */ }
+
+    /**
+     * Returns the no. of partitions of a Hash Table of the given size.
+     */
+    static int numPartitions(long hashTableSize) {
+        return (int) Math.min(hashTableSize, MAX_NUM_PARTITIONS);
+    }
+
+    /**
+     * Writes the given header at the start of the given channel.
+     *
+     * @return the offset of the first entry.
+     */
+    static long writeHeader(FileChannel fileChannel, Header header) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(header.entrySeDeserializerClassName);
+        out.writeInt(header.numBytesPerEntry);
+        out.writeUTF(header.probingScheme.name());
+        out.writeFloat(header.loadFactor);
+        out.writeLong(header.hashTableSize);
+        out.writeLong(header.size);
+        out.writeBoolean(header.hasFreeKey);
+        out.write(header.freeEntry);
+        out.writeInt(header.partitionOffsets.length);
+        for (long partitionOffset : header.partitionOffsets) {
+            out.writeLong(partitionOffset);
+        }
+        out.flush();
+        byte[] bodyBytes = body.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(PREAMBLE_LENGTH + bodyBytes.length + Long.BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(bodyBytes.length);
+        buffer.put(bodyBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += fileChannel.write(buffer, position);
+        }
+        return align(position);
+    }
+
+    /**
+     * Reads the header at the start of the given channel and the offset of the first entry.
+     *
+     * @throws IllegalStateException
+     *         if the file isn't a snapshot or is corrupted.
+     */
+    static Header readHeader(FileChannel fileChannel, Path path) throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+        readFully(fileChannel, preamble, 0);
+        if (preamble.position() < PREAMBLE_LENGTH || preamble.getInt(0) != MAGIC) {
+            throw new IllegalStateException(String.format("%s is not a map snapshot", path));
+        }
+        int version = preamble.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IllegalStateException(String.format(
+                    "Snapshot %s has unsupported version %s", path, version));
+        }
+        int bodyLength = preamble.getInt(Integer.BYTES * 2);
+        if (bodyLength < 0
+                || fileChannel.size() < PREAMBLE_LENGTH + (long) bodyLength + Long.BYTES) {
+            throw new IllegalStateException(String.format("Snapshot %s is truncated", path));
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(PREAMBLE_LENGTH + bodyLength + Long.BYTES);
+        readFully(fileChannel, bytes, 0);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, PREAMBLE_LENGTH + bodyLength);
+        if (crc.getValue() != bytes.getLong(PREAMBLE_LENGTH + bodyLength)) {
+            throw new IllegalStateException(String.format("Snapshot %s is corrupted", path));
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array(),
+                PREAMBLE_LENGTH, bodyLength));
+        Header header = new Header();
+        header.entrySeDeserializerClassName = in.readUTF();
+        header.numBytesPerEntry = in.readInt();
+        header.probingScheme = ProbingScheme.valueOf(in.readUTF());
+        header.loadFactor = in.readFloat();
+        header.hashTableSize = in.readLong();
+        header.size = in.readLong();
+        header.hasFreeKey = in.readBoolean();
+        header.freeEntry = new byte[header.numBytesPerEntry];
+        in.readFully(header.freeEntry);
+        header.partitionOffsets = new long[in.readInt()];
+        for (int i = 0; i < header.partitionOffsets.length; i++) {
+            header.partitionOffsets[i] = in.readLong();
+        }
+        header.dataOffset = align(bytes.capacity());
+        long numEntries = header.partitionOffsets[header.partitionOffsets.length - 1];
+        if (fileChannel.size() < header.dataOffset + numEntries * header.numBytesPerEntry) {
+            throw new IllegalStateException(String.format("Snapshot %s is truncated", path));
+        }
+        return header;
+    }
+
+    /**
+     * Reads from the given position until the buffer is full or the end of the channel.
+     */
+    static void readFully(FileChannel fileChannel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int numBytes = fileChannel.read(buffer, position);
+            if (numBytes < 0) {
+                return;
+            }
+            position += numBytes;
+        }
+    }
+
+    /**
+     * Writes the whole buffer at the given position.
+     */
+    static void writeFully(FileChannel fileChannel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += fileChannel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Returns the size of the buffers of {@link #runPartitions(int, int, int, PartitionTask)}
+     * for entries of the given size: the largest multiple of the entry size up to
+     * {@link #BUFFER_SIZE}, or one entry if entries are larger.
+     */
+    static int bufferSize(int numBytesPerEntry) {
+        return Math.max(numBytesPerEntry, BUFFER_SIZE / numBytesPerEntry * numBytesPerEntry);
+    }
+
+    /**
+     * Runs the given task for every partition on the given no. of threads, each with its own
+     * direct buffer of the given size, or without a buffer if the size is 0.
+     */
+    static void runPartitions(int numPartitions, int parallelism, int bufferSize,
+                              PartitionTask task) {
+        AtomicInteger nextPartition = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            ByteBuffer buffer = bufferSize > 0 ? ByteBuffer.allocateDirect(bufferSize) : null;
+            long bufferAddress = buffer != null ? ((DirectBuffer) buffer).address() : 0;
+            try {
+                int partition;
+                while (failure.get() == null
+                        && (partition = nextPartition.getAndIncrement()) < numPartitions) {
+                    task.run(partition, buffer, bufferAddress);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                if (buffer != null) {
+                    ((DirectBuffer) buffer).cleaner().clean();
+                }
+            }
+        };
+        int numThreads = Math.max(1, Math.min(parallelism, numPartitions));
+        Thread[] threads = new Thread[numThreads - 1];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(worker, "map-snapshot-" + i);
+            threads[i].start();
+        }
+        worker.run();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+        }
+        Throwable throwable = failure.get();
+        if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable != null) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /**
+     * Work done for one partition, with the direct buffer of the thread and its address.
+     */
+    interface PartitionTask {
+
+        void run(int partition, ByteBuffer buffer, long bufferAddress) throws IOException;
+    }
+
+    /**
+     * Fields of a snapshot header. The Hash Table is split into
+     * {@code partitionOffsets.length - 1} partitions of the same no. of positions, and the
+     * entries of partition {@code i} start at index {@code partitionOffsets[i]} of the file. The
+     * last offset is the no. of entries in the file.
+     */
+    static final class Header {
+
+        String entrySeDeserializerClassName;
+        int numBytesPerEntry;
+        ProbingScheme probingScheme;
+        float loadFactor;
+        long hashTableSize;
+        long size;
+        boolean hasFreeKey;
+        byte[] freeEntry;
+        long[] partitionOffsets;
+        long dataOffset;
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.udaysagar2177.maps;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the statistics of an {@link OffHeapMapImpl}, see
+ * {@link OffHeapMapImpl#stats()} and {@link OffHeapMapImpl#scanStats()}.
+ *
+ * The counters are always available. The probe length and cluster statistics come from a scan of
+ * the whole Hash Table, so they are only available in snapshots taken with
+ * {@link OffHeapMapImpl#scanStats()}, as told by {@link #isScanned()}. The probe length of an
+ * entry is the no. of slots that a lookup of its key reads, i.e. 1 for an entry in its home slot.
+ * A cluster is a run of consecutive non-empty slots. The free key entry isn't stored in the Hash
+ * Table, so it isn't part of the scan.
+ *
+ * @author uday
+ */
+public final class MapStats {
+
+    /**
+     * No. of buckets of the histograms. The last bucket also counts everything beyond it.
+     */
+    public static final int HISTOGRAM_SIZE = 64;
+
+    private final long size;
+    private final long hashTableSize;
+    private final float loadFactor;
+    private final long committedBytes;
+    private final long rehashCount;
+    private final long totalRehashTimeNanos;
+    private final long maxRehashTimeNanos;
+    private final boolean scanned;
+    private final long[] probeLengthHistogram;
+    private final long[] clusterSizeHistogram;
+    private final long totalProbeLength;
+    private final long maxProbeLength;
+    private final long maxClusterSize;
+
+    MapStats(long size, long hashTableSize, float loadFactor, long committedBytes,
+             long rehashCount, long totalRehashTimeNanos, long maxRehashTimeNanos) {
+        this(size, hashTableSize, loadFactor, committedBytes, rehashCount, totalRehashTimeNanos,
+                maxRehashTimeNanos, false, new long[0], new long[0], 0, 0, 0);
+    }
+
+    MapStats(long size, long hashTableSize, float loadFactor, long committedBytes,
+             long rehashCount, long totalRehashTimeNanos, long maxRehashTimeNanos,
+             boolean scanned, long[] probeLengthHistogram, long[] clusterSizeHistogram,
+             long totalProbeLength, long maxProbeLength, long maxClusterSize) {
+        this.size = size;
+        this.hashTableSize = hashTableSize;
+        this.loadFactor = loadFactor;
+        this.committedBytes = committedBytes;
+        this.rehashCount = rehashCount;
+        this.totalRehashTimeNanos = totalRehashTimeNanos;
+        this.maxRehashTimeNanos = maxRehashTimeNanos;
+        this.scanned = scanned;
+        this.probeLengthHistogram = probeLengthHistogram;
+        this.clusterSizeHistogram = clusterSizeHistogram;
+        this.totalProbeLength = totalProbeLength;
+        this.maxProbeLength = maxProbeLength;
+        this.maxClusterSize = maxClusterSize;
+    }
+
+    /**
+     * @return the no. of entries in the map.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the no. of slots of the Hash Table.
+     */
+    public long getHashTableSize() {
+        return hashTableSize;
+    }
+
+    /**
+     * @return the load factor that the map was created with.
+     */
+    public float getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * @return the fraction of the slots of the Hash Table that hold an entry.
+     */
+    public double getActualLoadFactor() {
+        return hashTableSize == 0 ? 0 : (double) size / hashTableSize;
+    }
+
+    /**
+     * @return the no. of bytes of all {@link io.github.udaysagar2177.maps.memory.MemoryResource}s
+     * held by the map, including an old Hash Table that is still being migrated.
+     */
+    public long getCommittedBytes() {
+        return committedBytes;
+    }
+
+    /**
+     * @return the no. of times the Hash Table has grown.
+     */
+    public long getRehashCount() {
+        return rehashCount;
+    }
+
+    /**
+     * @return the total time spent in the puts that grew the Hash Table. With
+     * {@link RehashMode#INCREMENTAL}, this excludes the migration steps of later operations.
+     */
+    public long getTotalRehashTimeNanos() {
+        return totalRehashTimeNanos;
+    }
+
+    /**
+     * @return the longest time spent in a put that grew the Hash Table.
+     */
+    public long getMaxRehashTimeNanos() {
+        return maxRehashTimeNanos;
+    }
+
+    /**
+     * @return true if this snapshot includes the statistics of a full scan of the Hash Table.
+     */
+    public boolean isScanned() {
+        return scanned;
+    }
+
+    /**
+     * @return a histogram where index {@code i} holds the no. of entries with a probe length of
+     * {@code i + 1}. Empty if this snapshot isn't scanned.
+     */
+    public long[] getProbeLengthHistogram() {
+        return Arrays.copyOf(probeLengthHistogram, probeLengthHistogram.length);
+    }
+
+    /**
+     * @return a histogram where index {@code i} holds the no. of clusters of {@code i + 1}
+     * entries. Empty if this snapshot isn't scanned.
+     */
+    public long[] getClusterSizeHistogram() {
+        return Arrays.copyOf(clusterSizeHistogram, clusterSizeHistogram.length);
+    }
+
+    /**
+     * @return the average probe length of the entries, i.e. the average no. of slots read by a
+     * successful lookup.
+     */
+    public double getAverageProbeLength() {
+        long numEntries = 0;
+        for (long count : probeLengthHistogram) {
+            numEntries += count;
+        }
+        return numEntries == 0 ? 0 : (double) totalProbeLength / numEntries;
+    }
+
+    /**
+     * @return the longest probe length of the entries.
+     */
+    public long getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    /**
+     * @return the no. of entries of the largest cluster, which bounds the no. of slots read by an
+     * unsuccessful lookup.
+     */
+    public long getMaxClusterSize() {
+        return maxClusterSize;
+    }
+
+    @Override
+    public String toString() {
+        return "MapStats{" +
+                "size=" + size +
+                ", hashTableSize=" + hashTableSize +
+                ", loadFactor=" + loadFactor +
+                ", actualLoadFactor=" + getActualLoadFactor() +
+                ", committedBytes=" + committedBytes +
+                ", rehashCount=" + rehashCount +
+                ", totalRehashTimeNanos=" + totalRehashTimeNanos +
+                ", maxRehashTimeNanos=" + maxRehashTimeNanos +
+                (scanned ? ", averageProbeLength=" + getAverageProbeLength() +
+                        ", maxProbeLength=" + maxProbeLength +
+                        ", maxClusterSize=" + maxClusterSize : "") +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.udaysagar2177.maps;
+
+/**
+ * JMX view of the {@link MapStats} of an {@link OffHeapMapImpl}, registered with
+ * {@link OffHeapMapImpl#registerStatsMXBean(String)}.
+ *
+ * The counters are read live from the map. As the map isn't threadsafe, the JMX threads never
+ * scan it, so the probe length and cluster attributes are those of the latest
+ * {@link OffHeapMapImpl#scanStats()} call made by the thread that owns the map, and stay zero
+ * until the first one.
+ *
+ * @author uday
+ */
+public interface MapStatsMXBean {
+
+    long getSize();
+
+    long getHashTableSize();
+
+    float getLoadFactor();
+
+    double getActualLoadFactor();
+
+    long getCommittedBytes();
+
+    long getRehashCount();
+
+    long getTotalRehashTimeNanos();
+
+    long getMaxRehashTimeNanos();
+
+    double getAverageProbeLength();
+
+    long getMaxProbeLength();
+
+    long getMaxClusterSize();
+
+    long[] getProbeLengthHistogram();
+
+    long[] getClusterSizeHistogram();
+}
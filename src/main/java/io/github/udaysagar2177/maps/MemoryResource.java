@@ -21,6 +21,14 @@ public interface MemoryResource extends AutoCloseable {
      */
     long getAddress();
 
+    /**
+     * Forces the changes made to this memory resource to the storage device, for resources that
+     * are backed by files. Does nothing for resources that only live in memory.
+     */
+    default void flush() {
+        // nothing to force by default.
+    }
+
     /**
      * Releases this memory resource.
      */
@@ -0,0 +1,251 @@
+package io.github.udaysagar2177.maps.memory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import net.openhft.chronicle.core.OS;
+
+/**
+ * A threadsafe pool that recycles {@link MemoryResource}s instead of releasing them, so that maps
+ * which rehash, get cleared or are created and closed frequently skip the allocation, the page
+ * faults of the first touch and, for {@link MmapMemoryResource}, the file creation and deletion.
+ *
+ * Use {@code pool::acquire} as the memory resource factory of a map. The resources handed out
+ * are backed by a resource of the next power of two size class, and closing them returns the
+ * backing resource to the pool. The pool retains up to {@code maxRetainedBytes} of backing
+ * resources and releases the ones that don't fit.
+ *
+ * Maps expect new resources to be zeroed, so recycled resources are zeroed before they are handed
+ * out again. By default this happens lazily, on acquire, and only for the requested capacity.
+ * With a zeroing {@link Executor}, released resources are zeroed in the background and an acquire
+ * only zeroes a resource itself if none of the background zeroed ones is ready.
+ *
+ * Requests larger than the largest size class, 2<sup>30</sup> bytes, bypass the pool.
+ *
+ * @author uday
+ */
+public class MemoryResourcePool implements AutoCloseable {
+
+    private static final int MIN_SIZE_CLASS_SHIFT = 6;
+    private static final int MAX_SIZE_CLASS_SHIFT = 30;
+
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+    private final long maxRetainedBytes;
+    private final Executor zeroingExecutor;
+    private final ArrayDeque<MemoryResource>[] zeroedResources;
+    private final ArrayDeque<MemoryResource>[] dirtyResources;
+
+    private long retainedBytes = 0;
+    private long numHits = 0;
+    private long numMisses = 0;
+    private boolean closed = false;
+
+    public MemoryResourcePool(Function<Integer, MemoryResource> memoryResourceFactory,
+                              long maxRetainedBytes) {
+        this(memoryResourceFactory, maxRetainedBytes, null);
+    }
+
+    /**
+     * @param zeroingExecutor
+     *         executor that zeroes released resources in the background, or null to zero them
+     *         on acquire.
+     */
+    @SuppressWarnings("unchecked")
+    public MemoryResourcePool(Function<Integer, MemoryResource> memoryResourceFactory,
+                              long maxRetainedBytes,
+                              Executor zeroingExecutor) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("maxRetainedBytes must not be negative");
+        }
+        this.memoryResourceFactory = memoryResourceFactory;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.zeroingExecutor = zeroingExecutor;
+        this.zeroedResources = new ArrayDeque[MAX_SIZE_CLASS_SHIFT + 1];
+        this.dirtyResources = new ArrayDeque[MAX_SIZE_CLASS_SHIFT + 1];
+        for (int i = MIN_SIZE_CLASS_SHIFT; i <= MAX_SIZE_CLASS_SHIFT; i++) {
+            zeroedResources[i] = new ArrayDeque<>();
+            dirtyResources[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Returns a zeroed resource of the given capacity, recycled from the pool if possible.
+     */
+    public MemoryResource acquire(int capacityInBytes) {
+        if (capacityInBytes <= 0) {
+            throw new IllegalArgumentException("capacityInBytes must be positive");
+        }
+        if (capacityInBytes > 1 << MAX_SIZE_CLASS_SHIFT) {
+            return memoryResourceFactory.apply(capacityInBytes);
+        }
+        int sizeClass = sizeClassOf(capacityInBytes);
+        MemoryResource resource;
+        boolean zeroed;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Pool is closed");
+            }
+            resource = zeroedResources[sizeClass].pollFirst();
+            zeroed = resource != null;
+            if (resource == null) {
+                resource = dirtyResources[sizeClass].pollFirst();
+            }
+            if (resource != null) {
+                retainedBytes -= resource.capacityInBytes();
+                numHits++;
+            } else {
+                numMisses++;
+            }
+        }
+        if (resource == null) {
+            resource = memoryResourceFactory.apply(1 << sizeClass);
+        } else if (!zeroed) {
+            OS.memory().setMemory(resource.getAddress(), capacityInBytes, (byte) 0);
+            OS.memory().storeFence();
+        }
+        return new PooledMemoryResource(resource, capacityInBytes);
+    }
+
+    /**
+     * @return no. of bytes of the resources currently held by this pool.
+     */
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return no. of acquires that recycled a resource.
+     */
+    public synchronized long numHits() {
+        return numHits;
+    }
+
+    /**
+     * @return no. of acquires that had to create a new resource.
+     */
+    public synchronized long numMisses() {
+        return numMisses;
+    }
+
+    /**
+     * Releases the resources held by this pool. Resources handed out earlier can still be used
+     * and are released instead of being returned once they are closed.
+     */
+    @Override
+    public void close() throws Exception {
+        ArrayDeque<MemoryResource> resources = new ArrayDeque<>();
+        synchronized (this) {
+            closed = true;
+            for (int i = MIN_SIZE_CLASS_SHIFT; i <= MAX_SIZE_CLASS_SHIFT; i++) {
+                resources.addAll(zeroedResources[i]);
+                resources.addAll(dirtyResources[i]);
+                zeroedResources[i].clear();
+                dirtyResources[i].clear();
+            }
+            retainedBytes = 0;
+        }
+        closeAll(resources);
+    }
+
+    private void release(MemoryResource resource) throws Exception {
+        int sizeClass = sizeClassOf(resource.capacityInBytes());
+        boolean retained;
+        synchronized (this) {
+            retained = !closed
+                    && retainedBytes + resource.capacityInBytes() <= maxRetainedBytes;
+            if (retained) {
+                retainedBytes += resource.capacityInBytes();
+                if (zeroingExecutor == null) {
+                    dirtyResources[sizeClass].addFirst(resource);
+                    return;
+                }
+            }
+        }
+        if (!retained) {
+            resource.close();
+            return;
+        }
+        // retained, but not available to acquire until it's zeroed.
+        zeroingExecutor.execute(() -> zeroInBackground(resource, sizeClass));
+    }
+
+    private void zeroInBackground(MemoryResource resource, int sizeClass) {
+        OS.memory().setMemory(resource.getAddress(), resource.capacityInBytes(), (byte) 0);
+        OS.memory().storeFence();
+        synchronized (this) {
+            if (!closed) {
+                zeroedResources[sizeClass].addFirst(resource);
+                return;
+            }
+        }
+        try {
+            resource.close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int sizeClassOf(int capacityInBytes) {
+        return Math.max(MIN_SIZE_CLASS_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(
+                capacityInBytes - 1));
+    }
+
+    private static void closeAll(Iterable<MemoryResource> resources) throws Exception {
+        Exception exception = null;
+        for (MemoryResource resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * {@link MemoryResource} handed out by the pool, which returns its backing resource to the
+     * pool when closed.
+     */
+    private final class PooledMemoryResource implements MemoryResource {
+
+        private final MemoryResource resource;
+        private final int capacityInBytes;
+        private boolean closed = false;
+
+        private PooledMemoryResource(MemoryResource resource, int capacityInBytes) {
+            this.resource = resource;
+            this.capacityInBytes = capacityInBytes;
+        }
+
+        @Override
+        public int capacityInBytes() {
+            return capacityInBytes;
+        }
+
+        @Override
+        public long getAddress() {
+            return resource.getAddress();
+        }
+
+        @Override
+        public void flush() {
+            resource.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(resource);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.udaysagar2177.maps.memory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Forces the registered {@link MmapMemoryResource}s to the storage device on a background thread
+ * at a fixed interval, so that their dirty pages are written back in small, regular batches
+ * instead of the bursts that the kernel starts on its own when it has accumulated too many.
+ *
+ * Java 8 can only force a whole mapping, so every flush forces each registered resource in turn.
+ * The kernel only writes back the pages that are dirty, so forcing a mostly clean resource is
+ * cheap compared to writing the pages.
+ *
+ * The scheduler can't see the writes to the mapped memory, so writers can report them with
+ * {@link #recordWrite(long)}. Once the reported bytes since the last flush exceed the given cap,
+ * the writer that crosses it flushes right away, which bounds the dirty bytes that a crash of the
+ * system can lose and that the next flush has to write. Persistent
+ * {@link io.github.udaysagar2177.maps.OffHeapMapImpl}s opened with a scheduler report their
+ * writes themselves.
+ *
+ * The no. of flushes, their latency and the bytes they covered are exposed, to tune the interval
+ * and the cap between durability and write throughput. This class is threadsafe.
+ *
+ * @author uday
+ */
+public class MmapFlushScheduler implements AutoCloseable {
+
+    private final long maxDirtyBytes;
+    private final List<MmapMemoryResource> memoryResources = new CopyOnWriteArrayList<>();
+    private final AtomicLong dirtyBytes = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private final Object flushLock = new Object();
+    private long numFlushes = 0;
+    private long flushedDirtyBytes = 0;
+    private long forcedBytes = 0;
+    private long totalFlushTimeNanos = 0;
+    private long maxFlushTimeNanos = 0;
+    private long lastFlushTimeNanos = 0;
+
+    /**
+     * @param flushIntervalMillis
+     *         delay between the end of a flush and the start of the next one.
+     * @param maxDirtyBytes
+     *         no. of bytes reported with {@link #recordWrite(long)} that trigger a flush in the
+     *         writer thread, or {@link Long#MAX_VALUE} to only flush periodically.
+     */
+    public MmapFlushScheduler(long flushIntervalMillis, long maxDirtyBytes) {
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive");
+        }
+        if (maxDirtyBytes <= 0) {
+            throw new IllegalArgumentException("maxDirtyBytes must be positive");
+        }
+        this.maxDirtyBytes = maxDirtyBytes;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mmap-flush-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis,
+                flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a factory of {@link MmapMemoryResource}s in the given folder that are flushed by
+     * this scheduler until they are closed.
+     */
+    public Function<Integer, MemoryResource> memoryResourceFactory(String dataFolderPath,
+                                                                   String filePrefix) {
+        return capacityInBytes -> register(
+                new MmapMemoryResource(dataFolderPath, filePrefix, capacityInBytes));
+    }
+
+    /**
+     * Registers the given resource to be flushed until it's closed.
+     *
+     * @return the given resource.
+     */
+    public MmapMemoryResource register(MmapMemoryResource memoryResource) {
+        memoryResources.add(memoryResource);
+        return memoryResource;
+    }
+
+    /**
+     * Reports the given no. of bytes written to the registered resources, and flushes them if
+     * more than the maximum no. of dirty bytes were reported since the last flush.
+     */
+    public void recordWrite(long numBytes) {
+        if (dirtyBytes.addAndGet(numBytes) > maxDirtyBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Forces every registered resource to the storage device.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            long startNanos = System.nanoTime();
+            long numDirtyBytes = dirtyBytes.getAndSet(0);
+            long numForcedBytes = 0;
+            for (MmapMemoryResource memoryResource : memoryResources) {
+                if (memoryResource.isClosed()) {
+                    memoryResources.remove(memoryResource);
+                    continue;
+                }
+                memoryResource.flush();
+                numForcedBytes += memoryResource.capacityInBytes();
+            }
+            long flushTimeNanos = System.nanoTime() - startNanos;
+            numFlushes++;
+            flushedDirtyBytes += numDirtyBytes;
+            forcedBytes += numForcedBytes;
+            totalFlushTimeNanos += flushTimeNanos;
+            maxFlushTimeNanos = Math.max(maxFlushTimeNanos, flushTimeNanos);
+            lastFlushTimeNanos = flushTimeNanos;
+        }
+    }
+
+    /**
+     * @return no. of bytes reported with {@link #recordWrite(long)} since the last flush.
+     */
+    public long getDirtyBytes() {
+        return dirtyBytes.get();
+    }
+
+    /**
+     * @return no. of registered resources, including the ones closed since the last flush.
+     */
+    public int getNumMemoryResources() {
+        return memoryResources.size();
+    }
+
+    public long getNumFlushes() {
+        synchronized (flushLock) {
+            return numFlushes;
+        }
+    }
+
+    /**
+     * @return no. of bytes reported with {@link #recordWrite(long)} that were flushed.
+     */
+    public long getFlushedDirtyBytes() {
+        synchronized (flushLock) {
+            return flushedDirtyBytes;
+        }
+    }
+
+    /**
+     * @return total capacity of the resources forced by all flushes.
+     */
+    public long getForcedBytes() {
+        synchronized (flushLock) {
+            return forcedBytes;
+        }
+    }
+
+    public long getTotalFlushTimeNanos() {
+        synchronized (flushLock) {
+            return totalFlushTimeNanos;
+        }
+    }
+
+    public long getMaxFlushTimeNanos() {
+        synchronized (flushLock) {
+            return maxFlushTimeNanos;
+        }
+    }
+
+    public long getLastFlushTimeNanos() {
+        synchronized (flushLock) {
+            return lastFlushTimeNanos;
+        }
+    }
+
+    /**
+     * Stops the background flushes and flushes the resources that are still registered one last
+     * time. The resources aren't closed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        flush();
+        memoryResources.clear();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // a failed flush is retried at the next interval.
+        }
+    }
+}
@@ -3,10 +3,15 @@ package io.github.udaysagar2177.maps.memory;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import io.github.udaysagar2177.maps.utils.Preconditions;
+import net.openhft.chronicle.core.OS;
 
 import sun.nio.ch.DirectBuffer;
 
@@ -17,6 +22,21 @@ import sun.nio.ch.DirectBuffer;
  * by this resource have an increasing file index in the file name to avoid conflicts between two
  * or more map objects using this resource type.
  *
+ * By default, the file is sparse, so the first write to every page takes a page fault and makes
+ * the file system allocate a block, which shows up as latency spikes on the first puts. Two
+ * options move that work out of the hot path:
+ * <ul>
+ * <li>preallocate writes zeros to the whole file before it's mapped, so its blocks are allocated
+ * and a full disk fails the construction rather than a later put with a SIGBUS.</li>
+ * <li>prefault touches every page of the mapping with a write, so that the pages are in the page
+ * cache and mapped writable. A prefault executor runs this in the background while the resource
+ * is already in use. The touch is a compare-and-swap of zero with zero, so it never overwrites the
+ * data written concurrently. {@link #whenPrefaulted()} completes once every page was touched.</li>
+ * </ul>
+ *
+ * A persistent resource, created with {@link #MmapMemoryResource(File, int)}, maps the given file
+ * as it is and keeps it when closed, after forcing the changes to the storage device.
+ *
  * @author uday
  */
 public class MmapMemoryResource implements io.github.udaysagar2177.maps.memory.MemoryResource {
@@ -26,16 +46,40 @@ public class MmapMemoryResource implements io.github.udaysagar2177.maps.memory.M
     private final File file;
     private final RandomAccessFile raf;
     private final FileChannel fileChannel;
-    private final DirectBuffer byteBuffer;
-    private final long address;
-    private final int capacityInBytes;
+    private DirectBuffer byteBuffer;
+    private long address;
+    private int capacityInBytes;
+    private final boolean persistent;
+    private final CompletableFuture<Void> prefaulted = new CompletableFuture<>();
+
+    private volatile boolean closed = false;
+    private boolean prefaulting = false;
+    private boolean flushing = false;
 
     public MmapMemoryResource(String dataFolderPath, int capacityInBytes) {
         this(dataFolderPath, "offHeapMap", capacityInBytes);
     }
 
     public MmapMemoryResource(String dataFolderPath, String filePrefix, int capacityInBytes) {
+        this(dataFolderPath, filePrefix, capacityInBytes, false, false, null);
+    }
+
+    /**
+     * @param preallocate
+     *         whether to write zeros to the whole file before mapping it.
+     * @param prefault
+     *         whether to touch every page of the mapping.
+     * @param prefaultExecutor
+     *         executor to prefault on, or null to prefault in the constructor.
+     */
+    public MmapMemoryResource(String dataFolderPath,
+                              String filePrefix,
+                              int capacityInBytes,
+                              boolean preallocate,
+                              boolean prefault,
+                              Executor prefaultExecutor) {
         this.capacityInBytes = capacityInBytes;
+        this.persistent = false;
         this.file = new File(String.format("%s/%s_%d.dat", dataFolderPath, filePrefix,
                 nextFileIndex.getAndIncrement()));
         try {
@@ -48,11 +92,129 @@ public class MmapMemoryResource implements io.github.udaysagar2177.maps.memory.M
                     String.format("Unable to create file %s", file.getAbsolutePath()));
             this.raf = new RandomAccessFile(file, "rw");
             this.fileChannel = raf.getChannel();
+            if (preallocate) {
+                preallocate(fileChannel, capacityInBytes);
+            }
             this.byteBuffer = (DirectBuffer) fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacityInBytes);
             this.address = byteBuffer.address();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        if (!prefault) {
+            prefaulted.complete(null);
+        } else if (prefaultExecutor == null) {
+            prefault();
+        } else {
+            prefaultExecutor.execute(this::prefault);
+        }
+    }
+
+    /**
+     * Creates a persistent resource that maps the given file, which is created with zeros if it
+     * doesn't exist. An existing file must have the given capacity.
+     */
+    public MmapMemoryResource(File file, int capacityInBytes) {
+        this.capacityInBytes = capacityInBytes;
+        this.persistent = true;
+        this.file = file;
+        try {
+            if (file.exists()) {
+                Preconditions.checkState(file.length() == capacityInBytes,
+                        String.format("File %s has length %s instead of %s",
+                                file.getAbsolutePath(), file.length(), capacityInBytes));
+            } else {
+                Preconditions.checkState(file.createNewFile(),
+                        String.format("Unable to create file %s", file.getAbsolutePath()));
+            }
+            this.raf = new RandomAccessFile(file, "rw");
+            this.fileChannel = raf.getChannel();
+            this.byteBuffer = (DirectBuffer) fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacityInBytes);
+            this.address = byteBuffer.address();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        prefaulted.complete(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method can be called from any thread, e.g. by a {@link MmapFlushScheduler}, and does
+     * nothing once the resource is closed.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            flushing = true;
+        }
+        try {
+            ((MappedByteBuffer) byteBuffer).force();
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Extends the file to the given capacity and maps it again. The content is kept, through the
+     * page cache, and the new bytes are zeros. The address of the resource changes, but it stays
+     * the same resource over the same file, so e.g. a {@link MmapFlushScheduler} keeps flushing
+     * it. Must not be called while the memory is accessed by other threads.
+     */
+    public void extend(int capacityInBytes) {
+        if (capacityInBytes < this.capacityInBytes) {
+            throw new IllegalArgumentException(String.format(
+                    "Capacity %s is smaller than the current capacity %s", capacityInBytes,
+                    this.capacityInBytes));
+        }
+        synchronized (this) {
+            Preconditions.checkState(!closed, "Resource is closed");
+            try {
+                // the mapping must not be released while it's touched or forced.
+                while (prefaulting || flushing) {
+                    wait();
+                }
+                raf.setLength(capacityInBytes);
+                DirectBuffer extendedByteBuffer = (DirectBuffer) fileChannel.map(
+                        FileChannel.MapMode.READ_WRITE, 0, capacityInBytes);
+                byteBuffer.cleaner().clean();
+                this.byteBuffer = extendedByteBuffer;
+                this.address = extendedByteBuffer.address();
+                this.capacityInBytes = capacityInBytes;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * @return true once this resource is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the file mapped by this resource.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a future that completes once every page was prefaulted, or right away if the
+     * resource wasn't created to prefault. It also completes if the resource is closed before.
+     */
+    public CompletableFuture<Void> whenPrefaulted() {
+        return prefaulted;
     }
 
     @Override
@@ -67,11 +229,54 @@ public class MmapMemoryResource implements io.github.udaysagar2177.maps.memory.M
 
     @Override
     public void close() throws Exception {
+        synchronized (this) {
+            closed = true;
+            // the mapping must not be released while it's touched or forced.
+            while (prefaulting || flushing) {
+                wait();
+            }
+        }
+        if (persistent) {
+            ((MappedByteBuffer) byteBuffer).force();
+        }
         byteBuffer.cleaner().clean();
         fileChannel.close();
         raf.close();
-        if (!file.delete()) {
+        if (!persistent && !file.delete()) {
             throw new IllegalStateException(String.format("Unable to delete file %s", file.getAbsolutePath()));
         }
     }
+
+    private void prefault() {
+        synchronized (this) {
+            if (closed) {
+                prefaulted.complete(null);
+                return;
+            }
+            prefaulting = true;
+        }
+        try {
+            int pageSize = OS.pageSize();
+            for (long offset = 0; offset < capacityInBytes && !closed; offset += pageSize) {
+                OS.memory().compareAndSwapInt(address + offset, 0, 0);
+            }
+        } finally {
+            synchronized (this) {
+                prefaulting = false;
+                notifyAll();
+            }
+            prefaulted.complete(null);
+        }
+    }
+
+    private static void preallocate(FileChannel fileChannel, int capacityInBytes)
+            throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate(Math.min(capacityInBytes, 1 << 20));
+        long position = 0;
+        while (position < capacityInBytes) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), capacityInBytes - position));
+            position += fileChannel.write(zeros, position);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package io.github.udaysagar2177.maps;
 
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -55,6 +56,31 @@ public interface OffHeapMap<K, V> extends AutoCloseable {
      */
     V get(@NotNull K key, @NotNull V usingValue);
 
+    /**
+     * Looks up all of the given keys in one call. The value of {@code keys[i]} is read into
+     * {@code values[i]} and {@code found[i]} tells whether this map contains a mapping for
+     * {@code keys[i]}. Implementations can overlap the memory accesses of the lookups, which is
+     * faster than calling {@link #get(Object, Object)} for each key on large maps.
+     *
+     * @param keys
+     *         the keys whose associated values are to be returned
+     * @param values
+     *         variables to hold the data read from off-heap location, at least as many as keys.
+     * @param found
+     *         flags to hold whether each key is present, at least as many as keys.
+     * @return the number of keys that are present in this map.
+     */
+    default int getAll(@NotNull K[] keys, @NotNull V[] values, @NotNull boolean[] found) {
+        int numFound = 0;
+        for (int i = 0; i < keys.length; i++) {
+            found[i] = get(keys[i], values[i]) != null;
+            if (found[i]) {
+                numFound++;
+            }
+        }
+        return numFound;
+    }
+
     /**
      * Removes the mapping for a key from this map if it is present.
      *
@@ -71,12 +97,54 @@ public interface OffHeapMap<K, V> extends AutoCloseable {
     V remove(@NotNull K key, V usingValue);
 
     /**
-     * Returns the number of key-value mappings in this map.
+     * Returns the number of key-value mappings in this map. If the map contains more than
+     * {@code Integer.MAX_VALUE} elements, returns {@code Integer.MAX_VALUE}.
      *
      * @return the number of key-value mappings in this map
      */
     int size();
 
+    /**
+     * Returns the number of key-value mappings in this map as a long, for maps that can hold
+     * more than {@code Integer.MAX_VALUE} elements.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    default long sizeAsLong() {
+        return size();
+    }
+
+    /**
+     * Performs the given action for each entry in this map. The key and value given to the
+     * action are flyweights that are overwritten for every entry, so the action must copy them
+     * if it needs them afterwards. The action must not modify the map.
+     *
+     * The default implementation iterates over {@link #cursor()}.
+     *
+     * @param action
+     *         the action to be performed for each entry
+     * @throws UnsupportedOperationException
+     *         if this map doesn't support {@link #cursor()}
+     */
+    default void forEach(BiConsumer<? super K, ? super V> action) {
+        Cursor<K, V> cursor = cursor();
+        while (cursor.next()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * Returns a new {@link Cursor} over the entries of this map (optional operation). Maps that
+     * support it also get {@link #forEach(BiConsumer)} for free.
+     *
+     * @return a cursor positioned before the first entry of this map.
+     * @throws UnsupportedOperationException
+     *         if iteration is not supported by this map
+     */
+    default Cursor<K, V> cursor() {
+        throw new UnsupportedOperationException("This map doesn't support cursors");
+    }
+
     /**
      * Removes all of the mappings from this map (optional operation). The map will be empty after
      * this call returns.
@@ -86,6 +154,14 @@ public interface OffHeapMap<K, V> extends AutoCloseable {
      */
     void clear();
 
+    /**
+     * Forces the modifications of this map to the storage device, for maps whose memory is backed
+     * by files. Does nothing for maps that only live in memory.
+     */
+    default void flush() {
+        // nothing to force by default.
+    }
+
     /**
      * Closes the map thereby releasing any resources.
      */
@@ -1,14 +1,35 @@
 package io.github.udaysagar2177.maps;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
 import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.memory.MmapFlushScheduler;
+import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
 import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.GenerationalEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.SeededEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.FileUtils;
 import io.github.udaysagar2177.maps.utils.MapUtils;
+import net.openhft.chronicle.core.OS;
+import sun.misc.Unsafe;
 
 /**
  * A non-threadsafe implementation of {@link OffHeapMap} that scales up as necessary to honor the
@@ -18,15 +39,38 @@ import io.github.udaysagar2177.maps.utils.MapUtils;
  * The data structure used to store key-values is a list of off-heap {@link MemoryResource}
  * allocated w.r.t to {@link OffHeapMapImpl#MAX_MEMORY_RESOURCE_CAPACITY} and
  * {@link OffHeapMapImpl#numBytesPerEntry}. This list acts as an abstraction to contiguous
- * Hash Table. Positions in the Hash Table are translated to an index in the list and then an
- * internal index inside each {@link MemoryResource}. During rehashing operations,
+ * Hash Table. Each {@link MemoryResource} holds the same power of two no. of entries, so that
+ * the long positions in the Hash Table are translated to an index in the list with a shift and
+ * to an internal index inside each {@link MemoryResource} with a mask. Positions are computed
+ * from {@link EntrySeDeserializer#hash64(Object)}, which allows Hash Tables beyond
+ * 2<sup>31</sup> slots. During rehashing operations,
  * new {@link MemoryResource}s are allocated to support bigger Hash Table size and
- * old {@link MemoryResource}s are released immediately.
+ * old {@link MemoryResource}s are released as soon as all of their entries are moved. With
+ * {@link RehashMode#INCREMENTAL}, the entries are moved a few slots at a time by the operations
+ * that follow the rehash instead of all at once. Collisions are resolved with plain linear probing
+ * by default, or with Robin Hood insertion for high load factors, see {@link ProbingScheme}.
+ * With a {@link SeededEntrySeDeserializer} and a maximum probe length, an insert that probes
+ * beyond it rebuilds the Hash Table with a new seed, so that keys that hash badly can't make the
+ * map degrade to linear scans.
  *
  * It is a required condition that provided {@link MemoryResource} and {@link EntrySeDeserializer}
  * should be compatible in determining {@link EntrySeDeserializer#isEmpty(long)} and {@link
  * EntrySeDeserializer#isFreeKey(Object)}. Otherwise, this map behavior will be wrong.
  *
+ * Cheap counters and an on-demand scan of the probe lengths and clusters are available as
+ * {@link MapStats} snapshots, also over JMX with {@link #registerStatsMXBean(String)}.
+ *
+ * Entries can be enumerated with {@link #forEach(BiConsumer)} or a {@link Cursor}, which stream
+ * through the {@link MemoryResource}s in order and reuse the same flyweights for every entry.
+ *
+ * Maps created with {@link #open(File, String, long, float, EntrySeDeserializer, Supplier,
+ * Supplier)} are persistent. Their Hash Table lives in memory-mapped files, described by a header
+ * file, and can be reopened after a restart without reloading the entries.
+ *
+ * Any map can also be copied into a compact snapshot file with {@link #snapshotTo(Path)} and
+ * loaded back with {@link #loadFrom(Path, EntrySeDeserializer, Function, Supplier, Supplier)},
+ * both with several threads.
+ *
  * For better performance, allocate this map with expected no. of entries or sufficiently large no.
  * of entries to minimize rehash operations. But the trade-off is that more off-heap memory will be
  * committed upfront.
@@ -43,50 +87,607 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
         implements OffHeapMap<K, V> {
 
     private static final int MAX_MEMORY_RESOURCE_CAPACITY = Integer.MAX_VALUE;
+    private static final long MAX_HASH_TABLE_SIZE = MapUtils.MAX_TABLE_SIZE;
+    /**
+     * No. of slots of the old Hash Table that are migrated by each operation during an
+     * incremental rehash. The old table holds at most 1 / loadFactor slots per entry of the new
+     * table's remaining capacity, so this comfortably finishes before the next rehash is due.
+     */
+    private static final int MIGRATION_SLOTS_PER_OPERATION = 16;
+    /**
+     * No. of times the keys are reseeded before the Hash Table grows again. A new seed almost
+     * never leaves long probes behind, unless the keys have equal 64-bit hashes.
+     */
+    private static final int MAX_RESEEDS_PER_TABLE_SIZE = 3;
+    /**
+     * No. of keys that {@link #getAll(Copyable[], Copyable[], boolean[])} hashes and touches
+     * before resolving their probes, i.e. the no. of cache misses that are kept in flight. This is
+     * kept around the no. of outstanding L1 misses that a core can track.
+     */
+    private static final int GET_ALL_GROUP_SIZE = 16;
+    private static final long FREE_KEY_POSITION = -1;
 
     private final float loadFactor;
+    private final RehashMode rehashMode;
+    private final ProbingScheme probingScheme;
+    /**
+     * Probe length of an insert beyond which the keys are reseeded, Integer.MAX_VALUE if they
+     * are never reseeded.
+     */
+    private final int maxProbeLength;
     private final EntrySeDeserializer<K, V> entrySeDeserializer;
     private final Supplier<K> keyFactory;
     private final Supplier<V> valueFactory;
     private final int numBytesPerEntry;
     private final Function<Integer, MemoryResource> memoryResourceFactory;
-    private final List<MemoryResource> memoryResources;
     private final int maxNumEntriesPerMemoryResource;
     private final K freeKey;
     private final V freeValue;
+    private final K migrationKey;
+    private final K probeKey;
+    /**
+     * Off-heap room for the entry that a Robin Hood insert carries along the probe, and for the
+     * entry that it swaps with. Null with {@link ProbingScheme#LINEAR}.
+     */
+    private final MemoryResource carriedEntries;
+    /**
+     * Files of a persistent map, null otherwise.
+     */
+    private final PersistentMapFiles persistentMapFiles;
+    /**
+     * Scheduler that flushes the files of a persistent map, null otherwise.
+     */
+    private final MmapFlushScheduler flushScheduler;
+    private final long[] groupPositions = new long[GET_ALL_GROUP_SIZE];
+    private final boolean[] groupHomeSlotEmpty = new boolean[GET_ALL_GROUP_SIZE];
 
+    private Table table;
+    private Table migratingTable;
+    private long migrationPosition;
+    private long numSlotsToMigrate;
     private boolean hasFreeKey = false;
-    private int threshold;
-    private int hashTableSize;
-    private int modulo;
-    private int size = 0;
+    private long threshold;
+    private long size = 0;
+    private List<Table> retiredTables;
+    private long committedBytes = 0;
+    private long rehashCount = 0;
+    private long totalRehashTimeNanos = 0;
+    private long maxRehashTimeNanos = 0;
+    private int numReseedsSinceRehash = 0;
+    private volatile MapStats lastScanStats;
+    private ObjectName statsObjectName;
 
-    public OffHeapMapImpl(int expectedElements,
+    public OffHeapMapImpl(long expectedElements,
                           float loadFactor,
                           EntrySeDeserializer<K, V> entrySeDeserializer,
                           Function<Integer, MemoryResource> memoryResourceFactory,
                           Supplier<K> keyFactory,
                           Supplier<V> valueFactory) {
+        this(expectedElements, loadFactor, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory, RehashMode.ALL_AT_ONCE);
+    }
+
+    public OffHeapMapImpl(long expectedElements,
+                          float loadFactor,
+                          EntrySeDeserializer<K, V> entrySeDeserializer,
+                          Function<Integer, MemoryResource> memoryResourceFactory,
+                          Supplier<K> keyFactory,
+                          Supplier<V> valueFactory,
+                          RehashMode rehashMode) {
+        this(expectedElements, loadFactor, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory, rehashMode, ProbingScheme.LINEAR);
+    }
+
+    public OffHeapMapImpl(long expectedElements,
+                          float loadFactor,
+                          EntrySeDeserializer<K, V> entrySeDeserializer,
+                          Function<Integer, MemoryResource> memoryResourceFactory,
+                          Supplier<K> keyFactory,
+                          Supplier<V> valueFactory,
+                          RehashMode rehashMode,
+                          ProbingScheme probingScheme) {
+        this(expectedElements, loadFactor, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory, rehashMode, probingScheme, Integer.MAX_VALUE, null,
+                null, null);
+    }
+
+    /**
+     * @param maxProbeLength
+     *         no. of slots that an insert can probe beyond the home slot of its key before the
+     *         given {@link SeededEntrySeDeserializer} is reseeded and the Hash Table is rebuilt.
+     *         Reseeds count as rehashes in {@link #stats()}. The map stops reseeding after a
+     *         few of them until the table grows, as keys with equal
+     *         {@link EntrySeDeserializer#hash64(Object)} collide with any seed.
+     * @throws IllegalArgumentException
+     *         if the {@link EntrySeDeserializer} isn't a {@link SeededEntrySeDeserializer}
+     */
+    public OffHeapMapImpl(long expectedElements,
+                          float loadFactor,
+                          EntrySeDeserializer<K, V> entrySeDeserializer,
+                          Function<Integer, MemoryResource> memoryResourceFactory,
+                          Supplier<K> keyFactory,
+                          Supplier<V> valueFactory,
+                          RehashMode rehashMode,
+                          ProbingScheme probingScheme,
+                          int maxProbeLength) {
+        this(expectedElements, loadFactor, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory, rehashMode, probingScheme, maxProbeLength, null, null,
+                null);
+    }
+
+    private OffHeapMapImpl(long expectedElements,
+                           float loadFactor,
+                           EntrySeDeserializer<K, V> entrySeDeserializer,
+                           Function<Integer, MemoryResource> memoryResourceFactory,
+                           Supplier<K> keyFactory,
+                           Supplier<V> valueFactory,
+                           RehashMode rehashMode,
+                           ProbingScheme probingScheme,
+                           int maxProbeLength,
+                           PersistentMapFiles persistentMapFiles,
+                           PersistentMapFiles.Header header,
+                           MmapFlushScheduler flushScheduler) {
         checkArguments(expectedElements, loadFactor, entrySeDeserializer.numBytesPerEntry());
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        if (maxProbeLength != Integer.MAX_VALUE
+                && !(entrySeDeserializer instanceof SeededEntrySeDeserializer)) {
+            throw new IllegalArgumentException(
+                    "A maximum probe length requires a SeededEntrySeDeserializer");
+        }
         this.loadFactor = loadFactor;
+        this.rehashMode = rehashMode;
+        this.probingScheme = probingScheme;
+        this.maxProbeLength = maxProbeLength;
         this.keyFactory = keyFactory;
         this.valueFactory = valueFactory;
         this.entrySeDeserializer = entrySeDeserializer;
         this.memoryResourceFactory = memoryResourceFactory;
         this.numBytesPerEntry = entrySeDeserializer.numBytesPerEntry();
-        this.maxNumEntriesPerMemoryResource = MAX_MEMORY_RESOURCE_CAPACITY / numBytesPerEntry;
+        this.maxNumEntriesPerMemoryResource =
+                Integer.highestOneBit(MAX_MEMORY_RESOURCE_CAPACITY / numBytesPerEntry);
         this.freeKey = keyFactory.get();
         this.freeValue = valueFactory.get();
+        this.migrationKey = keyFactory.get();
+        this.probeKey = keyFactory.get();
+
+        this.persistentMapFiles = persistentMapFiles;
+        this.flushScheduler = flushScheduler;
+
+        if (header == null) {
+            long hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
+            this.threshold = Math.max(1, (long) (hashTableSize * (double) loadFactor));
+            this.table = allocateTable(hashTableSize);
+        } else {
+            this.threshold = Math.max(1, (long) (header.hashTableSize * (double) loadFactor));
+            this.table = new Table(
+                    persistentMapFiles.openMemoryResources(header, numBytesPerEntry),
+                    header.hashTableSize, header.numEntriesPerMemoryResource, numBytesPerEntry);
+            committedBytes += header.hashTableSize * numBytesPerEntry;
+            if (flushScheduler != null) {
+                for (MemoryResource memoryResource : table.memoryResources) {
+                    flushScheduler.register((MmapMemoryResource) memoryResource);
+                }
+            }
+            restore(header);
+        }
+        this.carriedEntries = probingScheme == ProbingScheme.ROBIN_HOOD
+                ? new DirectMemoryResource(2 * numBytesPerEntry) : null;
+        if (carriedEntries != null) {
+            committedBytes += carriedEntries.capacityInBytes();
+        }
+        if (persistentMapFiles != null) {
+            // stays marked as not cleanly closed until close() writes the header again.
+            writeHeader(false);
+            persistentMapFiles.deleteStaleFiles(fileNames(table));
+        }
+    }
+
+    /**
+     * Opens the persistent map with the given name in the given directory, or creates it if it
+     * doesn't exist, with {@link ProbingScheme#LINEAR}. See {@link #open(File, String, long, float,
+     * EntrySeDeserializer, Supplier, Supplier, ProbingScheme)}.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> OffHeapMapImpl<K, V> open(
+            File directory,
+            String name,
+            long expectedElements,
+            float loadFactor,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory) {
+        return open(directory, name, expectedElements, loadFactor, entrySeDeserializer,
+                keyFactory, valueFactory, ProbingScheme.LINEAR);
+    }
+
+    /**
+     * Opens the persistent map with the given name in the given directory, or creates it if it
+     * doesn't exist.
+     *
+     * The Hash Table is stored in {@link MmapMemoryResource} files named after the map, so
+     * opening an existing map only maps its files and reads its header, and gets are served right
+     * away, with the pages faulted in from the page cache or the disk on first access. The header
+     * records the entry layout, the Hash Table size, the no. of entries, the free key and the
+     * load factor. It's rewritten when the map is opened, after every rehash and on
+     * {@link #close()}, which also forces the data files to the storage device.
+     *
+     * If the map wasn't closed, e.g. because the process crashed, the no. of entries is counted
+     * again with a scan of the Hash Table when it's reopened, and the free key mapping is the one
+     * of the last header write. Changes that didn't reach the page cache before the crash are
+     * lost, and so are the ones that didn't reach the storage device if the whole system crashed.
+     *
+     * The expected no. of elements, the load factor and the probing scheme only apply when the
+     * map is created. An existing map keeps the ones it was created with. Persistent maps always
+     * rehash with {@link RehashMode#ALL_AT_ONCE}, so that the files only ever hold one complete
+     * Hash Table. The {@link EntrySeDeserializer} must not keep state that decides whether an
+     * entry is empty, so {@link GenerationalEntrySeDeserializer} isn't supported, and where the
+     * keys are in the Hash Table must only depend on the keys, so {@link SeededEntrySeDeserializer}
+     * isn't supported either.
+     *
+     * @throws IllegalStateException
+     *         if the files of an existing map are corrupted or were written with a different
+     *         entry layout.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> OffHeapMapImpl<K, V> open(
+            File directory,
+            String name,
+            long expectedElements,
+            float loadFactor,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory,
+            ProbingScheme probingScheme) {
+        return open(directory, name, expectedElements, loadFactor, entrySeDeserializer,
+                keyFactory, valueFactory, probingScheme, null);
+    }
+
+    /**
+     * Same as {@link #open(File, String, long, float, EntrySeDeserializer, Supplier, Supplier,
+     * ProbingScheme)}, with the data files flushed by the given scheduler, which bounds the
+     * changes that a crash of the whole system can lose. Every put and remove is reported to the
+     * scheduler with {@link MmapFlushScheduler#recordWrite(long)}.
+     *
+     * @param flushScheduler
+     *         scheduler to register the data files with, or null to only force them on rehashes
+     *         and on {@link #close()}.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> OffHeapMapImpl<K, V> open(
+            File directory,
+            String name,
+            long expectedElements,
+            float loadFactor,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory,
+            ProbingScheme probingScheme,
+            MmapFlushScheduler flushScheduler) {
+        if (entrySeDeserializer instanceof GenerationalEntrySeDeserializer) {
+            throw new IllegalArgumentException(
+                    "Generations of entries can't be persisted across restarts");
+        }
+        if (entrySeDeserializer instanceof SeededEntrySeDeserializer) {
+            throw new IllegalArgumentException(
+                    "Seeded hashes can't be persisted across restarts");
+        }
+        PersistentMapFiles persistentMapFiles = new PersistentMapFiles(directory, name);
+        PersistentMapFiles.Header header = null;
+        if (persistentMapFiles.exists()) {
+            header = persistentMapFiles.readHeader();
+            if (!header.entrySeDeserializerClassName.equals(
+                    entrySeDeserializer.getClass().getName())
+                    || header.numBytesPerEntry != entrySeDeserializer.numBytesPerEntry()) {
+                throw new IllegalStateException(String.format(
+                        "Map %s was written by %s with %s bytes per entry", name,
+                        header.entrySeDeserializerClassName, header.numBytesPerEntry));
+            }
+            loadFactor = header.loadFactor;
+            probingScheme = header.probingScheme;
+        }
+        Function<Integer, MemoryResource> memoryResourceFactory = flushScheduler == null
+                ? persistentMapFiles::newMemoryResource
+                : capacityInBytes -> flushScheduler.register(
+                (MmapMemoryResource) persistentMapFiles.newMemoryResource(capacityInBytes));
+        return new OffHeapMapImpl<>(expectedElements, loadFactor, entrySeDeserializer,
+                memoryResourceFactory, keyFactory, valueFactory, RehashMode.ALL_AT_ONCE,
+                probingScheme, Integer.MAX_VALUE, persistentMapFiles, header, flushScheduler);
+    }
+
+    /**
+     * Loads a map from a snapshot written by {@link #snapshotTo(Path)}, with as many threads as
+     * there are available processors. See {@link #loadFrom(Path, EntrySeDeserializer, Function,
+     * Supplier, Supplier, int)}.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> OffHeapMapImpl<K, V> loadFrom(
+            Path path,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Function<Integer, MemoryResource> memoryResourceFactory,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory) {
+        return loadFrom(path, entrySeDeserializer, memoryResourceFactory, keyFactory,
+                valueFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads a map from a snapshot written by {@link #snapshotTo(Path)}.
+     *
+     * The map is created with the Hash Table size, the load factor and the probing scheme of the
+     * snapshotted map, so it never rehashes while loading. With {@link ProbingScheme#LINEAR}, the
+     * partitions of the snapshot are loaded by the given no. of threads at once, each reading its
+     * entries in large chunks and copying them into its own range of the Hash Table. The few
+     * entries whose probe sequence leaves the range of their partition are inserted afterwards.
+     * Maps with {@link ProbingScheme#ROBIN_HOOD} are loaded by one thread, as their inserts
+     * displace entries across partitions.
+     *
+     * @throws IllegalStateException
+     *         if the snapshot is corrupted or was written with a different entry layout.
+     */
+    public static <K extends Copyable<K>, V extends Copyable<V>> OffHeapMapImpl<K, V> loadFrom(
+            Path path,
+            EntrySeDeserializer<K, V> entrySeDeserializer,
+            Function<Integer, MemoryResource> memoryResourceFactory,
+            Supplier<K> keyFactory,
+            Supplier<V> valueFactory,
+            int parallelism) {
+        if (entrySeDeserializer instanceof GenerationalEntrySeDeserializer) {
+            throw new IllegalArgumentException("Generations of entries can't be snapshotted");
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MapSnapshot.Header header = MapSnapshot.readHeader(fileChannel, path);
+            if (!header.entrySeDeserializerClassName.equals(
+                    entrySeDeserializer.getClass().getName())
+                    || header.numBytesPerEntry != entrySeDeserializer.numBytesPerEntry()) {
+                throw new IllegalStateException(String.format(
+                        "Snapshot %s was written by %s with %s bytes per entry", path,
+                        header.entrySeDeserializerClassName, header.numBytesPerEntry));
+            }
+            if (header.partitionOffsets.length - 1
+                    != MapSnapshot.numPartitions(header.hashTableSize)) {
+                throw new IllegalStateException(String.format("Snapshot %s is corrupted", path));
+            }
+            OffHeapMapImpl<K, V> map = new OffHeapMapImpl<>(Math.max(1, header.size),
+                    header.loadFactor, entrySeDeserializer, memoryResourceFactory, keyFactory,
+                    valueFactory, RehashMode.ALL_AT_ONCE, header.probingScheme);
+            try {
+                map.load(fileChannel, header, parallelism);
+            } catch (RuntimeException | Error e) {
+                try {
+                    map.close();
+                } catch (Exception closeException) {
+                    e.addSuppressed(closeException);
+                }
+                throw e;
+            }
+            return map;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of this map with as many threads as there are available processors. See
+     * {@link #snapshotTo(Path, int)}.
+     */
+    public void snapshotTo(Path path) {
+        snapshotTo(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Writes a snapshot of this map into the given file, to be loaded with
+     * {@link #loadFrom(Path, EntrySeDeserializer, Function, Supplier, Supplier, int)}.
+     *
+     * The snapshot only holds the occupied entries, as they are laid out by the
+     * {@link EntrySeDeserializer}, after a header that describes the layout. The Hash Table is
+     * split into partitions that the given no. of threads count and then write at once, each
+     * gathering its entries into a large direct buffer and writing it at the offset of its
+     * partition. The file is written next to the given one, forced to the storage device and then
+     * renamed over it, so the given file always holds a complete snapshot. The directory is
+     * forced after the rename, so the new snapshot survives a crash once this returns.
+     *
+     * The map must not be modified while the snapshot is written.
+     */
+    public void snapshotTo(Path path, int parallelism) {
+        if (entrySeDeserializer instanceof GenerationalEntrySeDeserializer) {
+            throw new IllegalArgumentException("Generations of entries can't be snapshotted");
+        }
+        if (migratingTable != null) {
+            migrate(Long.MAX_VALUE);
+        }
+        Table table = this.table;
+        int numPartitions = MapSnapshot.numPartitions(table.hashTableSize);
+        long partitionSize = table.hashTableSize / numPartitions;
+        long[] partitionOffsets = new long[numPartitions + 1];
+        MapSnapshot.runPartitions(numPartitions, parallelism, 0, (partition, buffer, address) -> {
+            long numEntries = 0;
+            long endPosition = (partition + 1) * partitionSize;
+            for (long position = partition * partitionSize; position < endPosition; position++) {
+                if (!entrySeDeserializer.isEmpty(table.getAddress(position))) {
+                    numEntries++;
+                }
+            }
+            partitionOffsets[partition + 1] = numEntries;
+        });
+        for (int partition = 0; partition < numPartitions; partition++) {
+            partitionOffsets[partition + 1] += partitionOffsets[partition];
+        }
+        MapSnapshot.Header header = new MapSnapshot.Header();
+        header.entrySeDeserializerClassName = entrySeDeserializer.getClass().getName();
+        header.numBytesPerEntry = numBytesPerEntry;
+        header.probingScheme = probingScheme;
+        header.loadFactor = loadFactor;
+        header.hashTableSize = table.hashTableSize;
+        header.size = size;
+        header.hasFreeKey = hasFreeKey;
+        header.freeEntry = freeEntry();
+        header.partitionOffsets = partitionOffsets;
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel fileChannel = FileChannel.open(temporaryPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long dataOffset = MapSnapshot.writeHeader(fileChannel, header);
+                MapSnapshot.runPartitions(numPartitions, parallelism,
+                        MapSnapshot.bufferSize(numBytesPerEntry),
+                        (partition, buffer, bufferAddress) -> writePartition(table, fileChannel,
+                                dataOffset + partitionOffsets[partition] * numBytesPerEntry,
+                                partition * partitionSize, (partition + 1) * partitionSize,
+                                buffer, bufferAddress));
+                fileChannel.force(true);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            FileUtils.forceDirectory(path.toAbsolutePath().getParent().toFile());
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException deleteException) {
+                e.addSuppressed(deleteException);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the occupied entries between the given positions of the given table at the given
+     * position of the file, one buffer at a time.
+     */
+    private void writePartition(Table table, FileChannel fileChannel, long filePosition,
+                                long startPosition, long endPosition, ByteBuffer buffer,
+                                long bufferAddress) throws IOException {
+        int numBufferedBytes = 0;
+        for (long position = startPosition; position < endPosition; position++) {
+            long address = table.getAddress(position);
+            if (entrySeDeserializer.isEmpty(address)) {
+                continue;
+            }
+            if (numBufferedBytes == buffer.capacity()) {
+                buffer.clear();
+                MapSnapshot.writeFully(fileChannel, buffer, filePosition);
+                filePosition += numBufferedBytes;
+                numBufferedBytes = 0;
+            }
+            OS.memory().copyMemory(address, bufferAddress + numBufferedBytes, numBytesPerEntry);
+            numBufferedBytes += numBytesPerEntry;
+        }
+        buffer.clear();
+        buffer.limit(numBufferedBytes);
+        MapSnapshot.writeFully(fileChannel, buffer, filePosition);
+    }
 
-        this.hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
-        this.threshold = Math.max(1, (int) (hashTableSize * loadFactor));
-        this.modulo = hashTableSize - 1;
+    /**
+     * Loads the entries of a snapshot into this new map.
+     */
+    private void load(FileChannel fileChannel, MapSnapshot.Header header, int parallelism) {
+        if (table.hashTableSize != header.hashTableSize) {
+            release(table);
+            table = allocateTable(header.hashTableSize);
+            threshold = Math.max(1, (long) (header.hashTableSize * (double) loadFactor));
+        }
+        restoreFreeKey(header.hasFreeKey, header.freeEntry);
+        Table table = this.table;
+        int numPartitions = header.partitionOffsets.length - 1;
+        long partitionSize = table.hashTableSize / numPartitions;
+        List<byte[]> deferredEntries = Collections.synchronizedList(new ArrayList<>());
+        MapSnapshot.runPartitions(numPartitions,
+                probingScheme == ProbingScheme.LINEAR ? parallelism : 1,
+                MapSnapshot.bufferSize(numBytesPerEntry),
+                (partition, buffer, bufferAddress) -> loadPartition(table, fileChannel,
+                        header.dataOffset + header.partitionOffsets[partition] * numBytesPerEntry,
+                        header.partitionOffsets[partition + 1] - header.partitionOffsets[partition],
+                        partition * partitionSize, (partition + 1) * partitionSize,
+                        deferredEntries, buffer, bufferAddress));
+        if (!deferredEntries.isEmpty()) {
+            DirectMemoryResource entry = new DirectMemoryResource(numBytesPerEntry);
+            try {
+                for (byte[] deferredEntry : deferredEntries) {
+                    OS.memory().copyMemory(deferredEntry, 0, entry.getAddress(),
+                            numBytesPerEntry);
+                    moveToTable(entry.getAddress());
+                }
+            } finally {
+                entry.close();
+            }
+        }
+        size = header.size;
+    }
+
+    /**
+     * Loads the given no. of entries at the given position of the file, which belong to the
+     * partition between the given positions of the given table. Entries are copied into the
+     * first empty slot from their home slot within the partition, so that threads that load
+     * different partitions never touch the same slots. The entries whose home slot is in another
+     * partition, or that find no empty slot before the end of the partition, are added to the
+     * given deferred entries instead. With {@link ProbingScheme#ROBIN_HOOD}, entries are inserted
+     * right away.
+     */
+    private void loadPartition(Table table, FileChannel fileChannel, long filePosition,
+                               long numEntries, long startPosition, long endPosition,
+                               List<byte[]> deferredEntries, ByteBuffer buffer,
+                               long bufferAddress) throws IOException {
+        K key = keyFactory.get();
+        int numEntriesPerBuffer = buffer.capacity() / numBytesPerEntry;
+        while (numEntries > 0) {
+            int numBufferedEntries = (int) Math.min(numEntriesPerBuffer, numEntries);
+            buffer.clear();
+            buffer.limit(numBufferedEntries * numBytesPerEntry);
+            MapSnapshot.readFully(fileChannel, buffer, filePosition);
+            if (buffer.hasRemaining()) {
+                throw new IllegalStateException("Snapshot is truncated");
+            }
+            for (int i = 0; i < numBufferedEntries; i++) {
+                long entryAddress = bufferAddress + (long) i * numBytesPerEntry;
+                if (probingScheme == ProbingScheme.ROBIN_HOOD) {
+                    moveToTable(entryAddress);
+                    continue;
+                }
+                entrySeDeserializer.readKey(entryAddress, key);
+                long position = table.getPosition(entrySeDeserializer.hash64(key));
+                if (position < startPosition || !copyWithin(table, entryAddress, position,
+                        endPosition)) {
+                    byte[] deferredEntry = new byte[numBytesPerEntry];
+                    OS.memory().copyMemory(entryAddress, deferredEntry,
+                            Unsafe.ARRAY_BYTE_BASE_OFFSET, numBytesPerEntry);
+                    deferredEntries.add(deferredEntry);
+                }
+            }
+            filePosition += (long) numBufferedEntries * numBytesPerEntry;
+            numEntries -= numBufferedEntries;
+        }
+    }
 
-        this.memoryResources = allocateMemory(hashTableSize, numBytesPerEntry);
+    /**
+     * Copies the entry at the given address into the first empty slot of the given table from
+     * the given position, unless there is none before the given end position.
+     *
+     * @return true if the entry was copied.
+     */
+    private boolean copyWithin(Table table, long fromAddress, long position, long endPosition) {
+        for (; position < endPosition; position++) {
+            long address = table.getAddress(position);
+            if (entrySeDeserializer.isEmpty(address)) {
+                entrySeDeserializer.copy(fromAddress, address);
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public V put(K key, V value, V previousValueHolder) {
+        return put(key, value, previousValueHolder, entrySeDeserializer.hash64(key));
+    }
+
+    /**
+     * Same as {@link #put(Copyable, Copyable, Copyable)} with the already computed
+     * {@link EntrySeDeserializer#hash64(Object)} of the key.
+     */
+    V put(K key, V value, V previousValueHolder, long hash) {
+        if (flushScheduler != null) {
+            flushScheduler.recordWrite(numBytesPerEntry);
+        }
         if (entrySeDeserializer.isFreeKey(key)) {
             if (hasFreeKey) {
                 if (previousValueHolder != null) {
@@ -102,9 +703,25 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
             size++;
             return null;
         }
-        int position = getPosition(entrySeDeserializer.hash(key));
+        if (migratingTable != null) {
+            migrate();
+            if (migratingTable != null) {
+                long position = indexOf(migratingTable, key, hash);
+                if (position >= 0) {
+                    long address = migratingTable.getAddress(position);
+                    if (previousValueHolder != null) {
+                        entrySeDeserializer.readValue(address, previousValueHolder);
+                    }
+                    entrySeDeserializer.write(address, key, value);
+                    return previousValueHolder;
+                }
+            }
+        }
+        Table table = this.table;
+        long position = table.getPosition(hash);
+        long distance = 0;
         do {
-            long address = getAddress(position); // TODO: simplify address calc
+            long address = table.getAddress(position);
             if (entrySeDeserializer.equalsKey(address, key)) {
                 if (previousValueHolder != null) {
                     entrySeDeserializer.readValue(address, previousValueHolder);
@@ -114,37 +731,212 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
             }
             if (entrySeDeserializer.isEmpty(address)) {
                 entrySeDeserializer.write(address, key, value);
-                size++;
-                if (size > threshold) {
-                    rehash();
+                break;
+            }
+            if (probingScheme == ProbingScheme.ROBIN_HOOD) {
+                long residentDistance = distance(table, position, address);
+                if (residentDistance < distance) {
+                    // the key isn't present, it takes this slot and the resident moves on.
+                    long carriedAddress = carriedEntries.getAddress();
+                    entrySeDeserializer.copy(address, carriedAddress);
+                    entrySeDeserializer.write(address, key, value);
+                    robinHoodInsert(table, (position + 1) & table.modulo, residentDistance + 1);
+                    break;
                 }
-                return null;
             }
-            position = (position + 1) & modulo;
+            position = (position + 1) & table.modulo;
+            distance++;
         } while (true);
+        size++;
+        boolean reseed = size <= threshold && distance > maxProbeLength
+                && numReseedsSinceRehash < MAX_RESEEDS_PER_TABLE_SIZE;
+        if (size > threshold || reseed) {
+            long startNanos = System.nanoTime();
+            if (reseed) {
+                reseed();
+            } else {
+                rehash();
+            }
+            long rehashTimeNanos = System.nanoTime() - startNanos;
+            rehashCount++;
+            totalRehashTimeNanos += rehashTimeNanos;
+            maxRehashTimeNanos = Math.max(maxRehashTimeNanos, rehashTimeNanos);
+        }
+        return null;
     }
 
     @Override
     public V get(K key, V usingValue) {
+        return get(key, usingValue, entrySeDeserializer.hash64(key));
+    }
+
+    /**
+     * Same as {@link #get(Copyable, Copyable)} with the already computed
+     * {@link EntrySeDeserializer#hash64(Object)} of the key.
+     */
+    V get(K key, V usingValue, long hash) {
         if (entrySeDeserializer.isFreeKey(key)) {
-            return hasFreeKey ? freeValue : null;
+            if (!hasFreeKey) {
+                return null;
+            }
+            usingValue.copyFrom(freeValue);
+            return usingValue;
+        }
+        if (migratingTable != null) {
+            migrate();
         }
-        int position = getPosition(entrySeDeserializer.hash(key));
+        long position = indexOf(table, key, hash);
+        if (position >= 0) {
+            entrySeDeserializer.readValue(table.getAddress(position), usingValue);
+            return usingValue;
+        }
+        if (migratingTable != null) {
+            position = indexOf(migratingTable, key, hash);
+            if (position >= 0) {
+                entrySeDeserializer.readValue(migratingTable.getAddress(position), usingValue);
+                return usingValue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The keys are looked up in groups of {@link #GET_ALL_GROUP_SIZE}. All keys of a group are
+     * hashed and their home slots are read first, so that the CPU can have the cache and TLB
+     * misses of the whole group in flight at once instead of stalling on each of them in turn.
+     * Then the probes of the group are resolved against the, by then, cached home slots. While an
+     * incremental rehash is in progress, the keys are looked up one by one.
+     */
+    @Override
+    public int getAll(K[] keys, V[] values, boolean[] found) {
+        if (values.length < keys.length || found.length < keys.length) {
+            throw new IllegalArgumentException("values and found must be at least as long as keys");
+        }
+        if (migratingTable != null) {
+            return OffHeapMap.super.getAll(keys, values, found);
+        }
+        Table table = this.table;
+        long[] groupPositions = this.groupPositions;
+        boolean[] groupHomeSlotEmpty = this.groupHomeSlotEmpty;
+        int numFound = 0;
+        for (int groupStart = 0; groupStart < keys.length; groupStart += GET_ALL_GROUP_SIZE) {
+            int groupSize = Math.min(GET_ALL_GROUP_SIZE, keys.length - groupStart);
+            for (int i = 0; i < groupSize; i++) {
+                K key = keys[groupStart + i];
+                if (entrySeDeserializer.isFreeKey(key)) {
+                    groupPositions[i] = FREE_KEY_POSITION;
+                    continue;
+                }
+                long position = table.getPosition(entrySeDeserializer.hash64(key));
+                groupPositions[i] = position;
+                // the loads of the group are independent of each other, so they overlap.
+                groupHomeSlotEmpty[i] = entrySeDeserializer.isEmpty(table.getAddress(position));
+            }
+            for (int i = 0; i < groupSize; i++) {
+                int index = groupStart + i;
+                long position = groupPositions[i];
+                boolean isFound;
+                if (position == FREE_KEY_POSITION) {
+                    isFound = hasFreeKey;
+                    if (isFound) {
+                        values[index].copyFrom(freeValue);
+                    }
+                } else {
+                    isFound = !groupHomeSlotEmpty[i]
+                            && readValue(table, keys[index], position, values[index]);
+                }
+                found[index] = isFound;
+                if (isFound) {
+                    numFound++;
+                }
+            }
+        }
+        return numFound;
+    }
+
+    /**
+     * Probes the given table from the given position for the key and reads its value into the
+     * given value flyweight.
+     *
+     * @return true if the key is found, false otherwise.
+     */
+    private boolean readValue(Table table, K key, long position, V usingValue) {
         do {
-            long address = getAddress(position);
+            long address = table.getAddress(position);
             if (entrySeDeserializer.equalsKey(address, key)) {
                 entrySeDeserializer.readValue(address, usingValue);
-                return usingValue;
+                return true;
             }
             if (entrySeDeserializer.isEmpty(address)) {
-                return null;
+                return false;
             }
-            position = (position + 1) & modulo;
+            position = (position + 1) & table.modulo;
         } while (true);
     }
 
+    /**
+     * Same as {@link #get(Copyable, Copyable, long)}, but never modifies the map. It doesn't
+     * migrate entries of an incremental rehash and gives up on a probe after visiting every slot
+     * of a table. This is meant for readers that run concurrently with a writer and validate the
+     * result afterwards, as the result is garbage while the map is being modified.
+     */
+    V getReadOnly(K key, V usingValue, long hash) {
+        if (entrySeDeserializer.isFreeKey(key)) {
+            if (!hasFreeKey) {
+                return null;
+            }
+            usingValue.copyFrom(freeValue);
+            return usingValue;
+        }
+        Table table = this.table;
+        Table migratingTable = this.migratingTable;
+        if (readValueReadOnly(table, key, hash, usingValue)
+                || (migratingTable != null
+                && readValueReadOnly(migratingTable, key, hash, usingValue))) {
+            return usingValue;
+        }
+        return null;
+    }
+
+    private boolean readValueReadOnly(Table table, K key, long hash, V usingValue) {
+        long position = table.getPosition(hash);
+        for (long i = 0; i < table.hashTableSize; i++) {
+            long address = table.getAddress(position);
+            if (entrySeDeserializer.equalsKey(address, key)) {
+                entrySeDeserializer.readValue(address, usingValue);
+                return true;
+            }
+            if (entrySeDeserializer.isEmpty(address)) {
+                return false;
+            }
+            position = (position + 1) & table.modulo;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the {@link MemoryResource}s of the Hash Tables replaced by rehash operations until
+     * this map is closed, so that concurrent readers of {@link #getReadOnly} never access
+     * released memory.
+     */
+    void retainReplacedTables() {
+        if (retiredTables == null) {
+            retiredTables = new ArrayList<>();
+        }
+    }
+
     @Override
     public V remove(K key, V usingValue) {
+        return remove(key, usingValue, entrySeDeserializer.hash64(key));
+    }
+
+    /**
+     * Same as {@link #remove(Copyable, Copyable)} with the already computed
+     * {@link EntrySeDeserializer#hash64(Object)} of the key.
+     */
+    V remove(K key, V usingValue, long hash) {
         if (entrySeDeserializer.isFreeKey(key)) {
             if (hasFreeKey) {
                 size--;
@@ -156,42 +948,146 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
             }
             return null;
         }
-        int position = getPosition(entrySeDeserializer.hash(key));
+        if (migratingTable != null) {
+            migrate();
+        }
+        if (remove(table, key, hash, usingValue)) {
+            return usingValue;
+        }
+        if (migratingTable != null && remove(migratingTable, key, hash, usingValue)) {
+            return usingValue;
+        }
+        return null;
+    }
+
+    private boolean remove(Table table, K key, long hash, V usingValue) {
+        long position = indexOf(table, key, hash);
+        if (position < 0) {
+            return false;
+        }
+        if (usingValue != null) {
+            entrySeDeserializer.readValue(table.getAddress(position), usingValue);
+        }
+        removeAt(table, position);
+        size--;
+        if (flushScheduler != null) {
+            flushScheduler.recordWrite(numBytesPerEntry);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the entry at the given position, shifting back the entries that follow it in
+     * the cluster as required by the {@link ProbingScheme}.
+     */
+    private void removeAt(Table table, long position) {
+        if (probingScheme == ProbingScheme.ROBIN_HOOD) {
+            backwardShift(table, position);
+        } else {
+            shiftKeys(table, position);
+        }
+    }
+
+    /**
+     * Returns the position of the given key in the given table, or -1 if the key isn't present.
+     */
+    private long indexOf(Table table, K key, long hash) {
+        long position = table.getPosition(hash);
+        long distance = 0;
         do {
-            long address = getAddress(position);
+            long address = table.getAddress(position);
             if (entrySeDeserializer.equalsKey(address, key)) {
-                if (usingValue != null) {
-                    entrySeDeserializer.readValue(address, usingValue);
-                }
-                shiftKeys(position);
-                size--;
-                return usingValue;
+                return position;
             }
             if (entrySeDeserializer.isEmpty(address)) {
-                return null;
+                return -1;
+            }
+            if (probingScheme == ProbingScheme.ROBIN_HOOD
+                    && distance(table, position, address) < distance) {
+                // the key would have displaced this entry.
+                return -1;
+            }
+            position = (position + 1) & table.modulo;
+            distance++;
+        } while (true);
+    }
+
+    /**
+     * Returns the no. of slots between the home slot of the entry at the given position and the
+     * position.
+     */
+    private long distance(Table table, long position, long address) {
+        entrySeDeserializer.readKey(address, probeKey);
+        return (position - table.getPosition(entrySeDeserializer.hash64(probeKey)))
+                & table.modulo;
+    }
+
+    /**
+     * Robin Hood insert of the entry held in {@link #carriedEntries}, that is at the given
+     * distance from its home slot when placed at the given position. Whenever the carried entry
+     * is farther from its home slot than the resident entry is from its own, they are swapped
+     * and the insert carries on with the resident entry.
+     */
+    private void robinHoodInsert(Table table, long position, long distance) {
+        long carriedAddress = carriedEntries.getAddress();
+        long swapAddress = carriedAddress + numBytesPerEntry;
+        do {
+            long address = table.getAddress(position);
+            if (entrySeDeserializer.isEmpty(address)) {
+                entrySeDeserializer.copy(carriedAddress, address);
+                return;
+            }
+            long residentDistance = distance(table, position, address);
+            if (residentDistance < distance) {
+                entrySeDeserializer.copy(address, swapAddress);
+                entrySeDeserializer.copy(carriedAddress, address);
+                entrySeDeserializer.copy(swapAddress, carriedAddress);
+                distance = residentDistance;
+            }
+            position = (position + 1) & table.modulo;
+            distance++;
+        } while (true);
+    }
+
+    /**
+     * Robin Hood removal of the entry at the given position. The following entries of the
+     * cluster are moved back by one slot until an entry that is already in its home slot, or an
+     * empty slot, is found.
+     */
+    private void backwardShift(Table table, long position) {
+        long address = table.getAddress(position);
+        do {
+            long nextPosition = (position + 1) & table.modulo;
+            long nextAddress = table.getAddress(nextPosition);
+            if (entrySeDeserializer.isEmpty(nextAddress)
+                    || distance(table, nextPosition, nextAddress) == 0) {
+                entrySeDeserializer.clear(address);
+                return;
             }
-            position = (position + 1) & modulo;
+            entrySeDeserializer.copy(nextAddress, address);
+            position = nextPosition;
+            address = nextAddress;
         } while (true);
     }
 
-    private void shiftKeys(int currentPosition) {
-        int freeSlot;
+    private void shiftKeys(Table table, long currentPosition) {
+        long freeSlot;
         long freeSlotAddress;
-        int currentKeySlot;
+        long currentKeySlot;
         long currentAddress;
         K key = keyFactory.get();
         do {
             freeSlot = currentPosition;
-            freeSlotAddress = getAddress(freeSlot);
-            currentPosition = (currentPosition + 1) & modulo;
-            currentAddress = getAddress(currentPosition);
+            freeSlotAddress = table.getAddress(freeSlot);
+            currentPosition = (currentPosition + 1) & table.modulo;
+            currentAddress = table.getAddress(currentPosition);
             while (true) {
                 if (entrySeDeserializer.isEmpty(currentAddress)) {
                     entrySeDeserializer.clear(freeSlotAddress);
                     return;
                 }
                 entrySeDeserializer.readKey(currentAddress, key);
-                currentKeySlot = getPosition(entrySeDeserializer.hash(key));
+                currentKeySlot = table.getPosition(entrySeDeserializer.hash64(key));
                 if (freeSlot <= currentPosition) {
                     if (freeSlot >= currentKeySlot || currentKeySlot > currentPosition) {
                         break;
@@ -201,8 +1097,8 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
                         break;
                     }
                 }
-                currentPosition = (currentPosition + 1) & modulo;
-                currentAddress = getAddress(currentPosition);
+                currentPosition = (currentPosition + 1) & table.modulo;
+                currentAddress = table.getAddress(currentPosition);
             }
             entrySeDeserializer.copy(currentAddress, freeSlotAddress);
         } while (true);
@@ -210,98 +1106,551 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
 
     @Override
     public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long sizeAsLong() {
         return size;
     }
 
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Cursor<K, V> cursor = cursor();
+        while (cursor.next()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * An incremental rehash in progress is completed before the cursor is created.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        if (migratingTable != null) {
+            migrate(Long.MAX_VALUE);
+        }
+        return new EntryCursor();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Takes constant time if {@link EntrySeDeserializer#invalidateAll()} succeeds. Otherwise, each
+     * {@link MemoryResource} is zeroed in bulk, like a newly allocated one.
+     */
     @Override
     public void clear() {
-        for (int i = 0; i < memoryResources.size(); i++) {
-            MemoryResource memoryResource = memoryResources.get(i);
-            for (int j = 0; j < memoryResource.capacityInBytes(); j += numBytesPerEntry) {
-                entrySeDeserializer.clear(memoryResource.getAddress() + j);
+        if (migratingTable != null) {
+            release(migratingTable);
+            migratingTable = null;
+        }
+        if (!entrySeDeserializer.invalidateAll()) {
+            for (int i = 0; i < table.memoryResources.size(); i++) {
+                MemoryResource memoryResource = table.memoryResources.get(i);
+                OS.memory().setMemory(memoryResource.getAddress(),
+                        memoryResource.capacityInBytes(), (byte) 0);
             }
         }
+        hasFreeKey = false;
         size = 0;
+        if (flushScheduler != null) {
+            flushScheduler.recordWrite(table.hashTableSize * numBytesPerEntry);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Forces every {@link MemoryResource} of the Hash Table, which only writes something for
+     * memory-mapped ones.
+     */
+    @Override
+    public void flush() {
+        if (migratingTable != null) {
+            flushAll(migratingTable.memoryResources);
+        }
+        flushAll(table.memoryResources);
+    }
+
+    /**
+     * Returns a snapshot of the counters of this map, without scanning the Hash Table.
+     */
+    public MapStats stats() {
+        return new MapStats(size, table.hashTableSize, loadFactor, committedBytes, rehashCount,
+                totalRehashTimeNanos, maxRehashTimeNanos);
+    }
+
+    /**
+     * Returns a snapshot of the counters of this map along with the probe length and cluster
+     * statistics of a scan of the whole Hash Table, which reads every slot and hashes every key.
+     * The snapshot is also published to the {@link MapStatsMXBean} of this map.
+     */
+    public MapStats scanStats() {
+        TableScan tableScan = new TableScan();
+        tableScan.scan(table);
+        if (migratingTable != null) {
+            tableScan.scan(migratingTable);
+        }
+        MapStats mapStats = new MapStats(size, table.hashTableSize, loadFactor, committedBytes,
+                rehashCount, totalRehashTimeNanos, maxRehashTimeNanos, true,
+                tableScan.probeLengthHistogram, tableScan.clusterSizeHistogram,
+                tableScan.totalProbeLength, tableScan.maxProbeLength, tableScan.maxClusterSize);
+        lastScanStats = mapStats;
+        return mapStats;
+    }
+
+    /**
+     * Registers a {@link MapStatsMXBean} for this map with the platform MBean server, under the
+     * {@code io.github.udaysagar2177.maps:type=OffHeapMap,name=<name>} object name. It's
+     * unregistered when this map is closed.
+     *
+     * @param name
+     *         name that identifies this map in the object name
+     * @return the object name of the registered MXBean.
+     * @throws JMException
+     *         if the MXBean can't be registered, for example when the name is already taken
+     */
+    public ObjectName registerStatsMXBean(String name) throws JMException {
+        if (statsObjectName != null) {
+            throw new IllegalStateException("Stats MXBean is already registered as "
+                    + statsObjectName);
+        }
+        ObjectName objectName = new ObjectName("io.github.udaysagar2177.maps:type=OffHeapMap,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StatsMXBean(), objectName);
+        statsObjectName = objectName;
+        return objectName;
     }
 
     @Override
     public void close() throws Exception {
-        for (MemoryResource memoryResource : memoryResources) {
-            memoryResource.close();
+        if (statsObjectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsObjectName);
+            statsObjectName = null;
+        }
+        if (migratingTable != null) {
+            closeAll(migratingTable.memoryResources);
+        }
+        closeAll(table.memoryResources);
+        if (carriedEntries != null) {
+            carriedEntries.close();
+        }
+        if (retiredTables != null) {
+            for (Table retiredTable : retiredTables) {
+                closeAll(retiredTable.memoryResources);
+            }
+            retiredTables.clear();
+        }
+        if (persistentMapFiles != null) {
+            writeHeader(true);
+        }
+    }
+
+    /**
+     * Writes the header of a persistent map.
+     *
+     * @param clean
+     *         true if the map is closed and its data files are forced to the storage device.
+     */
+    private void writeHeader(boolean clean) {
+        PersistentMapFiles.Header header = new PersistentMapFiles.Header();
+        header.clean = clean;
+        header.entrySeDeserializerClassName = entrySeDeserializer.getClass().getName();
+        header.numBytesPerEntry = numBytesPerEntry;
+        header.probingScheme = probingScheme;
+        header.loadFactor = loadFactor;
+        header.hashTableSize = table.hashTableSize;
+        header.numEntriesPerMemoryResource = table.numEntriesPerMemoryResource();
+        header.size = size;
+        header.hasFreeKey = hasFreeKey;
+        header.freeEntry = freeEntry();
+        header.fileNames = fileNames(table);
+        persistentMapFiles.writeHeader(header);
+    }
+
+    /**
+     * Returns the entry of the free key as written by the {@link EntrySeDeserializer}, or zeros
+     * if there is no free key.
+     */
+    private byte[] freeEntry() {
+        byte[] bytes = new byte[numBytesPerEntry];
+        if (hasFreeKey) {
+            DirectMemoryResource freeEntry = new DirectMemoryResource(numBytesPerEntry);
+            try {
+                entrySeDeserializer.write(freeEntry.getAddress(), freeKey, freeValue);
+                OS.memory().copyMemory(freeEntry.getAddress(), bytes,
+                        Unsafe.ARRAY_BYTE_BASE_OFFSET, numBytesPerEntry);
+            } finally {
+                freeEntry.close();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Restores the free key from its entry, as returned by {@link #freeEntry()}.
+     */
+    private void restoreFreeKey(boolean hasFreeKey, byte[] bytes) {
+        this.hasFreeKey = hasFreeKey;
+        if (hasFreeKey) {
+            DirectMemoryResource freeEntry = new DirectMemoryResource(numBytesPerEntry);
+            try {
+                OS.memory().copyMemory(bytes, 0, freeEntry.getAddress(), numBytesPerEntry);
+                entrySeDeserializer.readKey(freeEntry.getAddress(), freeKey);
+                entrySeDeserializer.readValue(freeEntry.getAddress(), freeValue);
+            } finally {
+                freeEntry.close();
+            }
         }
     }
 
-    private int getPosition(int hash) {
-        return hash & modulo;
+    /**
+     * Restores the no. of entries and the free key of a reopened persistent map.
+     */
+    private void restore(PersistentMapFiles.Header header) {
+        restoreFreeKey(header.hasFreeKey, header.freeEntry);
+        if (header.clean) {
+            size = header.size;
+            return;
+        }
+        size = hasFreeKey ? 1 : 0;
+        for (long position = 0; position < table.hashTableSize; position++) {
+            if (!entrySeDeserializer.isEmpty(table.getAddress(position))) {
+                size++;
+            }
+        }
+    }
+
+    private static List<String> fileNames(Table table) {
+        List<String> fileNames = new ArrayList<>(table.memoryResources.size());
+        for (MemoryResource memoryResource : table.memoryResources) {
+            fileNames.add(((MmapMemoryResource) memoryResource).getFile().getName());
+        }
+        return fileNames;
     }
 
     /**
-     * Returns the address of this position in the hash table.
+     * Returns true while an incremental rehash still has entries left in the old Hash Table.
      */
-    private long getAddress(int position) {
-        int resourceIndex = position / maxNumEntriesPerMemoryResource;
-        int internalPosition = position % maxNumEntriesPerMemoryResource;
-        return memoryResources.get(resourceIndex).getAddress()
-                + (internalPosition * numBytesPerEntry);
+    boolean isMigrating() {
+        return migratingTable != null;
     }
 
+    /**
+     * Doubles the Hash Table. As the table size is always a power of two, an entry at home slot
+     * {@code i} of the old table can only have home slot {@code i} or {@code i + oldSize} in the
+     * new table. The old table is walked in order starting right after an empty slot, so that
+     * probe clusters wrapping around the end of the table are moved in their probe order, and
+     * entries are copied as they are into the first empty slot from their new home slot.
+     */
     private void rehash() {
-        List<MemoryResource> oldResources = new ArrayList<>(memoryResources);
+        numReseedsSinceRehash = 0;
+        if (migratingTable != null) {
+            // the previous incremental rehash couldn't keep up, finish it before growing again.
+            migrate(Long.MAX_VALUE);
+        }
+        Table oldTable = table;
+        if (oldTable.hashTableSize > MAX_HASH_TABLE_SIZE / 2) {
+            throw new IllegalStateException(String
+                    .format("Storage gets too large with size %s, load factor %s", size,
+                            loadFactor));
+        }
+        long hashTableSize = oldTable.hashTableSize << 1;
+        this.threshold = Math.max(1, (long) (hashTableSize * (double) loadFactor));
+        if (rehashMode == RehashMode.IN_PLACE && probingScheme == ProbingScheme.LINEAR
+                && retiredTables == null) {
+            growInPlace(oldTable);
+            return;
+        }
+        this.table = allocateTable(hashTableSize);
+        long emptyPosition = firstEmptyPosition(oldTable);
+        long startPosition = (emptyPosition + 1) & oldTable.modulo;
+        if (rehashMode == RehashMode.INCREMENTAL && emptyPosition >= 0) {
+            migratingTable = oldTable;
+            migrationPosition = startPosition;
+            numSlotsToMigrate = oldTable.hashTableSize;
+            return;
+        }
         try {
-            int expectedElements = threshold * 2;
-            this.hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
-            this.threshold = Math.max(1, (int) (hashTableSize * loadFactor));
-            this.modulo = hashTableSize - 1;
+            long position = startPosition;
+            for (long i = 0; i < oldTable.hashTableSize; i++) {
+                long address = oldTable.getAddress(position);
+                if (!entrySeDeserializer.isEmpty(address)) {
+                    moveToTable(address);
+                }
+                position = (position + 1) & oldTable.modulo;
+            }
+            if (persistentMapFiles != null) {
+                // the header must only point to the new files once they hold every entry.
+                flushAll(table.memoryResources);
+                writeHeader(false);
+            }
+        } finally {
+            release(oldTable);
+        }
+        if (persistentMapFiles != null) {
+            persistentMapFiles.deleteStaleFiles(fileNames(table));
+        }
+    }
 
-            List<MemoryResource> newResources = allocateMemory(hashTableSize, numBytesPerEntry);
-            memoryResources.clear();
-            memoryResources.addAll(newResources);
-            newResources.clear();
-
-            size = 0;
-            K key = keyFactory.get();
-            V value = valueFactory.get();
-            V prevValue = valueFactory.get();
-            for (int i = 0; i < oldResources.size(); i++) {
-                MemoryResource memoryResource = oldResources.get(i);
-                long address = memoryResource.getAddress();
-                long endAddress = memoryResource.getAddress() + memoryResource.capacityInBytes();
-                while (address < endAddress) {
-                    if (!entrySeDeserializer.isEmpty(address)) {
-                        entrySeDeserializer.readKey(address, key);
-                        entrySeDeserializer.readValue(address, value);
-                        if (put(key, value, prevValue) != null) {
-                            throw new IllegalStateException(String
-                                    .format("Key %s already has value %s during rehash",
-                                            key, prevValue));
-                        }
-                    }
-                    address += numBytesPerEntry;
+    /**
+     * Moves to a new seed and rebuilds the Hash Table with the same size, after an insert probed
+     * beyond the maximum probe length.
+     */
+    private void reseed() {
+        numReseedsSinceRehash++;
+        if (migratingTable != null) {
+            // the old table must be emptied while the keys still have their old hash.
+            migrate(Long.MAX_VALUE);
+        }
+        ((SeededEntrySeDeserializer<K, V>) entrySeDeserializer).reseed();
+        Table oldTable = table;
+        this.table = allocateTable(oldTable.hashTableSize);
+        try {
+            for (long position = 0; position < oldTable.hashTableSize; position++) {
+                long address = oldTable.getAddress(position);
+                if (!entrySeDeserializer.isEmpty(address)) {
+                    moveToTable(address);
                 }
             }
         } finally {
-            for (MemoryResource oldResource : oldResources) {
-                try {
-                    oldResource.close();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+            release(oldTable);
+        }
+    }
+
+    /**
+     * Doubles the given Hash Table in place for {@link RehashMode#IN_PLACE}. The old table becomes
+     * the lower half of the new one and only the upper half is allocated, by growing the single
+     * memory resource of a small table or by adding memory resources to a large one.
+     *
+     * The entries are then moved like in {@link #rehash()}, in order starting right after an
+     * empty slot, and each one goes to the first slot from its new home slot that is empty or
+     * its own, so the entries that keep their slot aren't written. An entry whose new home slot
+     * is in the lower half ends up at or before its old slot, and one whose new home slot is in
+     * the upper half only probes the upper half, so an entry never skips one that wasn't moved
+     * yet, which could still leave and break its probe sequence. The few entries that would probe
+     * past the end of the table into the lower half are only inserted once every other entry was
+     * moved.
+     */
+    private void growInPlace(Table oldTable) {
+        long oldHashTableSize = oldTable.hashTableSize;
+        long hashTableSize = oldHashTableSize << 1;
+        int numEntriesPerMemoryResource = oldTable.numEntriesPerMemoryResource();
+        List<MemoryResource> memoryResources = new ArrayList<>(oldTable.memoryResources);
+        if (hashTableSize <= maxNumEntriesPerMemoryResource) {
+            numEntriesPerMemoryResource = (int) hashTableSize;
+            memoryResources.set(0, grow(memoryResources.get(0),
+                    numEntriesPerMemoryResource * numBytesPerEntry));
+        } else {
+            List<MemoryResource> newMemoryResources = new ArrayList<>();
+            try {
+                for (long i = oldHashTableSize; i < hashTableSize;
+                     i += numEntriesPerMemoryResource) {
+                    newMemoryResources.add(memoryResourceFactory
+                            .apply(numEntriesPerMemoryResource * numBytesPerEntry));
+                }
+            } catch (RuntimeException | Error e) {
+                closeAll(newMemoryResources);
+                throw e;
+            }
+            memoryResources.addAll(newMemoryResources);
+        }
+        committedBytes += oldHashTableSize * numBytesPerEntry;
+        Table table = new Table(memoryResources, hashTableSize, numEntriesPerMemoryResource,
+                numBytesPerEntry);
+        this.table = table;
+
+        long emptyPosition = -1;
+        for (long position = 0; position < oldHashTableSize && emptyPosition < 0; position++) {
+            if (entrySeDeserializer.isEmpty(table.getAddress(position))) {
+                emptyPosition = position;
+            }
+        }
+        // a full old table has no slot to start from, so all of its entries are deferred.
+        boolean deferAll = emptyPosition < 0;
+        List<byte[]> deferredEntries = new ArrayList<>();
+        long position = (emptyPosition + 1) & oldTable.modulo;
+        for (long i = 0; i < oldHashTableSize; i++) {
+            long address = table.getAddress(position);
+            if (!entrySeDeserializer.isEmpty(address)) {
+                long toPosition = deferAll ? -1 : inPlacePosition(table, position, address);
+                if (toPosition < 0) {
+                    byte[] deferredEntry = new byte[numBytesPerEntry];
+                    OS.memory().copyMemory(address, deferredEntry, Unsafe.ARRAY_BYTE_BASE_OFFSET,
+                            numBytesPerEntry);
+                    deferredEntries.add(deferredEntry);
+                    entrySeDeserializer.clear(address);
+                } else if (toPosition != position) {
+                    entrySeDeserializer.copy(address, table.getAddress(toPosition));
+                    entrySeDeserializer.clear(address);
+                }
+            }
+            position = (position + 1) & oldTable.modulo;
+        }
+        if (!deferredEntries.isEmpty()) {
+            DirectMemoryResource entry = new DirectMemoryResource(numBytesPerEntry);
+            try {
+                for (byte[] deferredEntry : deferredEntries) {
+                    OS.memory().copyMemory(deferredEntry, 0, entry.getAddress(),
+                            numBytesPerEntry);
+                    moveToTable(entry.getAddress());
                 }
+            } finally {
+                entry.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the first empty position from the home slot of the entry at the given position,
+     * counting its own slot as empty, or -1 if it's only found after wrapping around the end of
+     * the table.
+     */
+    private long inPlacePosition(Table table, long entryPosition, long entryAddress) {
+        entrySeDeserializer.readKey(entryAddress, migrationKey);
+        long position = table.getPosition(entrySeDeserializer.hash64(migrationKey));
+        while (position != entryPosition
+                && !entrySeDeserializer.isEmpty(table.getAddress(position))) {
+            if (position == table.modulo) {
+                return -1;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Grows the given memory resource to the given capacity, keeping its content. A
+     * {@link MmapMemoryResource} is extended where it is, any other resource is copied into a
+     * new one and closed.
+     */
+    private MemoryResource grow(MemoryResource memoryResource, int capacityInBytes) {
+        if (memoryResource instanceof MmapMemoryResource) {
+            ((MmapMemoryResource) memoryResource).extend(capacityInBytes);
+            return memoryResource;
+        }
+        MemoryResource grownMemoryResource = memoryResourceFactory.apply(capacityInBytes);
+        OS.memory().copyMemory(memoryResource.getAddress(), grownMemoryResource.getAddress(),
+                memoryResource.capacityInBytes());
+        closeAll(Collections.singletonList(memoryResource));
+        return grownMemoryResource;
+    }
+
+    private void migrate() {
+        migrate(MIGRATION_SLOTS_PER_OPERATION);
+    }
+
+    /**
+     * Migrates at least the given no. of slots from the old Hash Table into the current one. Runs
+     * of occupied slots are always migrated as a whole so that every key left behind in the old
+     * table stays reachable from its home slot.
+     */
+    private void migrate(long numSlots) {
+        Table oldTable = migratingTable;
+        while (numSlots > 0 && numSlotsToMigrate > 0) {
+            long address = oldTable.getAddress(migrationPosition);
+            while (!entrySeDeserializer.isEmpty(address)) {
+                moveToTable(address);
+                entrySeDeserializer.clear(address);
+                migrationPosition = (migrationPosition + 1) & oldTable.modulo;
+                numSlotsToMigrate--;
+                numSlots--;
+                address = oldTable.getAddress(migrationPosition);
+            }
+            migrationPosition = (migrationPosition + 1) & oldTable.modulo;
+            numSlotsToMigrate--;
+            numSlots--;
+        }
+        if (numSlotsToMigrate == 0) {
+            migratingTable = null;
+            release(oldTable);
+        }
+    }
+
+    /**
+     * Copies the entry at the given address into the first empty slot from its home slot in the
+     * current Hash Table. Only the key is read, to compute the hash. The key must not be present
+     * in the current table already.
+     */
+    private void moveToTable(long fromAddress) {
+        entrySeDeserializer.readKey(fromAddress, migrationKey);
+        Table table = this.table;
+        long position = table.getPosition(entrySeDeserializer.hash64(migrationKey));
+        if (probingScheme == ProbingScheme.ROBIN_HOOD) {
+            // puts during an incremental rehash may have displaced entries of the new table.
+            entrySeDeserializer.copy(fromAddress, carriedEntries.getAddress());
+            robinHoodInsert(table, position, 0);
+            return;
+        }
+        long address = table.getAddress(position);
+        while (!entrySeDeserializer.isEmpty(address)) {
+            position = (position + 1) & table.modulo;
+            address = table.getAddress(position);
+        }
+        entrySeDeserializer.copy(fromAddress, address);
+    }
+
+    /**
+     * Returns the first empty position of the given table, or -1 if the table is full. Only very
+     * small tables can be full, as the threshold is computed from the load factor.
+     */
+    private long firstEmptyPosition(Table table) {
+        for (long position = 0; position < table.hashTableSize; position++) {
+            if (entrySeDeserializer.isEmpty(table.getAddress(position))) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private Table allocateTable(long hashTableSize) {
+        int numEntriesPerMemoryResource =
+                (int) Math.min(hashTableSize, maxNumEntriesPerMemoryResource);
+        int numMemoryResources = (int) (hashTableSize / numEntriesPerMemoryResource);
+        List<MemoryResource> memoryResources = new ArrayList<>(numMemoryResources);
+        try {
+            for (int i = 0; i < numMemoryResources; i++) {
+                memoryResources.add(memoryResourceFactory
+                        .apply(numEntriesPerMemoryResource * numBytesPerEntry));
             }
+        } catch (RuntimeException | Error e) {
+            closeAll(memoryResources);
+            throw e;
+        }
+        committedBytes += hashTableSize * numBytesPerEntry;
+        return new Table(memoryResources, hashTableSize, numEntriesPerMemoryResource,
+                numBytesPerEntry);
+    }
+
+    private void release(Table table) {
+        if (retiredTables != null) {
+            retiredTables.add(table);
+            return;
+        }
+        committedBytes -= table.hashTableSize * numBytesPerEntry;
+        closeAll(table.memoryResources);
+    }
+
+    private static void flushAll(List<MemoryResource> memoryResources) {
+        for (MemoryResource memoryResource : memoryResources) {
+            memoryResource.flush();
         }
     }
 
-    private List<MemoryResource> allocateMemory(int numElements, int numBytesPerEntry) {
-        List<MemoryResource> newResources = new ArrayList<>();
-        long requiredMemory = ((long) numElements) * numBytesPerEntry;
-        while (requiredMemory > 0) {
-            int capacity = (int) Math.min(requiredMemory, MAX_MEMORY_RESOURCE_CAPACITY);
-            newResources.add(memoryResourceFactory.apply(capacity));
-            requiredMemory -= capacity;
+    private static void closeAll(List<MemoryResource> memoryResources) {
+        for (MemoryResource memoryResource : memoryResources) {
+            try {
+                memoryResource.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
-        return newResources;
     }
 
-    private static void checkArguments(int numEntries, float loadFactor, int numBytesPerEntry) {
+    private static void checkArguments(long numEntries, float loadFactor, int numBytesPerEntry) {
         if (loadFactor <= 0 || loadFactor >= 1) {
             throw new IllegalArgumentException("loadFactor must be between 0 and 1");
         }
@@ -314,4 +1663,257 @@ public class OffHeapMapImpl<K extends Copyable<K>, V extends Copyable<V>>
                             MAX_MEMORY_RESOURCE_CAPACITY));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Accumulates the probe lengths and cluster sizes of the entries of Hash Tables.
+     */
+    private final class TableScan {
+
+        private final long[] probeLengthHistogram = new long[MapStats.HISTOGRAM_SIZE];
+        private final long[] clusterSizeHistogram = new long[MapStats.HISTOGRAM_SIZE];
+        private long totalProbeLength = 0;
+        private long maxProbeLength = 0;
+        private long maxClusterSize = 0;
+
+        /**
+         * Walks the table from right after an empty slot, so that a cluster wrapping around the
+         * end of the table is counted once.
+         */
+        private void scan(Table table) {
+            long position = (firstEmptyPosition(table) + 1) & table.modulo;
+            long clusterSize = 0;
+            for (long i = 0; i < table.hashTableSize; i++) {
+                long address = table.getAddress(position);
+                if (entrySeDeserializer.isEmpty(address)) {
+                    addCluster(clusterSize);
+                    clusterSize = 0;
+                } else {
+                    clusterSize++;
+                    long probeLength = distance(table, position, address) + 1;
+                    probeLengthHistogram[bucket(probeLength)]++;
+                    totalProbeLength += probeLength;
+                    maxProbeLength = Math.max(maxProbeLength, probeLength);
+                }
+                position = (position + 1) & table.modulo;
+            }
+            addCluster(clusterSize);
+        }
+
+        private void addCluster(long clusterSize) {
+            if (clusterSize > 0) {
+                clusterSizeHistogram[bucket(clusterSize)]++;
+                maxClusterSize = Math.max(maxClusterSize, clusterSize);
+            }
+        }
+
+        private int bucket(long length) {
+            return (int) Math.min(length - 1, MapStats.HISTOGRAM_SIZE - 1);
+        }
+    }
+
+    /**
+     * {@link MapStatsMXBean} that reads the counters of this map and the latest scan.
+     */
+    private final class StatsMXBean implements MapStatsMXBean {
+
+        private final MapStats emptyScan = new MapStats(0, 0, 0, 0, 0, 0, 0);
+
+        @Override
+        public long getSize() {
+            return stats().getSize();
+        }
+
+        @Override
+        public long getHashTableSize() {
+            return stats().getHashTableSize();
+        }
+
+        @Override
+        public float getLoadFactor() {
+            return loadFactor;
+        }
+
+        @Override
+        public double getActualLoadFactor() {
+            return stats().getActualLoadFactor();
+        }
+
+        @Override
+        public long getCommittedBytes() {
+            return stats().getCommittedBytes();
+        }
+
+        @Override
+        public long getRehashCount() {
+            return stats().getRehashCount();
+        }
+
+        @Override
+        public long getTotalRehashTimeNanos() {
+            return stats().getTotalRehashTimeNanos();
+        }
+
+        @Override
+        public long getMaxRehashTimeNanos() {
+            return stats().getMaxRehashTimeNanos();
+        }
+
+        @Override
+        public double getAverageProbeLength() {
+            return lastScan().getAverageProbeLength();
+        }
+
+        @Override
+        public long getMaxProbeLength() {
+            return lastScan().getMaxProbeLength();
+        }
+
+        @Override
+        public long getMaxClusterSize() {
+            return lastScan().getMaxClusterSize();
+        }
+
+        @Override
+        public long[] getProbeLengthHistogram() {
+            return lastScan().getProbeLengthHistogram();
+        }
+
+        @Override
+        public long[] getClusterSizeHistogram() {
+            return lastScan().getClusterSizeHistogram();
+        }
+
+        private MapStats lastScan() {
+            MapStats mapStats = lastScanStats;
+            return mapStats == null ? emptyScan : mapStats;
+        }
+    }
+
+    /**
+     * {@link Cursor} that visits the free key first and then walks the Hash Table in order,
+     * starting right after an empty slot. As {@link #removeAt(Table, long)} never moves an
+     * entry across an empty slot, removing the current entry can only move entries that are yet
+     * to be visited, and the slot of the removed entry is visited again.
+     */
+    private final class EntryCursor implements Cursor<K, V> {
+
+        private static final long NO_POSITION = -2;
+
+        private final K key = keyFactory.get();
+        private final V value = valueFactory.get();
+        private final Table table = OffHeapMapImpl.this.table;
+        private long position;
+        private long numSlotsToVisit;
+        private boolean freeKeyVisited = false;
+        private long currentPosition = NO_POSITION;
+
+        private EntryCursor() {
+            this.position = (firstEmptyPosition(table) + 1) & table.modulo;
+            this.numSlotsToVisit = table.hashTableSize;
+        }
+
+        @Override
+        public boolean next() {
+            if (!freeKeyVisited) {
+                freeKeyVisited = true;
+                if (hasFreeKey) {
+                    key.copyFrom(freeKey);
+                    value.copyFrom(freeValue);
+                    currentPosition = FREE_KEY_POSITION;
+                    return true;
+                }
+            }
+            while (numSlotsToVisit > 0) {
+                long address = table.getAddress(position);
+                currentPosition = position;
+                position = (position + 1) & table.modulo;
+                numSlotsToVisit--;
+                if (!entrySeDeserializer.isEmpty(address)) {
+                    entrySeDeserializer.readKey(address, key);
+                    entrySeDeserializer.readValue(address, value);
+                    return true;
+                }
+            }
+            currentPosition = NO_POSITION;
+            return false;
+        }
+
+        @Override
+        public K key() {
+            checkPositioned();
+            return key;
+        }
+
+        @Override
+        public V value() {
+            checkPositioned();
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            checkPositioned();
+            if (currentPosition == FREE_KEY_POSITION) {
+                hasFreeKey = false;
+            } else {
+                removeAt(table, currentPosition);
+                // an entry yet to be visited may have been shifted into the current slot.
+                position = currentPosition;
+                numSlotsToVisit++;
+            }
+            size--;
+            currentPosition = NO_POSITION;
+        }
+
+        private void checkPositioned() {
+            if (currentPosition == NO_POSITION) {
+                throw new IllegalStateException("Cursor is not positioned on an entry");
+            }
+        }
+    }
+
+    /**
+     * Hash Table backed by a list of {@link MemoryResource}s of the same power of two no. of
+     * entries.
+     */
+    private static final class Table {
+
+        private final List<MemoryResource> memoryResources;
+        private final long[] addresses;
+        private final long hashTableSize;
+        private final long modulo;
+        private final int resourceShift;
+        private final long resourceMask;
+        private final int numBytesPerEntry;
+
+        private Table(List<MemoryResource> memoryResources, long hashTableSize,
+                      int numEntriesPerMemoryResource, int numBytesPerEntry) {
+            this.memoryResources = memoryResources;
+            this.addresses = new long[memoryResources.size()];
+            for (int i = 0; i < addresses.length; i++) {
+                addresses[i] = memoryResources.get(i).getAddress();
+            }
+            this.hashTableSize = hashTableSize;
+            this.modulo = hashTableSize - 1;
+            this.resourceShift = Integer.numberOfTrailingZeros(numEntriesPerMemoryResource);
+            this.resourceMask = numEntriesPerMemoryResource - 1;
+            this.numBytesPerEntry = numBytesPerEntry;
+        }
+
+        private long getPosition(long hash) {
+            return hash & modulo;
+        }
+
+        private int numEntriesPerMemoryResource() {
+            return (int) (resourceMask + 1);
+        }
+
+        /**
+         * Returns the address of this position in the hash table.
+         */
+        private long getAddress(long position) {
+            return addresses[(int) (position >>> resourceShift)]
+                    + (position & resourceMask) * numBytesPerEntry;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
+import io.github.udaysagar2177.maps.utils.FileUtils;
+
+/**
+ * The files of a persistent {@link OffHeapMapImpl} in a directory: a header file named
+ * {@code <name>.header} and the data files of the Hash Table, named {@code <name>_<index>.dat}
+ * with an index that increases with every data file created, so that the files of a new Hash
+ * Table never overwrite the ones of the table it replaces.
+ *
+ * The header is written to a temporary file that is forced to the storage device and then
+ * renamed over the previous header, so that a crash leaves either the old or the new header
+ * behind. The directory is forced after the rename, so the data files of the old header are only
+ * deleted once the new header is durable. It ends with a CRC32 of its content.
+ *
+ * @author uday
+ */
+final class PersistentMapFiles {
+
+    private static final int MAGIC = 0x41555241;
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final String name;
+    private final Pattern dataFilePattern;
+    private long nextFileIndex;
+
+    PersistentMapFiles(File directory, String name) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException(String.format("%s is not a directory",
+                    directory.getAbsolutePath()));
+        }
+        this.directory = directory;
+        this.name = name;
+        this.dataFilePattern = Pattern.compile(Pattern.quote(name) + "_(\\d+)\\.dat");
+        for (File file : dataFiles()) {
+            nextFileIndex = Math.max(nextFileIndex, fileIndex(file) + 1);
+        }
+    }
+
+    boolean exists() {
+        return headerFile().exists();
+    }
+
+    /**
+     * Creates a persistent {@link MemoryResource} backed by a new data file.
+     */
+    MemoryResource newMemoryResource(int capacityInBytes) {
+        File file = new File(directory, String.format("%s_%d.dat", name, nextFileIndex++));
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException(String.format("Unable to delete file %s",
+                    file.getAbsolutePath()));
+        }
+        return new MmapMemoryResource(file, capacityInBytes);
+    }
+
+    /**
+     * Maps the data files listed in the given header.
+     */
+    List<MemoryResource> openMemoryResources(Header header, int numBytesPerEntry) {
+        List<MemoryResource> memoryResources = new ArrayList<>(header.fileNames.size());
+        try {
+            for (String fileName : header.fileNames) {
+                File file = new File(directory, fileName);
+                if (!file.exists()) {
+                    throw new IllegalStateException(String.format("Data file %s is missing",
+                            file.getAbsolutePath()));
+                }
+                memoryResources.add(new MmapMemoryResource(file,
+                        header.numEntriesPerMemoryResource * numBytesPerEntry));
+            }
+        } catch (RuntimeException e) {
+            for (MemoryResource memoryResource : memoryResources) {
+                try {
+                    memoryResource.close();
+                } catch (Exception closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            throw e;
+        }
+        return memoryResources;
+    }
+
+    /**
+     * Deletes the data files that aren't listed in the given file names, i.e. the ones of
+     * replaced Hash Tables and of rehash operations that didn't complete.
+     */
+    void deleteStaleFiles(List<String> fileNames) {
+        for (File file : dataFiles()) {
+            if (!fileNames.contains(file.getName()) && !file.delete()) {
+                throw new IllegalStateException(String.format("Unable to delete file %s",
+                        file.getAbsolutePath()));
+            }
+        }
+    }
+
+    Header readHeader() {
+        File headerFile = headerFile();
+        try {
+            byte[] bytes = Files.readAllBytes(headerFile.toPath());
+            if (bytes.length < Long.BYTES) {
+                throw new IllegalStateException(String.format("Header %s is truncated",
+                        headerFile.getAbsolutePath()));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - Long.BYTES);
+            if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES)
+                    .getLong()) {
+                throw new IllegalStateException(String.format("Header %s is corrupted",
+                        headerFile.getAbsolutePath()));
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException(String.format("%s is not a map header",
+                        headerFile.getAbsolutePath()));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalStateException(String.format(
+                        "Header %s has unsupported version %s", headerFile.getAbsolutePath(),
+                        version));
+            }
+            Header header = new Header();
+            header.clean = in.readBoolean();
+            header.entrySeDeserializerClassName = in.readUTF();
+            header.numBytesPerEntry = in.readInt();
+            header.probingScheme = ProbingScheme.valueOf(in.readUTF());
+            header.loadFactor = in.readFloat();
+            header.hashTableSize = in.readLong();
+            header.numEntriesPerMemoryResource = in.readInt();
+            header.size = in.readLong();
+            header.hasFreeKey = in.readBoolean();
+            header.freeEntry = new byte[header.numBytesPerEntry];
+            in.readFully(header.freeEntry);
+            int numFiles = in.readInt();
+            header.fileNames = new ArrayList<>(numFiles);
+            for (int i = 0; i < numFiles; i++) {
+                header.fileNames.add(in.readUTF());
+            }
+            return header;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void writeHeader(Header header) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(header.clean);
+            out.writeUTF(header.entrySeDeserializerClassName);
+            out.writeInt(header.numBytesPerEntry);
+            out.writeUTF(header.probingScheme.name());
+            out.writeFloat(header.loadFactor);
+            out.writeLong(header.hashTableSize);
+            out.writeInt(header.numEntriesPerMemoryResource);
+            out.writeLong(header.size);
+            out.writeBoolean(header.hasFreeKey);
+            out.write(header.freeEntry);
+            out.writeInt(header.fileNames.size());
+            for (String fileName : header.fileNames) {
+                out.writeUTF(fileName);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+
+            File temporaryFile = new File(directory, name + ".header.tmp");
+            try (RandomAccessFile raf = new RandomAccessFile(temporaryFile, "rw")) {
+                raf.setLength(0);
+                FileChannel fileChannel = raf.getChannel();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+                fileChannel.force(true);
+            }
+            Files.move(temporaryFile.toPath(), headerFile().toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileUtils.forceDirectory(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File headerFile() {
+        return new File(directory, name + ".header");
+    }
+
+    private List<File> dataFiles() {
+        List<File> dataFiles = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (dataFilePattern.matcher(file.getName()).matches()) {
+                    dataFiles.add(file);
+                }
+            }
+        }
+        return dataFiles;
+    }
+
+    private long fileIndex(File dataFile) {
+        Matcher matcher = dataFilePattern.matcher(dataFile.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(dataFile.getName() + " is not a data file");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Content of the header file. The free entry holds the free key and its value, written by
+     * {@link io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer#write}.
+     */
+    static final class Header {
+
+        boolean clean;
+        String entrySeDeserializerClassName;
+        int numBytesPerEntry;
+        ProbingScheme probingScheme;
+        float loadFactor;
+        long hashTableSize;
+        int numEntriesPerMemoryResource;
+        long size;
+        boolean hasFreeKey;
+        byte[] freeEntry;
+        List<String> fileNames;
+    }
+}
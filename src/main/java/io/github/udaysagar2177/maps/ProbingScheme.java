@@ -0,0 +1,28 @@
+package io.github.udaysagar2177.maps;
+
+/**
+ * Collision resolution schemes that {@link OffHeapMapImpl} can use. Both of them probe the slots
+ * following the home slot of a key, one after another, and keep the same memory layout.
+ *
+ * @author uday
+ */
+public enum ProbingScheme {
+
+    /**
+     * Plain linear probing. A key is inserted into the first empty slot from its home slot, and a
+     * lookup for a missing key walks until it finds an empty slot. The cheapest scheme at low
+     * load factors, but the probes of missing keys get long at high load factors.
+     */
+    LINEAR,
+
+    /**
+     * Linear probing with Robin Hood insertion. An insert displaces any entry that is closer to
+     * its home slot than the inserted entry is to its own, and a remove shifts the following
+     * entries of the cluster back by one slot. This keeps the entries of a cluster ordered by home
+     * slot, so a lookup for a missing key stops as soon as it finds an entry that is closer to
+     * its home slot than the key would be, and the probe lengths stay short and even at load
+     * factors up to 0.9 and beyond. Finding the home slot of an entry requires hashing its key,
+     * which makes inserts, removes and probes past the home slot more expensive.
+     */
+    ROBIN_HOOD
+}
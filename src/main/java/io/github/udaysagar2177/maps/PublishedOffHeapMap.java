@@ -0,0 +1,202 @@
+package io.github.udaysagar2177.maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+
+/**
+ * A read only {@link OffHeapMap} view of the image that {@link FrozenOffHeapMap#publish(File)}
+ * keeps publishing into a file. Any no. of processes can open the same file, and they all share
+ * one copy of its pages in the page cache.
+ *
+ * {@link #refresh()} swaps to the image that's currently in the file, if it was replaced since
+ * the last refresh. Threads keep reading while the swap happens: a get reads either the old or
+ * the new image, and the old image is unmapped once the gets that started on it are done.
+ *
+ * {@link #get(Copyable, Copyable)}, {@link #size()}, {@link #sizeAsLong()} and
+ * {@link #refresh()} can be called from any thread. {@link #forEach(BiConsumer)} and
+ * {@link #cursor()} read the current image, so they must not be used across a refresh, and every
+ * modification throws {@link UnsupportedOperationException}.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class PublishedOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    private final File file;
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final Supplier<K> keyFactory;
+    private final Supplier<V> valueFactory;
+    private volatile Image<K, V> image;
+
+    public PublishedOffHeapMap(File file,
+                               EntrySeDeserializer<K, V> entrySeDeserializer,
+                               Supplier<K> keyFactory,
+                               Supplier<V> valueFactory) {
+        this.file = file;
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.keyFactory = keyFactory;
+        this.valueFactory = valueFactory;
+        this.image = openImage();
+    }
+
+    /**
+     * Swaps to the image in the file if it was replaced since it was last opened, and waits for
+     * the gets on the previous image to be done before unmapping it.
+     *
+     * @return true if a new image was opened.
+     */
+    public synchronized boolean refresh() {
+        Image<K, V> previousImage = image;
+        if (previousImage == null) {
+            throw new IllegalStateException("Map is closed");
+        }
+        if (previousImage.fileKey.equals(fileKey())) {
+            return false;
+        }
+        image = openImage();
+        release(previousImage);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method can be called from any thread, also while another thread refreshes the map.
+     */
+    @Override
+    public V get(K key, V usingValue) {
+        while (true) {
+            Image<K, V> currentImage = image;
+            currentImage.numReaders.incrementAndGet();
+            try {
+                // a refresh that swapped the image before the increment may already unmap it.
+                if (currentImage == image) {
+                    return currentImage.map.get(key, usingValue);
+                }
+            } finally {
+                currentImage.numReaders.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is read only.
+     */
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        throw new UnsupportedOperationException("PublishedOffHeapMap is read only");
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is read only.
+     */
+    @Override
+    public V remove(K key, V usingValue) {
+        throw new UnsupportedOperationException("PublishedOffHeapMap is read only");
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(sizeAsLong(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long sizeAsLong() {
+        return image.map.sizeAsLong();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        image.map.forEach(action);
+    }
+
+    @Override
+    public Cursor<K, V> cursor() {
+        return image.map.cursor();
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *         always, as this map is read only.
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("PublishedOffHeapMap is read only");
+    }
+
+    /**
+     * Unmaps the current image once the gets on it are done. No gets must start afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        Image<K, V> currentImage = image;
+        if (currentImage != null) {
+            image = null;
+            release(currentImage);
+        }
+    }
+
+    private Image<K, V> openImage() {
+        // the key is read before the file is opened, so that a concurrent publish can at worst
+        // make the next refresh open the same image again.
+        Object fileKey = fileKey();
+        return new Image<>(fileKey, FrozenOffHeapMap.open(file, entrySeDeserializer, keyFactory,
+                valueFactory));
+    }
+
+    /**
+     * Returns a key that changes whenever the file is replaced: its inode where the platform
+     * provides one, otherwise its modification time and size.
+     */
+    private Object fileKey() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            if (fileKey != null) {
+                return fileKey;
+            }
+            return attributes.lastModifiedTime() + "/" + attributes.size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void release(Image<?, ?> image) {
+        while (image.numReaders.get() != 0) {
+            Thread.yield();
+        }
+        image.map.close();
+    }
+
+    /**
+     * An opened image and the no. of gets that are reading it.
+     */
+    private static final class Image<K extends Copyable<K>, V extends Copyable<V>> {
+
+        private final Object fileKey;
+        private final FrozenOffHeapMap<K, V> map;
+        private final AtomicInteger numReaders = new AtomicInteger();
+
+        private Image(Object fileKey, FrozenOffHeapMap<K, V> map) {
+            this.fileKey = fileKey;
+            this.map = map;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.udaysagar2177.maps.memory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * An {@link MemoryResource} implementation that maps a region of an existing file read only, so
+ * that any no. of processes that map the same file share its pages in the page cache instead of
+ * each holding a private copy.
+ *
+ * The memory must only be read. Writing to it crashes the JVM, so this resource is only meant for
+ * data structures that never modify their memory once built, like the images published by
+ * {@link io.github.udaysagar2177.maps.FrozenOffHeapMap#publish(java.io.File)}.
+ *
+ * The mapping stays valid after the channel is closed and after the file is deleted or replaced,
+ * until this resource is closed.
+ *
+ * @author uday
+ */
+public class ReadOnlyMmapMemoryResource
+        implements io.github.udaysagar2177.maps.memory.MemoryResource {
+
+    private final DirectBuffer byteBuffer;
+    private final long address;
+    private final int capacityInBytes;
+
+    public ReadOnlyMmapMemoryResource(FileChannel fileChannel, long position,
+                                      int capacityInBytes) {
+        this.capacityInBytes = capacityInBytes;
+        try {
+            if (position + capacityInBytes > fileChannel.size()) {
+                throw new IllegalArgumentException(String.format(
+                        "Region of %s bytes at %s is beyond the end of the file", capacityInBytes,
+                        position));
+            }
+            this.byteBuffer = (DirectBuffer) fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                    position, capacityInBytes);
+            this.address = byteBuffer.address();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int capacityInBytes() {
+        return capacityInBytes;
+    }
+
+    @Override
+    public long getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        byteBuffer.cleaner().clean();
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.udaysagar2177.maps;
+
+/**
+ * Strategies that {@link OffHeapMapImpl} can use to grow its Hash Table once the load factor is
+ * exceeded.
+ *
+ * @author uday
+ */
+public enum RehashMode {
+
+    /**
+     * Moves every entry into the bigger Hash Table inside the put that crossed the threshold. This
+     * gives the best overall throughput, but that one put pays for the whole rehash.
+     */
+    ALL_AT_ONCE,
+
+    /**
+     * Keeps the old and the new Hash Tables side by side and moves a bounded number of slots from
+     * the old table on every following put, get and remove. This removes the latency spike of
+     * {@link #ALL_AT_ONCE}, but lookups may probe both tables until the migration completes.
+     */
+    INCREMENTAL,
+
+    /**
+     * Doubles the Hash Table where it is and moves the entries within it, like
+     * {@link #ALL_AT_ONCE} but without rehashing into a second table. A table of several memory
+     * resources gets as many new ones, and the single memory resource of a small table is grown,
+     * which for a {@link io.github.udaysagar2177.maps.memory.MmapMemoryResource} only extends and
+     * remaps its file. For those tables, only the new half is allocated, which caps the peak
+     * memory or disk usage of a rehash at twice the old table instead of three times. Any other
+     * single memory resource, e.g. a
+     * {@link io.github.udaysagar2177.maps.memory.DirectMemoryResource}, is copied into a new one
+     * twice its size, so its peak usage stays at three times the old table. In every case, the
+     * entries that keep their slot aren't moved.
+     *
+     * Only applies to {@link ProbingScheme#LINEAR} maps that aren't read concurrently, other maps,
+     * e.g. a {@link SingleWriterOffHeapMap}, rehash like {@link #ALL_AT_ONCE}.
+     */
+    IN_PLACE
+}
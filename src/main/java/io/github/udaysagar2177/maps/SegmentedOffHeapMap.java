@@ -0,0 +1,285 @@
+package io.github.udaysagar2177.maps;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.GenerationalEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+
+/**
+ * A threadsafe implementation of {@link OffHeapMap} that splits the entries over a power of two
+ * no. of independent {@link OffHeapMapImpl} segments, each guarded by its own lock. Threads that
+ * access different segments don't contend with each other, and each segment rehashes on its own,
+ * so a rehash only blocks the keys of one segment.
+ *
+ * Keys are routed to a segment by the high bits of their
+ * {@link EntrySeDeserializer#hash64(Object)} after one more round of mixing, because the 64 bit
+ * hash of the int based {@link EntrySeDeserializer}s is a sign extended int whose high bits carry
+ * no information. The segment reuses the hash, so each operation hashes its key only once.
+ *
+ * Segments are guarded by exclusive locks, even for reads. A get isn't a pure read while a
+ * segment migrates entries with {@link RehashMode#INCREMENTAL}, and an optimistic read could
+ * dereference {@link MemoryResource}s that a concurrent rehash has just released.
+ *
+ * The given {@link EntrySeDeserializer} is shared by all segments and is used outside of the
+ * locks, so it must be threadsafe and must not keep state per map. All of the
+ * {@link EntrySeDeserializer}s of this library are, except {@link GenerationalEntrySeDeserializer},
+ * whose generation each segment would bump on its own clear, so it isn't supported.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class SegmentedOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final OffHeapMapImpl<K, V>[] segments;
+    private final ReentrantLock[] locks;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    public SegmentedOffHeapMap(long expectedElements,
+                               float loadFactor,
+                               int numSegments,
+                               EntrySeDeserializer<K, V> entrySeDeserializer,
+                               Function<Integer, MemoryResource> memoryResourceFactory,
+                               Supplier<K> keyFactory,
+                               Supplier<V> valueFactory) {
+        this(expectedElements, loadFactor, numSegments, entrySeDeserializer,
+                memoryResourceFactory, keyFactory, valueFactory, RehashMode.ALL_AT_ONCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SegmentedOffHeapMap(long expectedElements,
+                               float loadFactor,
+                               int numSegments,
+                               EntrySeDeserializer<K, V> entrySeDeserializer,
+                               Function<Integer, MemoryResource> memoryResourceFactory,
+                               Supplier<K> keyFactory,
+                               Supplier<V> valueFactory,
+                               RehashMode rehashMode) {
+        if (numSegments <= 0 || Integer.bitCount(numSegments) != 1) {
+            throw new IllegalArgumentException("numSegments must be a positive power of two!");
+        }
+        if (expectedElements <= 0) {
+            throw new IllegalArgumentException("numEntries must be positive!");
+        }
+        if (entrySeDeserializer instanceof GenerationalEntrySeDeserializer) {
+            throw new IllegalArgumentException(
+                    "Generations of entries can't be shared between segments");
+        }
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.segments = new OffHeapMapImpl[numSegments];
+        this.locks = new ReentrantLock[numSegments];
+        this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(numSegments);
+        this.segmentMask = numSegments - 1;
+        long expectedElementsPerSegment = (expectedElements + numSegments - 1) / numSegments;
+        try {
+            for (int i = 0; i < numSegments; i++) {
+                segments[i] = new OffHeapMapImpl<>(expectedElementsPerSegment, loadFactor,
+                        entrySeDeserializer, memoryResourceFactory, keyFactory, valueFactory,
+                        rehashMode);
+                locks[i] = new ReentrantLock();
+            }
+        } catch (RuntimeException e) {
+            for (OffHeapMapImpl<K, V> segment : segments) {
+                if (segment != null) {
+                    try {
+                        segment.close();
+                    } catch (Exception closeException) {
+                        e.addSuppressed(closeException);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        long hash = entrySeDeserializer.hash64(key);
+        int index = segmentIndex(hash);
+        ReentrantLock lock = locks[index];
+        lock.lock();
+        try {
+            return segments[index].put(key, value, previousValueHolder, hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key, V usingValue) {
+        long hash = entrySeDeserializer.hash64(key);
+        int index = segmentIndex(hash);
+        ReentrantLock lock = locks[index];
+        lock.lock();
+        try {
+            return segments[index].get(key, usingValue, hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key, V usingValue) {
+        long hash = entrySeDeserializer.hash64(key);
+        int index = segmentIndex(hash);
+        ReentrantLock lock = locks[index];
+        lock.lock();
+        try {
+            return segments[index].remove(key, usingValue, hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(sizeAsLong(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The segments are counted one after another, so the result isn't a point in time snapshot
+     * while other threads modify the map.
+     */
+    @Override
+    public long sizeAsLong() {
+        long size = 0;
+        for (int i = 0; i < segments.length; i++) {
+            locks[i].lock();
+            try {
+                size += segments[i].sizeAsLong();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Each segment is locked while its entries are visited, so the action must not access this
+     * map. Entries that other threads put or remove in the meantime may or may not be visited.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < segments.length; i++) {
+            locks[i].lock();
+            try {
+                segments[i].forEach(action);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The cursor doesn't lock the segments, as that would leave them locked whenever a cursor
+     * isn't read till the end. It must only be used while no other thread accesses this map.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SegmentsCursor();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < segments.length; i++) {
+            locks[i].lock();
+            try {
+                segments[i].clear();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (int i = 0; i < segments.length; i++) {
+            locks[i].lock();
+            try {
+                segments[i].flush();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        Exception exception = null;
+        for (int i = 0; i < segments.length; i++) {
+            locks[i].lock();
+            try {
+                segments[i].close();
+            } catch (Exception e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private int segmentIndex(long hash) {
+        return (int) (MapUtils.phiMix64(hash) >>> segmentShift) & segmentMask;
+    }
+
+    /**
+     * {@link Cursor} that goes over the cursors of the segments one after another.
+     */
+    private final class SegmentsCursor implements Cursor<K, V> {
+
+        private int index = 0;
+        private Cursor<K, V> cursor = segments[0].cursor();
+
+        @Override
+        public boolean next() {
+            while (!cursor.next()) {
+                if (index == segments.length - 1) {
+                    return false;
+                }
+                cursor = segments[++index].cursor();
+            }
+            return true;
+        }
+
+        @Override
+        public K key() {
+            return cursor.key();
+        }
+
+        @Override
+        public V value() {
+            return cursor.value();
+        }
+
+        @Override
+        public void remove() {
+            cursor.remove();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.udaysagar2177.maps;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * An {@link OffHeapMap} for one writer thread and any no. of reader threads, where neither the
+ * readers nor the writer ever block.
+ *
+ * The map is guarded by a sequence counter (a seqlock). The writer makes the counter odd before
+ * it modifies the underlying {@link OffHeapMapImpl} in any way, including the back-shifts of a
+ * remove and the rehash operations, and makes it even again afterwards. Readers look up the key
+ * without any lock and retry if the counter was odd or changed during the lookup, so they only
+ * return values that were read while the map was stable. Readers don't write to shared memory,
+ * so they scale across cores.
+ *
+ * The Hash Tables replaced by rehash operations are kept until the map is closed, as a reader may
+ * still be probing them. This costs up to as much memory again as the current Hash Table, so
+ * create this map with the expected no. of entries to avoid rehashing.
+ *
+ * {@link #get(Copyable, Copyable)}, {@link #getAll(Object[], Object[], boolean[])},
+ * {@link #size()} and {@link #sizeAsLong()} can be called from any thread. All of the other
+ * methods must only be called from the writer thread, and readers must be done before
+ * {@link #close()}.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class SingleWriterOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final OffHeapMapImpl<K, V> map;
+
+    /**
+     * Odd while the writer is modifying the map.
+     */
+    private volatile long sequence = 0;
+
+    public SingleWriterOffHeapMap(long expectedElements,
+                                  float loadFactor,
+                                  EntrySeDeserializer<K, V> entrySeDeserializer,
+                                  Function<Integer, MemoryResource> memoryResourceFactory,
+                                  Supplier<K> keyFactory,
+                                  Supplier<V> valueFactory) {
+        this(expectedElements, loadFactor, entrySeDeserializer, memoryResourceFactory,
+                keyFactory, valueFactory, RehashMode.ALL_AT_ONCE);
+    }
+
+    public SingleWriterOffHeapMap(long expectedElements,
+                                  float loadFactor,
+                                  EntrySeDeserializer<K, V> entrySeDeserializer,
+                                  Function<Integer, MemoryResource> memoryResourceFactory,
+                                  Supplier<K> keyFactory,
+                                  Supplier<V> valueFactory,
+                                  RehashMode rehashMode) {
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.map = new OffHeapMapImpl<>(expectedElements, loadFactor, entrySeDeserializer,
+                memoryResourceFactory, keyFactory, valueFactory, rehashMode);
+        this.map.retainReplacedTables();
+    }
+
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        long hash = entrySeDeserializer.hash64(key);
+        beginWrite();
+        try {
+            return map.put(key, value, previousValueHolder, hash);
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method can be called from any thread. It spins while the writer is modifying the map.
+     */
+    @Override
+    public V get(K key, V usingValue) {
+        long hash = entrySeDeserializer.hash64(key);
+        while (true) {
+            long startSequence = sequence;
+            if ((startSequence & 1) == 0) {
+                V result = map.getReadOnly(key, usingValue, hash);
+                // the reads of the lookup must not be reordered after the validation.
+                OS.memory().loadFence();
+                if (sequence == startSequence) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    @Override
+    public V remove(K key, V usingValue) {
+        long hash = entrySeDeserializer.hash64(key);
+        beginWrite();
+        try {
+            return map.remove(key, usingValue, hash);
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(sizeAsLong(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method can be called from any thread.
+     */
+    @Override
+    public long sizeAsLong() {
+        while (true) {
+            long startSequence = sequence;
+            if ((startSequence & 1) == 0) {
+                long size = map.sizeAsLong();
+                OS.memory().loadFence();
+                if (sequence == startSequence) {
+                    return size;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method must only be called from the writer thread.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The cursor must only be used from the writer thread.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        beginWrite();
+        try {
+            // completes an incremental rehash, if any.
+            return new WriterCursor(map.cursor());
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public void clear() {
+        beginWrite();
+        try {
+            map.clear();
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Must be called by the writer thread.
+     */
+    @Override
+    public void flush() {
+        map.flush();
+    }
+
+    @Override
+    public void close() throws Exception {
+        map.close();
+    }
+
+    private void beginWrite() {
+        sequence = sequence + 1;
+        // the modifications of the map must not be reordered before the sequence becomes odd.
+        OS.memory().storeFence();
+    }
+
+    private void endWrite() {
+        sequence = sequence + 1;
+    }
+
+    /**
+     * {@link Cursor} that makes the removals visible to the readers as writes.
+     */
+    private final class WriterCursor implements Cursor<K, V> {
+
+        private final Cursor<K, V> cursor;
+
+        private WriterCursor(Cursor<K, V> cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean next() {
+            return cursor.next();
+        }
+
+        @Override
+        public K key() {
+            return cursor.key();
+        }
+
+        @Override
+        public V value() {
+            return cursor.value();
+        }
+
+        @Override
+        public void remove() {
+            beginWrite();
+            try {
+                cursor.remove();
+            } finally {
+                endWrite();
+            }
+        }
+    }
+}
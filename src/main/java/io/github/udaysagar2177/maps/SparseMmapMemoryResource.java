@@ -0,0 +1,70 @@
+package io.github.udaysagar2177.maps.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * An {@link MemoryResource} implementation that allocates zeroed memory lazily, page by page, on
+ * first touch, like an anonymous mmap.
+ *
+ * Java 8 can't create anonymous mappings, so this resource privately maps a sparse file of the
+ * requested capacity and unlinks the file right away. Reads of untouched pages are served by the
+ * kernel's shared zero page and writes copy the page into private memory, which is never written
+ * back to the file. Unlike {@link DirectMemoryResource}, creating this resource doesn't touch
+ * every page to zero it, so it's constant time and the map only commits the memory it uses.
+ *
+ * The pages of a private mapping are anonymous memory, so they are swapped like heap memory
+ * rather than flushed to disk. The folder is only used to create the sparse file, which doesn't
+ * take any disk space.
+ *
+ * @author uday
+ */
+public class SparseMmapMemoryResource implements io.github.udaysagar2177.maps.memory.MemoryResource {
+
+    private final DirectBuffer byteBuffer;
+    private final long address;
+    private final int capacityInBytes;
+
+    public SparseMmapMemoryResource(int capacityInBytes) {
+        this(System.getProperty("java.io.tmpdir"), capacityInBytes);
+    }
+
+    public SparseMmapMemoryResource(String dataFolderPath, int capacityInBytes) {
+        this.capacityInBytes = capacityInBytes;
+        try {
+            File file = File.createTempFile("sparseMmap", ".dat", new File(dataFolderPath));
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(capacityInBytes);
+                this.byteBuffer = (DirectBuffer) raf.getChannel()
+                        .map(FileChannel.MapMode.PRIVATE, 0, capacityInBytes);
+                this.address = byteBuffer.address();
+            } finally {
+                // the mapping stays valid after the file is unlinked and its channel is closed.
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int capacityInBytes() {
+        return capacityInBytes;
+    }
+
+    @Override
+    public long getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        byteBuffer.cleaner().clean();
+    }
+}
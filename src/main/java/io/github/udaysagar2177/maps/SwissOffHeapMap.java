@@ -0,0 +1,477 @@
+package io.github.udaysagar2177.maps;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * A non-threadsafe implementation of {@link OffHeapMap} laid out like a Swiss table. Next to the
+ * entries, every slot has a control byte that tells whether the slot is empty, deleted or full,
+ * and for full slots also holds 7 bits of the hash of the key. The control bytes of 8 slots (a
+ * group) are read as one long and matched against the 7 bits of the looked up key with a few
+ * arithmetic operations (SWAR, SIMD within a register), so a lookup only reads the key of an
+ * entry when its control byte matches, which is a false positive once in 128 times.
+ *
+ * This pays off for wide keys, like those of
+ * {@link io.github.udaysagar2177.maps.sedeserializers.ByteArrByteArrEntrySeDeserializer}, where
+ * {@link OffHeapMapImpl} reads the whole key of every probed slot both to check for emptiness and
+ * to compare it. As emptiness is tracked by the control bytes, the free key is stored like any
+ * other key and {@link EntrySeDeserializer#isEmpty(long)} is never used.
+ *
+ * Groups are probed with triangular steps over the groups, which visits every group of a power
+ * of two no. of groups. Removed entries leave a deleted marker behind, unless their group still
+ * has an empty slot, which means no probe ever went past that group. Deleted slots are reused by
+ * later inserts, and they count towards the load factor until the next rehash drops them. The
+ * control bytes live in a single {@link MemoryResource}, so this map can hold up to 2<sup>30</sup>
+ * slots.
+ *
+ * @param <K>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @param <V>
+ *         a flyweight object that holds data that can be easily read/written using
+ *         {@link EntrySeDeserializer}.
+ * @author uday
+ */
+public class SwissOffHeapMap<K extends Copyable<K>, V extends Copyable<V>>
+        implements OffHeapMap<K, V> {
+
+    private static final int MAX_MEMORY_RESOURCE_CAPACITY = Integer.MAX_VALUE;
+    private static final long MAX_HASH_TABLE_SIZE = 1L << 30;
+    private static final int GROUP_WIDTH = Long.BYTES;
+    private static final int GROUP_SHIFT = 3;
+    private static final int HASH_BITS = 7;
+    private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    /**
+     * Control bytes. Zeroed memory is empty, like in every other map of this library.
+     */
+    private static final byte EMPTY = 0x00;
+    private static final byte DELETED = 0x01;
+    private static final int FULL = 0x80;
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final float loadFactor;
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final Supplier<K> keyFactory;
+    private final Supplier<V> valueFactory;
+    private final int numBytesPerEntry;
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+    private final int maxNumEntriesPerMemoryResource;
+    private final K rehashKey;
+
+    private MemoryResource controlBytes;
+    private long controlAddress;
+    private List<MemoryResource> memoryResources;
+    private long[] addresses;
+    private int resourceShift;
+    private long resourceMask;
+    private long hashTableSize;
+    private long groupMask;
+    private long threshold;
+    private long size = 0;
+    private long numDeleted = 0;
+
+    public SwissOffHeapMap(long expectedElements,
+                           float loadFactor,
+                           EntrySeDeserializer<K, V> entrySeDeserializer,
+                           Function<Integer, MemoryResource> memoryResourceFactory,
+                           Supplier<K> keyFactory,
+                           Supplier<V> valueFactory) {
+        checkArguments(expectedElements, loadFactor);
+        this.loadFactor = loadFactor;
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.keyFactory = keyFactory;
+        this.valueFactory = valueFactory;
+        this.memoryResourceFactory = memoryResourceFactory;
+        this.numBytesPerEntry = entrySeDeserializer.numBytesPerEntry();
+        this.maxNumEntriesPerMemoryResource =
+                Integer.highestOneBit(MAX_MEMORY_RESOURCE_CAPACITY / numBytesPerEntry);
+        this.rehashKey = keyFactory.get();
+        long hashTableSize = Math.max(GROUP_WIDTH,
+                MapUtils.tableSizeFor(expectedElements, loadFactor));
+        if (hashTableSize > MAX_HASH_TABLE_SIZE) {
+            throw new IllegalArgumentException(String
+                    .format("Storage gets too large with expected size %s, load factor %s",
+                            expectedElements, loadFactor));
+        }
+        allocate(hashTableSize);
+    }
+
+    @Override
+    public V put(K key, V value, V previousValueHolder) {
+        long hash = entrySeDeserializer.hash64(key);
+        int hashByte = hashByte(hash);
+        long groupIndex = groupIndex(hash);
+        long freeSlot = -1;
+        for (long step = 1; ; step++) {
+            long group = readGroup(groupIndex);
+            for (long matches = matchByte(group, hashByte); matches != 0;
+                 matches &= matches - 1) {
+                long address = getAddress(slot(groupIndex, matches));
+                if (entrySeDeserializer.equalsKey(address, key)) {
+                    if (previousValueHolder != null) {
+                        entrySeDeserializer.readValue(address, previousValueHolder);
+                    }
+                    entrySeDeserializer.write(address, key, value);
+                    return previousValueHolder;
+                }
+            }
+            if (freeSlot < 0) {
+                long freeSlots = matchEmptyOrDeleted(group);
+                if (freeSlots != 0) {
+                    freeSlot = slot(groupIndex, freeSlots);
+                }
+            }
+            if (matchEmpty(group) != 0) {
+                break;
+            }
+            groupIndex = (groupIndex + step) & groupMask;
+        }
+        if (OS.memory().readByte(controlAddress + freeSlot) == DELETED) {
+            numDeleted--;
+        }
+        entrySeDeserializer.write(getAddress(freeSlot), key, value);
+        OS.memory().writeByte(controlAddress + freeSlot, (byte) hashByte);
+        size++;
+        if (size + numDeleted > threshold) {
+            rehash();
+        }
+        return null;
+    }
+
+    @Override
+    public V get(K key, V usingValue) {
+        long slot = indexOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        entrySeDeserializer.readValue(getAddress(slot), usingValue);
+        return usingValue;
+    }
+
+    @Override
+    public V remove(K key, V usingValue) {
+        long slot = indexOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        if (usingValue != null) {
+            entrySeDeserializer.readValue(getAddress(slot), usingValue);
+        }
+        removeAt(slot);
+        return usingValue;
+    }
+
+    /**
+     * Returns the slot of the given key, or -1 if the key isn't present.
+     */
+    private long indexOf(K key) {
+        long hash = entrySeDeserializer.hash64(key);
+        int hashByte = hashByte(hash);
+        long groupIndex = groupIndex(hash);
+        for (long step = 1; ; step++) {
+            long group = readGroup(groupIndex);
+            for (long matches = matchByte(group, hashByte); matches != 0;
+                 matches &= matches - 1) {
+                long slot = slot(groupIndex, matches);
+                if (entrySeDeserializer.equalsKey(getAddress(slot), key)) {
+                    return slot;
+                }
+            }
+            if (matchEmpty(group) != 0) {
+                return -1;
+            }
+            groupIndex = (groupIndex + step) & groupMask;
+        }
+    }
+
+    private void removeAt(long slot) {
+        // a probe only goes past a group without empty slots, so if this group has an empty
+        // slot, no probe went past it and the slot can be made empty right away.
+        if (matchEmpty(readGroup(slot >>> GROUP_SHIFT)) != 0) {
+            OS.memory().writeByte(controlAddress + slot, EMPTY);
+        } else {
+            OS.memory().writeByte(controlAddress + slot, DELETED);
+            numDeleted++;
+        }
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long sizeAsLong() {
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Cursor<K, V> cursor = cursor();
+        while (cursor.next()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    @Override
+    public Cursor<K, V> cursor() {
+        return new ControlBytesCursor();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the control bytes are zeroed, which is 1 byte per slot.
+     */
+    @Override
+    public void clear() {
+        OS.memory().setMemory(controlAddress, hashTableSize, EMPTY);
+        size = 0;
+        numDeleted = 0;
+    }
+
+    @Override
+    public void flush() {
+        controlBytes.flush();
+        for (MemoryResource memoryResource : memoryResources) {
+            memoryResource.flush();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        controlBytes.close();
+        for (MemoryResource memoryResource : memoryResources) {
+            memoryResource.close();
+        }
+    }
+
+    /**
+     * Moves every entry into a new Hash Table, dropping the deleted markers. The table is only
+     * doubled if the entries alone are above half of the threshold, otherwise it's rebuilt with
+     * the same size to drop a large no. of deleted markers.
+     */
+    private void rehash() {
+        long newHashTableSize = hashTableSize;
+        if (size > threshold / 2) {
+            if (hashTableSize >= MAX_HASH_TABLE_SIZE) {
+                throw new IllegalStateException(String
+                        .format("Storage gets too large with size %s, load factor %s", size,
+                                loadFactor));
+            }
+            newHashTableSize = hashTableSize << 1;
+        }
+        MemoryResource oldControlBytes = controlBytes;
+        long oldControlAddress = controlAddress;
+        List<MemoryResource> oldMemoryResources = memoryResources;
+        long[] oldAddresses = addresses;
+        int oldResourceShift = resourceShift;
+        long oldResourceMask = resourceMask;
+        long oldHashTableSize = hashTableSize;
+        allocate(newHashTableSize);
+        numDeleted = 0;
+        try {
+            for (long slot = 0; slot < oldHashTableSize; slot++) {
+                if ((OS.memory().readByte(oldControlAddress + slot) & FULL) == 0) {
+                    continue;
+                }
+                long oldAddress = oldAddresses[(int) (slot >>> oldResourceShift)]
+                        + (slot & oldResourceMask) * numBytesPerEntry;
+                entrySeDeserializer.readKey(oldAddress, rehashKey);
+                long hash = entrySeDeserializer.hash64(rehashKey);
+                long groupIndex = groupIndex(hash);
+                long freeSlots = matchEmpty(readGroup(groupIndex));
+                for (long step = 1; freeSlots == 0; step++) {
+                    groupIndex = (groupIndex + step) & groupMask;
+                    freeSlots = matchEmpty(readGroup(groupIndex));
+                }
+                long newSlot = slot(groupIndex, freeSlots);
+                entrySeDeserializer.copy(oldAddress, getAddress(newSlot));
+                OS.memory().writeByte(controlAddress + newSlot, (byte) hashByte(hash));
+            }
+        } finally {
+            try {
+                oldControlBytes.close();
+                for (MemoryResource memoryResource : oldMemoryResources) {
+                    memoryResource.close();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void allocate(long hashTableSize) {
+        int numEntriesPerMemoryResource =
+                (int) Math.min(hashTableSize, maxNumEntriesPerMemoryResource);
+        int numMemoryResources = (int) (hashTableSize / numEntriesPerMemoryResource);
+        MemoryResource controlBytes = memoryResourceFactory.apply((int) hashTableSize);
+        List<MemoryResource> memoryResources = new ArrayList<>(numMemoryResources);
+        try {
+            for (int i = 0; i < numMemoryResources; i++) {
+                memoryResources.add(memoryResourceFactory
+                        .apply(numEntriesPerMemoryResource * numBytesPerEntry));
+            }
+        } catch (RuntimeException e) {
+            try {
+                controlBytes.close();
+                for (MemoryResource memoryResource : memoryResources) {
+                    memoryResource.close();
+                }
+            } catch (Exception closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+        long[] addresses = new long[numMemoryResources];
+        for (int i = 0; i < numMemoryResources; i++) {
+            addresses[i] = memoryResources.get(i).getAddress();
+        }
+        this.controlBytes = controlBytes;
+        this.controlAddress = controlBytes.getAddress();
+        this.memoryResources = memoryResources;
+        this.addresses = addresses;
+        this.resourceShift = Integer.numberOfTrailingZeros(numEntriesPerMemoryResource);
+        this.resourceMask = numEntriesPerMemoryResource - 1;
+        this.hashTableSize = hashTableSize;
+        this.groupMask = (hashTableSize >>> GROUP_SHIFT) - 1;
+        // at least one slot must stay empty for the probes to end.
+        this.threshold = Math.min(hashTableSize - 1,
+                Math.max(1, (long) (hashTableSize * (double) loadFactor)));
+    }
+
+    private long getAddress(long slot) {
+        return addresses[(int) (slot >>> resourceShift)] + (slot & resourceMask) * numBytesPerEntry;
+    }
+
+    private long readGroup(long groupIndex) {
+        long group = OS.memory().readLong(controlAddress + (groupIndex << GROUP_SHIFT));
+        return BIG_ENDIAN ? Long.reverseBytes(group) : group;
+    }
+
+    private long groupIndex(long hash) {
+        return (hash >>> HASH_BITS) & groupMask;
+    }
+
+    /**
+     * Returns the control byte of a full slot for the given hash.
+     */
+    private static int hashByte(long hash) {
+        return FULL | (int) (hash & (FULL - 1));
+    }
+
+    /**
+     * Returns the slot of the lowest byte flagged in the given match of the given group.
+     */
+    private static long slot(long groupIndex, long matches) {
+        return (groupIndex << GROUP_SHIFT) + (Long.numberOfTrailingZeros(matches) >>> 3);
+    }
+
+    /**
+     * Flags the high bit of every byte of the group that is equal to the given byte.
+     */
+    private static long matchByte(long group, int b) {
+        return matchZero(group ^ (LOW_BITS * b));
+    }
+
+    /**
+     * Flags the high bit of the empty bytes of the group.
+     */
+    private static long matchEmpty(long group) {
+        return matchZero(group);
+    }
+
+    /**
+     * Flags the high bit of the zero bytes of the given long. Adding 0x7F to the low 7 bits of a
+     * byte sets its high bit unless they are all zero, and never carries into the next byte, so
+     * unlike the shorter {@code (x - 0x01..01) & ~x & 0x80..80}, no byte is flagged by mistake.
+     * That matters, as a deleted slot may still hold the key that is looked up.
+     */
+    private static long matchZero(long x) {
+        return ~(((x & ~HIGH_BITS) + ~HIGH_BITS) | x) & HIGH_BITS;
+    }
+
+    /**
+     * Flags the high bit of the empty and deleted bytes of the group, which are the bytes without
+     * their high bit set.
+     */
+    private static long matchEmptyOrDeleted(long group) {
+        return ~group & HIGH_BITS;
+    }
+
+    private static void checkArguments(long numEntries, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+        if (numEntries <= 0) {
+            throw new IllegalArgumentException("numEntries must be positive!");
+        }
+    }
+
+    /**
+     * {@link Cursor} that walks the control bytes in order. Removing an entry only changes its
+     * control byte, so the other entries stay where they are.
+     */
+    private final class ControlBytesCursor implements Cursor<K, V> {
+
+        private final K key = keyFactory.get();
+        private final V value = valueFactory.get();
+        private long slot = -1;
+        private boolean positioned = false;
+
+        @Override
+        public boolean next() {
+            while (++slot < hashTableSize) {
+                if ((OS.memory().readByte(controlAddress + slot) & FULL) != 0) {
+                    long address = getAddress(slot);
+                    entrySeDeserializer.readKey(address, key);
+                    entrySeDeserializer.readValue(address, value);
+                    positioned = true;
+                    return true;
+                }
+            }
+            slot = hashTableSize;
+            positioned = false;
+            return false;
+        }
+
+        @Override
+        public K key() {
+            checkPositioned();
+            return key;
+        }
+
+        @Override
+        public V value() {
+            checkPositioned();
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            checkPositioned();
+            removeAt(slot);
+            positioned = false;
+        }
+
+        private void checkPositioned() {
+            if (!positioned) {
+                throw new IllegalStateException("Cursor is not positioned on an entry");
+            }
+        }
+    }
+}
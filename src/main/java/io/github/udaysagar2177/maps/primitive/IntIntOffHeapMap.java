@@ -0,0 +1,373 @@
+package io.github.udaysagar2177.maps.primitive;
+
+import java.util.function.Function;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * A non-threadsafe off-heap map specialized for primitive int keys and values.
+ *
+ * Unlike {@link OffHeapMapImpl}, this map doesn't go through an
+ * {@link io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer} or flyweights. The
+ * entry layout (4 bytes of key followed by 4 bytes of value) and the hash function are inlined
+ * into the probe loops. Absent keys are reported through a default value, in the same way as
+ * Koloboke maps do.
+ *
+ * The whole Hash Table lives in a single {@link MemoryResource}, so this map can hold up to
+ * 2<sup>27</sup> slots.
+ *
+ * @author uday
+ */
+public class IntIntOffHeapMap implements AutoCloseable {
+
+    private static final int FREE_KEY = 0;
+    private static final int KEY_OFFSET = 0;
+    private static final int VALUE_OFFSET = Integer.BYTES;
+    private static final int ENTRY_LENGTH_SHIFT = 3;
+    private static final int MAX_HASH_TABLE_SIZE = (1 << 30) >> ENTRY_LENGTH_SHIFT;
+    private static final int GET_ALL_GROUP_SIZE = 16;
+
+    private final float loadFactor;
+    private final int defaultValue;
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+    private final int[] groupPositions = new int[GET_ALL_GROUP_SIZE];
+    private final int[] groupHomeKeys = new int[GET_ALL_GROUP_SIZE];
+
+    private MemoryResource memoryResource;
+    private long address;
+    private int modulo;
+    private int threshold;
+    private int size = 0;
+    private boolean hasFreeKey = false;
+    private int freeValue;
+
+    public IntIntOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            Function<Integer, MemoryResource> memoryResourceFactory) {
+        this(expectedElements, loadFactor, memoryResourceFactory, 0);
+    }
+
+    public IntIntOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            Function<Integer, MemoryResource> memoryResourceFactory,
+                            int defaultValue) {
+        checkArguments(expectedElements, loadFactor);
+        this.loadFactor = loadFactor;
+        this.defaultValue = defaultValue;
+        this.memoryResourceFactory = memoryResourceFactory;
+        int hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
+        if (hashTableSize > MAX_HASH_TABLE_SIZE) {
+            throw new IllegalArgumentException(String
+                    .format("Storage gets too large with expected size %s, load factor %s",
+                            expectedElements, loadFactor));
+        }
+        allocate(hashTableSize);
+    }
+
+    /**
+     * @return the value returned by {@link #get(int)}, {@link #put(int, int)} and
+     * {@link #remove(int)} when there is no mapping for the key.
+     */
+    public int defaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or {@link #defaultValue()} if this
+     * map contains no mapping for the key.
+     */
+    public int get(int key) {
+        return get(key, defaultValue);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given default value if this
+     * map contains no mapping for the key.
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeValue : defaultValue;
+        }
+        long address = this.address;
+        int modulo = this.modulo;
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = address + ((long) position << ENTRY_LENGTH_SHIFT);
+            int currentKey = OS.memory().readInt(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                return OS.memory().readInt(entryAddress + VALUE_OFFSET);
+            }
+            if (currentKey == FREE_KEY) {
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Looks up all of the given keys in one call, writing the value of {@code keys[i]} or
+     * {@link #defaultValue()} into {@code values[i]}. The keys are hashed and their home slots
+     * are read in groups before any probe is resolved, so that the cache misses of a group are
+     * in flight at once. See {@link OffHeapMapImpl#getAll}.
+     *
+     * @return the number of keys that are present in this map.
+     */
+    public int getAll(int[] keys, int[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("values must be at least as long as keys");
+        }
+        long address = this.address;
+        int modulo = this.modulo;
+        int[] groupPositions = this.groupPositions;
+        int[] groupHomeKeys = this.groupHomeKeys;
+        int numFound = 0;
+        for (int groupStart = 0; groupStart < keys.length; groupStart += GET_ALL_GROUP_SIZE) {
+            int groupSize = Math.min(GET_ALL_GROUP_SIZE, keys.length - groupStart);
+            for (int i = 0; i < groupSize; i++) {
+                int position = MapUtils.phiMix(keys[groupStart + i]) & modulo;
+                groupPositions[i] = position;
+                groupHomeKeys[i] = OS.memory().readInt(
+                        address + ((long) position << ENTRY_LENGTH_SHIFT) + KEY_OFFSET);
+            }
+            for (int i = 0; i < groupSize; i++) {
+                int index = groupStart + i;
+                int key = keys[index];
+                int position = groupPositions[i];
+                int currentKey = groupHomeKeys[i];
+                if (key == FREE_KEY) {
+                    values[index] = hasFreeKey ? freeValue : defaultValue;
+                    numFound += hasFreeKey ? 1 : 0;
+                    continue;
+                }
+                while (currentKey != key && currentKey != FREE_KEY) {
+                    position = (position + 1) & modulo;
+                    currentKey = OS.memory().readInt(
+                            address + ((long) position << ENTRY_LENGTH_SHIFT) + KEY_OFFSET);
+                }
+                if (currentKey == key) {
+                    values[index] = OS.memory().readInt(
+                            address + ((long) position << ENTRY_LENGTH_SHIFT) + VALUE_OFFSET);
+                    numFound++;
+                } else {
+                    values[index] = defaultValue;
+                }
+            }
+        }
+        return numFound;
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the given key.
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            int currentKey = OS.memory().readInt(getAddress(position) + KEY_OFFSET);
+            if (currentKey == key) {
+                return true;
+            }
+            if (currentKey == FREE_KEY) {
+                return false;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @return the previous value associated with the key, or {@link #defaultValue()} if there
+     * was no mapping for the key.
+     */
+    public int put(int key, int value) {
+        if (key == FREE_KEY) {
+            int previousValue = hasFreeKey ? freeValue : defaultValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeValue = value;
+            return previousValue;
+        }
+        long address = this.address;
+        int modulo = this.modulo;
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = address + ((long) position << ENTRY_LENGTH_SHIFT);
+            int currentKey = OS.memory().readInt(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                int previousValue = OS.memory().readInt(entryAddress + VALUE_OFFSET);
+                OS.memory().writeInt(entryAddress + VALUE_OFFSET, value);
+                return previousValue;
+            }
+            if (currentKey == FREE_KEY) {
+                OS.memory().writeInt(entryAddress + VALUE_OFFSET, value);
+                OS.memory().writeInt(entryAddress + KEY_OFFSET, key);
+                size++;
+                if (size > threshold) {
+                    rehash();
+                }
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @return the previous value associated with the key, or {@link #defaultValue()} if there
+     * was no mapping for the key.
+     */
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return defaultValue;
+            }
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = getAddress(position);
+            int currentKey = OS.memory().readInt(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                int previousValue = OS.memory().readInt(entryAddress + VALUE_OFFSET);
+                shiftKeys(position);
+                size--;
+                return previousValue;
+            }
+            if (currentKey == FREE_KEY) {
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    private void shiftKeys(int currentPosition) {
+        int freeSlot;
+        int currentKeySlot;
+        int currentKey;
+        do {
+            freeSlot = currentPosition;
+            currentPosition = (currentPosition + 1) & modulo;
+            while (true) {
+                currentKey = OS.memory().readInt(getAddress(currentPosition) + KEY_OFFSET);
+                if (currentKey == FREE_KEY) {
+                    OS.memory().writeLong(getAddress(freeSlot), 0L);
+                    return;
+                }
+                currentKeySlot = MapUtils.phiMix(currentKey) & modulo;
+                if (freeSlot <= currentPosition) {
+                    if (freeSlot >= currentKeySlot || currentKeySlot > currentPosition) {
+                        break;
+                    }
+                } else {
+                    if (currentPosition < currentKeySlot && currentKeySlot <= freeSlot) {
+                        break;
+                    }
+                }
+                currentPosition = (currentPosition + 1) & modulo;
+            }
+            OS.memory().writeLong(getAddress(freeSlot),
+                    OS.memory().readLong(getAddress(currentPosition)));
+        } while (true);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        OS.memory().setMemory(address, memoryResource.capacityInBytes(), (byte) 0);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Closes the map thereby releasing the off-heap memory.
+     */
+    @Override
+    public void close() throws Exception {
+        memoryResource.close();
+    }
+
+    private long getAddress(int position) {
+        return address + ((long) position << ENTRY_LENGTH_SHIFT);
+    }
+
+    /**
+     * Doubles the Hash Table, copying every 8 byte entry into the first empty slot from its home
+     * slot in the new table. See {@link OffHeapMapImpl} for why the walk starts after an empty
+     * slot.
+     */
+    private void rehash() {
+        int oldHashTableSize = modulo + 1;
+        if (oldHashTableSize >= MAX_HASH_TABLE_SIZE) {
+            throw new IllegalStateException(String
+                    .format("Storage gets too large with size %s, load factor %s", size,
+                            loadFactor));
+        }
+        MemoryResource oldMemoryResource = memoryResource;
+        long oldAddress = address;
+        int oldModulo = modulo;
+        int position = 0;
+        while (position < oldModulo && OS.memory().readInt(oldAddress
+                + ((long) position << ENTRY_LENGTH_SHIFT) + KEY_OFFSET) != FREE_KEY) {
+            position++;
+        }
+        allocate(oldHashTableSize << 1);
+        try {
+            for (int i = 0; i < oldHashTableSize; i++) {
+                position = (position + 1) & oldModulo;
+                long oldEntryAddress = oldAddress + ((long) position << ENTRY_LENGTH_SHIFT);
+                int key = OS.memory().readInt(oldEntryAddress + KEY_OFFSET);
+                if (key == FREE_KEY) {
+                    continue;
+                }
+                int newPosition = MapUtils.phiMix(key) & modulo;
+                while (OS.memory().readInt(getAddress(newPosition) + KEY_OFFSET) != FREE_KEY) {
+                    newPosition = (newPosition + 1) & modulo;
+                }
+                OS.memory().writeLong(getAddress(newPosition),
+                        OS.memory().readLong(oldEntryAddress));
+            }
+        } finally {
+            try {
+                oldMemoryResource.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void allocate(int hashTableSize) {
+        this.memoryResource = memoryResourceFactory.apply(hashTableSize << ENTRY_LENGTH_SHIFT);
+        this.address = memoryResource.getAddress();
+        this.modulo = hashTableSize - 1;
+        this.threshold = Math.max(1, (int) (hashTableSize * loadFactor));
+    }
+
+    private static void checkArguments(int numEntries, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+        if (numEntries <= 0) {
+            throw new IllegalArgumentException("numEntries must be positive!");
+        }
+    }
+}
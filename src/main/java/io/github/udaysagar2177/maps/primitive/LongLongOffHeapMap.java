@@ -0,0 +1,322 @@
+package io.github.udaysagar2177.maps.primitive;
+
+import java.util.function.Function;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * A non-threadsafe off-heap map specialized for primitive long keys and values.
+ *
+ * Unlike {@link OffHeapMapImpl}, this map doesn't go through an
+ * {@link io.github.udaysagar2177.maps.sedeserializers.EntrySeDeserializer} or flyweights. The
+ * entry layout (8 bytes of key followed by 8 bytes of value) and the hash function are inlined
+ * into the probe loops. Absent keys are reported through a default value, in the same way as
+ * Koloboke maps do.
+ *
+ * The whole Hash Table lives in a single {@link MemoryResource}, so this map can hold up to
+ * 2<sup>26</sup> slots.
+ *
+ * @author uday
+ */
+public class LongLongOffHeapMap implements AutoCloseable {
+
+    private static final long FREE_KEY = 0;
+    private static final int KEY_OFFSET = 0;
+    private static final int VALUE_OFFSET = Long.BYTES;
+    private static final int ENTRY_LENGTH_SHIFT = 4;
+    private static final int MAX_HASH_TABLE_SIZE = (1 << 30) >> ENTRY_LENGTH_SHIFT;
+
+    private final float loadFactor;
+    private final long defaultValue;
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+
+    private MemoryResource memoryResource;
+    private long address;
+    private int modulo;
+    private int threshold;
+    private int size = 0;
+    private boolean hasFreeKey = false;
+    private long freeValue;
+
+    public LongLongOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            Function<Integer, MemoryResource> memoryResourceFactory) {
+        this(expectedElements, loadFactor, memoryResourceFactory, 0);
+    }
+
+    public LongLongOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            Function<Integer, MemoryResource> memoryResourceFactory,
+                            long defaultValue) {
+        checkArguments(expectedElements, loadFactor);
+        this.loadFactor = loadFactor;
+        this.defaultValue = defaultValue;
+        this.memoryResourceFactory = memoryResourceFactory;
+        int hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
+        if (hashTableSize > MAX_HASH_TABLE_SIZE) {
+            throw new IllegalArgumentException(String
+                    .format("Storage gets too large with expected size %s, load factor %s",
+                            expectedElements, loadFactor));
+        }
+        allocate(hashTableSize);
+    }
+
+    /**
+     * @return the value returned by {@link #get(long)}, {@link #put(long, long)} and
+     * {@link #remove(long)} when there is no mapping for the key.
+     */
+    public long defaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or {@link #defaultValue()} if this
+     * map contains no mapping for the key.
+     */
+    public long get(long key) {
+        return get(key, defaultValue);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given default value if this
+     * map contains no mapping for the key.
+     */
+    public long get(long key, long defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeValue : defaultValue;
+        }
+        long address = this.address;
+        int modulo = this.modulo;
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = address + ((long) position << ENTRY_LENGTH_SHIFT);
+            long currentKey = OS.memory().readLong(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                return OS.memory().readLong(entryAddress + VALUE_OFFSET);
+            }
+            if (currentKey == FREE_KEY) {
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the given key.
+     */
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long currentKey = OS.memory().readLong(getAddress(position) + KEY_OFFSET);
+            if (currentKey == key) {
+                return true;
+            }
+            if (currentKey == FREE_KEY) {
+                return false;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @return the previous value associated with the key, or {@link #defaultValue()} if there
+     * was no mapping for the key.
+     */
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long previousValue = hasFreeKey ? freeValue : defaultValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeValue = value;
+            return previousValue;
+        }
+        long address = this.address;
+        int modulo = this.modulo;
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = address + ((long) position << ENTRY_LENGTH_SHIFT);
+            long currentKey = OS.memory().readLong(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                long previousValue = OS.memory().readLong(entryAddress + VALUE_OFFSET);
+                OS.memory().writeLong(entryAddress + VALUE_OFFSET, value);
+                return previousValue;
+            }
+            if (currentKey == FREE_KEY) {
+                OS.memory().writeLong(entryAddress + VALUE_OFFSET, value);
+                OS.memory().writeLong(entryAddress + KEY_OFFSET, key);
+                size++;
+                if (size > threshold) {
+                    rehash();
+                }
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @return the previous value associated with the key, or {@link #defaultValue()} if there
+     * was no mapping for the key.
+     */
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return defaultValue;
+            }
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        int position = MapUtils.phiMix(key) & modulo;
+        do {
+            long entryAddress = getAddress(position);
+            long currentKey = OS.memory().readLong(entryAddress + KEY_OFFSET);
+            if (currentKey == key) {
+                long previousValue = OS.memory().readLong(entryAddress + VALUE_OFFSET);
+                shiftKeys(position);
+                size--;
+                return previousValue;
+            }
+            if (currentKey == FREE_KEY) {
+                return defaultValue;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    private void shiftKeys(int currentPosition) {
+        int freeSlot;
+        int currentKeySlot;
+        long currentKey;
+        do {
+            freeSlot = currentPosition;
+            currentPosition = (currentPosition + 1) & modulo;
+            while (true) {
+                currentKey = OS.memory().readLong(getAddress(currentPosition) + KEY_OFFSET);
+                if (currentKey == FREE_KEY) {
+                    long freeSlotAddress = getAddress(freeSlot);
+                    OS.memory().writeLong(freeSlotAddress + KEY_OFFSET, 0L);
+                    OS.memory().writeLong(freeSlotAddress + VALUE_OFFSET, 0L);
+                    return;
+                }
+                currentKeySlot = MapUtils.phiMix(currentKey) & modulo;
+                if (freeSlot <= currentPosition) {
+                    if (freeSlot >= currentKeySlot || currentKeySlot > currentPosition) {
+                        break;
+                    }
+                } else {
+                    if (currentPosition < currentKeySlot && currentKeySlot <= freeSlot) {
+                        break;
+                    }
+                }
+                currentPosition = (currentPosition + 1) & modulo;
+            }
+            OS.memory().copyMemory(getAddress(currentPosition), getAddress(freeSlot),
+                    1 << ENTRY_LENGTH_SHIFT);
+        } while (true);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        OS.memory().setMemory(address, memoryResource.capacityInBytes(), (byte) 0);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Closes the map thereby releasing the off-heap memory.
+     */
+    @Override
+    public void close() throws Exception {
+        memoryResource.close();
+    }
+
+    private long getAddress(int position) {
+        return address + ((long) position << ENTRY_LENGTH_SHIFT);
+    }
+
+    /**
+     * Doubles the Hash Table, copying every 16 byte entry into the first empty slot from its home
+     * slot in the new table. See {@link OffHeapMapImpl} for why the walk starts after an empty
+     * slot.
+     */
+    private void rehash() {
+        int oldHashTableSize = modulo + 1;
+        if (oldHashTableSize >= MAX_HASH_TABLE_SIZE) {
+            throw new IllegalStateException(String
+                    .format("Storage gets too large with size %s, load factor %s", size,
+                            loadFactor));
+        }
+        MemoryResource oldMemoryResource = memoryResource;
+        long oldAddress = address;
+        int oldModulo = modulo;
+        int position = 0;
+        while (position < oldModulo && OS.memory().readLong(oldAddress
+                + ((long) position << ENTRY_LENGTH_SHIFT) + KEY_OFFSET) != FREE_KEY) {
+            position++;
+        }
+        allocate(oldHashTableSize << 1);
+        try {
+            for (int i = 0; i < oldHashTableSize; i++) {
+                position = (position + 1) & oldModulo;
+                long oldEntryAddress = oldAddress + ((long) position << ENTRY_LENGTH_SHIFT);
+                long key = OS.memory().readLong(oldEntryAddress + KEY_OFFSET);
+                if (key == FREE_KEY) {
+                    continue;
+                }
+                int newPosition = MapUtils.phiMix(key) & modulo;
+                while (OS.memory().readLong(getAddress(newPosition) + KEY_OFFSET) != FREE_KEY) {
+                    newPosition = (newPosition + 1) & modulo;
+                }
+                long newEntryAddress = getAddress(newPosition);
+                OS.memory().writeLong(newEntryAddress + KEY_OFFSET, key);
+                OS.memory().writeLong(newEntryAddress + VALUE_OFFSET,
+                        OS.memory().readLong(oldEntryAddress + VALUE_OFFSET));
+            }
+        } finally {
+            try {
+                oldMemoryResource.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void allocate(int hashTableSize) {
+        this.memoryResource = memoryResourceFactory.apply(hashTableSize << ENTRY_LENGTH_SHIFT);
+        this.address = memoryResource.getAddress();
+        this.modulo = hashTableSize - 1;
+        this.threshold = Math.max(1, (int) (hashTableSize * loadFactor));
+    }
+
+    private static void checkArguments(int numEntries, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+        if (numEntries <= 0) {
+            throw new IllegalArgumentException("numEntries must be positive!");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.github.udaysagar2177.maps.sedeserializers;
 import java.util.Arrays;
 
 
+import io.github.udaysagar2177.maps.utils.MapUtils;
 import net.openhft.chronicle.core.OS;
 import sun.misc.Unsafe;
 
@@ -74,17 +75,12 @@ public class ByteArrByteArrEntrySeDeserializer
 
     @Override
     public int hash(ByteArrHolder key) {
-        checkByteArrLength(key.getBytes(), keyLength);
-        byte[] bytes = key.getBytes();
-        long hash = 0;
-        int i = 0;
-        for (;i < bytes.length - 7; i += 8) {
-            hash = 31 * hash + OS.memory().readLong(bytes, i + Unsafe.ARRAY_BYTE_BASE_OFFSET);
-        }
-        for (;i < bytes.length; i++) {
-            hash = 31 * hash + OS.memory().readByte(bytes, i + Unsafe.ARRAY_BYTE_BASE_OFFSET);
-        }
-        return (int) hash;
+        return (int) polynomialHash(key);
+    }
+
+    @Override
+    public long hash64(ByteArrHolder key) {
+        return MapUtils.phiMix64(polynomialHash(key));
     }
 
     @Override
@@ -126,6 +122,20 @@ public class ByteArrByteArrEntrySeDeserializer
         OS.memory().copyMemory(fromAddress, toAddress, entryLength);
     }
 
+    private long polynomialHash(ByteArrHolder key) {
+        checkByteArrLength(key.getBytes(), keyLength);
+        byte[] bytes = key.getBytes();
+        long hash = 0;
+        int i = 0;
+        for (;i < bytes.length - 7; i += 8) {
+            hash = 31 * hash + OS.memory().readLong(bytes, i + Unsafe.ARRAY_BYTE_BASE_OFFSET);
+        }
+        for (;i < bytes.length; i++) {
+            hash = 31 * hash + OS.memory().readByte(bytes, i + Unsafe.ARRAY_BYTE_BASE_OFFSET);
+        }
+        return hash;
+    }
+
     private static void checkByteArrLength(byte[] bytes, int keyLength) {
         if (bytes.length != keyLength) {
             throw new IllegalStateException(
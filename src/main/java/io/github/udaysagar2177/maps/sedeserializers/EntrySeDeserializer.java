@@ -60,6 +60,18 @@ public interface EntrySeDeserializer<K, V> {
      */
     int hash(K key);
 
+    /**
+     * 64-bit hash value of the given key, used to find the position of the key in the Hash
+     * Table. Defaults to {@link #hash(Object)}, which only spreads keys across 2<sup>32</sup>
+     * slots, so implementations that may hold more keys than that should override this.
+     *
+     * @param key key to compute the hash for
+     * @return 64-bit hash value of the given key.
+     */
+    default long hash64(K key) {
+        return hash(key);
+    }
+
     /**
      * Returns true if the entry at the given address is empty.
      *
@@ -75,6 +87,16 @@ public interface EntrySeDeserializer<K, V> {
      */
     void clear(long entryAddress);
 
+    /**
+     * Makes every entry written so far count as empty without touching memory, if this
+     * implementation supports it. Called when the map is cleared.
+     *
+     * @return true if every entry is now empty, false if the map must clear the memory itself.
+     */
+    default boolean invalidateAll() {
+        return false;
+    }
+
     /**
      * Checks whether the key at the given address is equal to the given key.
      *
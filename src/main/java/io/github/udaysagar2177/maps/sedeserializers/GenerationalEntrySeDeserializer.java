@@ -0,0 +1,107 @@
+package io.github.udaysagar2177.maps.sedeserializers;
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * {@link EntrySeDeserializer} decorator that prefixes each entry with a 4 byte generation tag, so
+ * that an {@link OffHeapMap} can be cleared in constant time.
+ *
+ * An entry is empty unless its tag is equal to the current generation. {@link #invalidateAll()}
+ * moves to the next generation, which turns every entry written so far into an empty one. The
+ * generation 0 is never current, so zeroed memory is empty as usual. Once the generations run out,
+ * {@link #invalidateAll()} starts over from the first generation and asks the map to zero its
+ * memory, as tags of the old generations would otherwise become current again.
+ *
+ * This pays 4 more bytes per entry and a compare per probed slot for the fast clear, so it suits
+ * small maps that are cleared and reused often. An instance holds the current generation, so it
+ * must not be shared between maps. {@link io.github.udaysagar2177.maps.SegmentedOffHeapMap} shares
+ * its deserializer between its segments, so it rejects this one.
+ *
+ * @param <K> type of Key to be stored in the {@link OffHeapMap}
+ * @param <V> type of Value to be stored in the {@link OffHeapMap}
+ *
+ * @author uday
+ */
+public class GenerationalEntrySeDeserializer<K, V> implements EntrySeDeserializer<K, V> {
+
+    private static final int GENERATION_OFFSET = 0;
+    private static final int ENTRY_OFFSET = Integer.BYTES;
+    private static final int EMPTY_GENERATION = 0;
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final int entryLength;
+    private int generation = EMPTY_GENERATION + 1;
+
+    public GenerationalEntrySeDeserializer(EntrySeDeserializer<K, V> entrySeDeserializer) {
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.entryLength = ENTRY_OFFSET + entrySeDeserializer.numBytesPerEntry();
+    }
+
+    @Override
+    public boolean isFreeKey(K key) {
+        return entrySeDeserializer.isFreeKey(key);
+    }
+
+    @Override
+    public int numBytesPerEntry() {
+        return entryLength;
+    }
+
+    @Override
+    public void readKey(long entryAddress, K usingKey) {
+        entrySeDeserializer.readKey(entryAddress + ENTRY_OFFSET, usingKey);
+    }
+
+    @Override
+    public void readValue(long entryAddress, V usingValue) {
+        entrySeDeserializer.readValue(entryAddress + ENTRY_OFFSET, usingValue);
+    }
+
+    @Override
+    public void write(long entryAddress, K key, V value) {
+        entrySeDeserializer.write(entryAddress + ENTRY_OFFSET, key, value);
+        OS.memory().writeInt(entryAddress + GENERATION_OFFSET, generation);
+    }
+
+    @Override
+    public int hash(K key) {
+        return entrySeDeserializer.hash(key);
+    }
+
+    @Override
+    public long hash64(K key) {
+        return entrySeDeserializer.hash64(key);
+    }
+
+    @Override
+    public boolean isEmpty(long entryAddress) {
+        return OS.memory().readInt(entryAddress + GENERATION_OFFSET) != generation;
+    }
+
+    @Override
+    public void clear(long entryAddress) {
+        OS.memory().writeInt(entryAddress + GENERATION_OFFSET, EMPTY_GENERATION);
+    }
+
+    @Override
+    public boolean invalidateAll() {
+        generation++;
+        if (generation == EMPTY_GENERATION) {
+            generation = EMPTY_GENERATION + 1;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equalsKey(long entryAddress, K key) {
+        return OS.memory().readInt(entryAddress + GENERATION_OFFSET) == generation
+                && entrySeDeserializer.equalsKey(entryAddress + ENTRY_OFFSET, key);
+    }
+
+    @Override
+    public void copy(long fromAddress, long toAddress) {
+        OS.memory().copyMemory(fromAddress, toAddress, entryLength);
+    }
+}
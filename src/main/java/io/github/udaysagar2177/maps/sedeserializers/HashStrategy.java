@@ -0,0 +1,35 @@
+package io.github.udaysagar2177.maps.sedeserializers;
+
+import io.github.udaysagar2177.maps.utils.MapUtils;
+
+/**
+ * Mixes the 64-bit hash of a key, as computed by an {@link EntrySeDeserializer}, with a seed into
+ * the hash that a {@link SeededEntrySeDeserializer} uses to find the key in the Hash Table.
+ *
+ * Implementations must spread the keys differently for different seeds, so that keys that
+ * collide for one seed most likely don't for another.
+ *
+ * @author uday
+ */
+public interface HashStrategy {
+
+    /**
+     * Mixes the given hash with {@link MapUtils#fmix64(long)}.
+     */
+    HashStrategy FMIX64 = (hash, seed) -> MapUtils.fmix64(hash ^ seed);
+
+    /**
+     * Mixes the given hash with {@link MapUtils#phiMix64(long)}, which is faster but spreads the
+     * lower bits of the hash less than {@link #FMIX64}.
+     */
+    HashStrategy PHI_MIX64 = (hash, seed) -> MapUtils.phiMix64(hash ^ seed);
+
+    /**
+     * @param hash
+     *         64-bit hash of the key
+     * @param seed
+     *         seed of the map
+     * @return 64-bit hash of the key for the given seed.
+     */
+    long hash64(long hash, long seed);
+}
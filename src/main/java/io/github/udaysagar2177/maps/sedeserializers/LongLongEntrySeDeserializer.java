@@ -48,6 +48,11 @@ public class LongLongEntrySeDeserializer implements EntrySeDeserializer<LongHold
         return MapUtils.phiMix(key.getLong());
     }
 
+    @Override
+    public long hash64(LongHolder key) {
+        return MapUtils.phiMix64(key.getLong());
+    }
+
     @Override
     public boolean isEmpty(long entryAddress) {
         return OS.memory().readLong(entryAddress + KEY_OFFSET) == FREE_KEY;
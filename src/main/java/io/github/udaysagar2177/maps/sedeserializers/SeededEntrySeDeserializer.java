@@ -0,0 +1,130 @@
+package io.github.udaysagar2177.maps.sedeserializers;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+
+import io.github.udaysagar2177.maps.OffHeapMap;
+
+/**
+ * {@link EntrySeDeserializer} decorator that mixes the 64-bit hash of every key with a seed,
+ * through a pluggable {@link HashStrategy}, so that the keys that collide in the Hash Table
+ * depend on the seed rather than only on the keys.
+ *
+ * With a random seed, a set of keys that happens to hash badly, e.g. timestamps that only differ
+ * in their upper bits, or one that was picked to collide, only probes long for one seed. An
+ * {@link io.github.udaysagar2177.maps.OffHeapMapImpl} created with a maximum probe length calls
+ * {@link #reseed()} and rebuilds its Hash Table when an insert probes beyond it. Keys whose
+ * {@link EntrySeDeserializer#hash64(Object)} is equal keep colliding whatever the seed.
+ *
+ * The seed decides where the keys are in the Hash Table, so an instance that reseeds must not be
+ * shared between maps, including the segments of a
+ * {@link io.github.udaysagar2177.maps.SegmentedOffHeapMap}. The seed isn't stored with the data,
+ * so persistent maps and published images of a
+ * {@link io.github.udaysagar2177.maps.FrozenOffHeapMap} don't support this decorator. Snapshots do,
+ * as their entries are inserted again when loaded.
+ *
+ * @param <K> type of Key to be stored in the {@link OffHeapMap}
+ * @param <V> type of Value to be stored in the {@link OffHeapMap}
+ *
+ * @author uday
+ */
+public class SeededEntrySeDeserializer<K, V> implements EntrySeDeserializer<K, V> {
+
+    private final EntrySeDeserializer<K, V> entrySeDeserializer;
+    private final HashStrategy hashStrategy;
+    private long seed;
+
+    /**
+     * Creates a decorator with {@link HashStrategy#FMIX64} and a random seed.
+     */
+    public SeededEntrySeDeserializer(EntrySeDeserializer<K, V> entrySeDeserializer) {
+        this(entrySeDeserializer, HashStrategy.FMIX64, ThreadLocalRandom.current().nextLong());
+    }
+
+    public SeededEntrySeDeserializer(EntrySeDeserializer<K, V> entrySeDeserializer,
+                                     HashStrategy hashStrategy,
+                                     long seed) {
+        this.entrySeDeserializer = entrySeDeserializer;
+        this.hashStrategy = hashStrategy;
+        this.seed = seed;
+    }
+
+    /**
+     * @return the current seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Moves to a new random seed. Every key gets a new hash, so the map must rebuild its Hash
+     * Table right after.
+     */
+    public void reseed() {
+        long newSeed;
+        do {
+            newSeed = ThreadLocalRandom.current().nextLong();
+        } while (newSeed == seed);
+        seed = newSeed;
+    }
+
+    @Override
+    public boolean isFreeKey(K key) {
+        return entrySeDeserializer.isFreeKey(key);
+    }
+
+    @Override
+    public int numBytesPerEntry() {
+        return entrySeDeserializer.numBytesPerEntry();
+    }
+
+    @Override
+    public void readKey(long entryAddress, K usingKey) {
+        entrySeDeserializer.readKey(entryAddress, usingKey);
+    }
+
+    @Override
+    public void readValue(long entryAddress, V usingValue) {
+        entrySeDeserializer.readValue(entryAddress, usingValue);
+    }
+
+    @Override
+    public void write(long entryAddress, K key, V value) {
+        entrySeDeserializer.write(entryAddress, key, value);
+    }
+
+    @Override
+    public int hash(K key) {
+        return (int) hash64(key);
+    }
+
+    @Override
+    public long hash64(K key) {
+        return hashStrategy.hash64(entrySeDeserializer.hash64(key), seed);
+    }
+
+    @Override
+    public boolean isEmpty(long entryAddress) {
+        return entrySeDeserializer.isEmpty(entryAddress);
+    }
+
+    @Override
+    public void clear(long entryAddress) {
+        entrySeDeserializer.clear(entryAddress);
+    }
+
+    @Override
+    public boolean invalidateAll() {
+        return entrySeDeserializer.invalidateAll();
+    }
+
+    @Override
+    public boolean equalsKey(long entryAddress, K key) {
+        return entrySeDeserializer.equalsKey(entryAddress, key);
+    }
+
+    @Override
+    public void copy(long fromAddress, long toAddress) {
+        entrySeDeserializer.copy(fromAddress, toAddress);
+    }
+}
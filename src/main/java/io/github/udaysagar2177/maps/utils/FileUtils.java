@@ -0,0 +1,29 @@
+package io.github.udaysagar2177.maps.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Utility functions for the files that maps persist their data in.
+ *
+ * @author uday
+ */
+public final class FileUtils {
+
+    private FileUtils() { /* do nothing. */ }
+
+    /**
+     * Forces the given directory, so that a rename inside it survives a crash. Not every platform
+     * can open a directory, in which case the rename is as durable as the platform makes it.
+     */
+    public static void forceDirectory(File directory) {
+        try (FileChannel fileChannel = FileChannel.open(directory.toPath(),
+                StandardOpenOption.READ)) {
+            fileChannel.force(true);
+        } catch (IOException e) {
+            // best effort.
+        }
+    }
+}
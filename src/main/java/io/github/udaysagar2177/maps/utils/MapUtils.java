@@ -7,6 +7,11 @@ package io.github.udaysagar2177.maps.utils;
  */
 public class MapUtils {
 
+    /**
+     * Largest power of two table size supported by {@link #tableSizeFor(long, float)}.
+     */
+    public static final long MAX_TABLE_SIZE = 1L << 62;
+
     private MapUtils() { /* do nothing. */ }
 
     /**
@@ -21,14 +26,44 @@ public class MapUtils {
     }
 
     /**
-     * Fast hash function, taken from FastUtil library.
+     * Fast hash function, taken from FastUtil library. The upper 32 bits of the given value are
+     * folded in before the result is truncated, so that values that only differ in their upper
+     * bits, e.g. timestamps, don't collide.
      *
      * @param x value to be hashed
      * @return hash value of given long.
      */
     public static int phiMix(long x) {
-        long h = x * 0x9E3779B9; // phiMix(x) taken from FastUtil;
-        return (int) (h ^ (h >> 16));
+        return (int) phiMix64(x);
+    }
+
+    /**
+     * Fast 64-bit hash function, taken from FastUtil library. Unlike {@link #phiMix(long)}, all
+     * 64 bits of the result depend on the given value.
+     *
+     * @param x value to be hashed
+     * @return 64-bit hash value of given long.
+     */
+    public static long phiMix64(long x) {
+        long h = x * 0x9E3779B97F4A7C15L; // mix(x) taken from FastUtil;
+        h ^= h >>> 32;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finalization mix of MurmurHash3. Every bit of the given value affects every bit of the
+     * result, which costs two more multiplications than {@link #phiMix64(long)}.
+     *
+     * @param x value to be hashed
+     * @return 64-bit hash value of given long.
+     */
+    public static long fmix64(long x) {
+        long h = x;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
     }
 
     /**
@@ -61,4 +96,29 @@ public class MapUtils {
         desiredCapacity |= desiredCapacity >> 16;
         return (int) ((desiredCapacity | desiredCapacity >> 32) + 1);
     }
+
+    /**
+     * Computes the least power of two larger than or equal to <code>Math.ceil( expected / f )</code>.
+     *
+     * @param expectedSize
+     *         the expected number of entries in a hash table.
+     * @param loadFactor
+     *         the load factor.
+     * @return the table size to hold expected size of entries.
+     * @throws IllegalArgumentException
+     *         if the necessary size is larger than {@link #MAX_TABLE_SIZE}.
+     */
+    public static long tableSizeFor(long expectedSize, float loadFactor) {
+        double desiredCapacity = Math.ceil(expectedSize / (double) loadFactor);
+        if (desiredCapacity > MAX_TABLE_SIZE) {
+            throw new IllegalArgumentException(String
+                    .format("Storage gets too large with expected size %s, load factor %s",
+                            expectedSize, loadFactor));
+        }
+        if (desiredCapacity <= 2) {
+            return 2;
+        }
+        // find next closest power of 2.
+        return Long.highestOneBit((long) desiredCapacity - 1) << 1;
+    }
 }
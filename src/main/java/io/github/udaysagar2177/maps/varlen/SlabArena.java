@@ -0,0 +1,157 @@
+package io.github.udaysagar2177.maps.varlen;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+
+/**
+ * An append-only off-heap arena made of {@link MemoryResource} slabs. Allocations are bumped
+ * within the current slab and a new slab is started once the current one can't fit the next
+ * allocation, so an allocation never spans two slabs. An allocation larger than the slab size gets
+ * a slab of its own.
+ *
+ * Memory is never reused in place. {@link #free(int)} only accounts the bytes as dead, and the
+ * owner copies the live allocations into a new arena once enough bytes are dead.
+ *
+ * An allocation is identified by a non-zero reference that encodes the slab index in the high 32
+ * bits and the offset within the slab in the low 32 bits, so that zero can mark an empty slot.
+ *
+ * @author uday
+ */
+final class SlabArena implements AutoCloseable {
+
+    private static final int ALIGNMENT = Long.BYTES;
+
+    private final int slabSize;
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+
+    private MemoryResource[] slabs = new MemoryResource[8];
+    private long[] slabAddresses = new long[8];
+    private int numSlabs = 0;
+    private int slabPosition = 0;
+    private int slabCapacity = 0;
+    private long allocatedBytes = 0;
+    private long deadBytes = 0;
+    private long reservedBytes = 0;
+
+    SlabArena(int slabSize, Function<Integer, MemoryResource> memoryResourceFactory) {
+        if (slabSize <= 0 || slabSize % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("slabSize must be a positive multiple of 8");
+        }
+        this.slabSize = slabSize;
+        this.memoryResourceFactory = memoryResourceFactory;
+    }
+
+    /**
+     * @return the no. of bytes that an allocation of the given length takes in the arena.
+     */
+    static int alignedLength(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Allocates the given no. of bytes. The memory isn't zeroed.
+     *
+     * @return the reference to the allocation.
+     */
+    long allocate(int length) {
+        int alignedLength = alignedLength(length);
+        if (alignedLength < 0) {
+            throw new IllegalArgumentException(String.format("Length %s is too large", length));
+        }
+        if (numSlabs == 0 || alignedLength > slabCapacity - slabPosition) {
+            addSlab(Math.max(slabSize, alignedLength));
+        }
+        long reference = ((long) numSlabs << 32) | slabPosition;
+        slabPosition += alignedLength;
+        allocatedBytes += alignedLength;
+        return reference;
+    }
+
+    /**
+     * Accounts the allocation of the given length as dead.
+     */
+    void free(int length) {
+        deadBytes += alignedLength(length);
+    }
+
+    /**
+     * @return the address of the allocation with the given reference.
+     */
+    long address(long reference) {
+        return slabAddresses[(int) (reference >>> 32) - 1] + (int) reference;
+    }
+
+    /**
+     * @return the no. of bytes handed out by {@link #allocate(int)}, including the dead ones.
+     */
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the no. of bytes that were allocated and then freed.
+     */
+    long deadBytes() {
+        return deadBytes;
+    }
+
+    /**
+     * @return the no. of bytes held by the slabs of this arena.
+     */
+    long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Invalidates every allocation. The first slab is kept for reuse and the others are released.
+     */
+    void clear() {
+        for (int i = 1; i < numSlabs; i++) {
+            closeSlab(i);
+        }
+        if (numSlabs > 0) {
+            numSlabs = 1;
+            slabCapacity = slabs[0].capacityInBytes();
+            reservedBytes = slabCapacity;
+        }
+        slabPosition = 0;
+        allocatedBytes = 0;
+        deadBytes = 0;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (int i = 0; i < numSlabs; i++) {
+            closeSlab(i);
+        }
+        numSlabs = 0;
+        reservedBytes = 0;
+    }
+
+    private void addSlab(int capacityInBytes) {
+        if (numSlabs == slabs.length) {
+            slabs = Arrays.copyOf(slabs, numSlabs << 1);
+            slabAddresses = Arrays.copyOf(slabAddresses, numSlabs << 1);
+        }
+        MemoryResource slab = memoryResourceFactory.apply(capacityInBytes);
+        slabs[numSlabs] = slab;
+        slabAddresses[numSlabs] = slab.getAddress();
+        numSlabs++;
+        slabPosition = 0;
+        slabCapacity = capacityInBytes;
+        reservedBytes += capacityInBytes;
+    }
+
+    private void closeSlab(int index) {
+        try {
+            slabs[index].close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            slabs[index] = null;
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package io.github.udaysagar2177.maps.varlen;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.function.Function;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.utils.MapUtils;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.UnsafeMemory;
+import sun.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * A non-threadsafe off-heap map for byte sequences of any length as keys and values.
+ *
+ * Unlike {@link OffHeapMapImpl}, the key-values aren't stored in the Hash Table. Each key-value
+ * is appended as a record (4 bytes of key length, 4 bytes of value length, the key bytes and the
+ * value bytes) to a {@link SlabArena}, and the Hash Table only holds 16 byte slots with the
+ * arena reference of the record, the 32 bit hash of the key and the key length. A lookup only
+ * reads the record of a slot whose hash and key length match the given key, so it usually
+ * touches the arena once. Rehashing and removals move the slots without reading the records.
+ *
+ * Records are written once. Replacing a value with one that fits the same aligned record length
+ * overwrites the record in place, otherwise the new record is appended and the old one becomes
+ * dead bytes. Once the dead bytes exceed the compaction threshold fraction of the allocated
+ * bytes, the live records are copied into a new arena and the old arena is released, see
+ * {@link #compact()}. Compaction needs memory for the live records on top of the current arena.
+ *
+ * Keys and values can be given as byte[] slices or as {@link ByteBuffer}s, in which case the
+ * bytes between the position and the limit are used and the position isn't changed. Heap and
+ * direct buffers are read without an intermediate copy.
+ *
+ * The whole Hash Table lives in a single {@link MemoryResource}, so this map can hold up to
+ * 2<sup>26</sup> slots.
+ *
+ * @author uday
+ */
+public class VarLenOffHeapMap implements AutoCloseable {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+    public static final float DEFAULT_COMPACTION_THRESHOLD = 0.5f;
+
+    private static final long EMPTY_REFERENCE = 0;
+    private static final int REFERENCE_OFFSET = 0;
+    private static final int HASH_OFFSET = Long.BYTES;
+    private static final int KEY_LENGTH_OFFSET = HASH_OFFSET + Integer.BYTES;
+    private static final int SLOT_LENGTH_SHIFT = 4;
+    private static final int MAX_HASH_TABLE_SIZE = (1 << 30) >> SLOT_LENGTH_SHIFT;
+
+    private static final int RECORD_KEY_LENGTH_OFFSET = 0;
+    private static final int RECORD_VALUE_LENGTH_OFFSET = Integer.BYTES;
+    private static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_LENGTH = Integer.MAX_VALUE - Long.BYTES;
+
+    private final float loadFactor;
+    private final int slabSize;
+    private final float compactionThreshold;
+    private final Function<Integer, MemoryResource> memoryResourceFactory;
+    private final Slice key = new Slice();
+    private final Slice value = new Slice();
+
+    private MemoryResource memoryResource;
+    private long address;
+    private int modulo;
+    private int threshold;
+    private int size = 0;
+    private SlabArena arena;
+
+    public VarLenOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            Function<Integer, MemoryResource> memoryResourceFactory) {
+        this(expectedElements, loadFactor, DEFAULT_SLAB_SIZE, DEFAULT_COMPACTION_THRESHOLD,
+                memoryResourceFactory);
+    }
+
+    /**
+     * @param slabSize
+     *         no. of bytes of each arena slab, a positive multiple of 8. Records that are larger
+     *         get a slab of their own.
+     * @param compactionThreshold
+     *         fraction of the allocated arena bytes that can be dead before the arena is
+     *         compacted, in (0, 1].
+     * @param memoryResourceFactory
+     *         creates the {@link MemoryResource}s of both the Hash Table and the arena slabs.
+     */
+    public VarLenOffHeapMap(int expectedElements,
+                            float loadFactor,
+                            int slabSize,
+                            float compactionThreshold,
+                            Function<Integer, MemoryResource> memoryResourceFactory) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+        if (expectedElements <= 0) {
+            throw new IllegalArgumentException("numEntries must be positive!");
+        }
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("compactionThreshold must be in (0, 1]");
+        }
+        this.loadFactor = loadFactor;
+        this.slabSize = slabSize;
+        this.compactionThreshold = compactionThreshold;
+        this.memoryResourceFactory = memoryResourceFactory;
+        int hashTableSize = MapUtils.tableSizeFor(expectedElements, loadFactor);
+        if (hashTableSize > MAX_HASH_TABLE_SIZE) {
+            throw new IllegalArgumentException(String
+                    .format("Storage gets too large with expected size %s, load factor %s",
+                            expectedElements, loadFactor));
+        }
+        this.arena = new SlabArena(slabSize, memoryResourceFactory);
+        allocate(hashTableSize);
+    }
+
+    /**
+     * Associates the given value with the given key in this map.
+     *
+     * @return true if there was no mapping for the key.
+     */
+    public boolean put(byte[] key, byte[] value) {
+        return put(key, 0, key.length, value, 0, value.length);
+    }
+
+    /**
+     * Associates the given slice of bytes as value with the given slice of bytes as key.
+     *
+     * @return true if there was no mapping for the key.
+     */
+    public boolean put(byte[] key, int keyOffset, int keyLength,
+                       byte[] value, int valueOffset, int valueLength) {
+        this.key.set(key, keyOffset, keyLength);
+        this.value.set(value, valueOffset, valueLength);
+        return put();
+    }
+
+    /**
+     * Associates the remaining bytes of the given value buffer with the remaining bytes of the
+     * given key buffer.
+     *
+     * @return true if there was no mapping for the key.
+     */
+    public boolean put(ByteBuffer key, ByteBuffer value) {
+        this.key.set(key);
+        this.value.set(value);
+        return put();
+    }
+
+    /**
+     * @return a copy of the value to which the given key is mapped, or null if this map contains
+     * no mapping for the key.
+     */
+    public byte[] get(byte[] key) {
+        return get(key, 0, key.length);
+    }
+
+    /**
+     * @return a copy of the value to which the given slice of bytes is mapped, or null if this map
+     * contains no mapping for the key.
+     */
+    public byte[] get(byte[] key, int keyOffset, int keyLength) {
+        this.key.set(key, keyOffset, keyLength);
+        int position = indexOf(hashKey());
+        if (position < 0) {
+            return null;
+        }
+        long recordAddress = recordAddress(position);
+        byte[] value = new byte[OS.memory().readInt(recordAddress + RECORD_VALUE_LENGTH_OFFSET)];
+        OS.memory().copyMemory(recordAddress + RECORD_HEADER_LENGTH + keyLength, value,
+                Unsafe.ARRAY_BYTE_BASE_OFFSET, value.length);
+        return value;
+    }
+
+    /**
+     * Copies the value to which the remaining bytes of the given key buffer are mapped into the
+     * given value buffer, starting at its position. The position of the value buffer is advanced
+     * by the length of the value.
+     *
+     * @return length of the value, or -1 if this map contains no mapping for the key.
+     * @throws BufferOverflowException
+     *         if the value doesn't fit in the remaining bytes of the value buffer.
+     */
+    public int get(ByteBuffer key, ByteBuffer usingValue) {
+        this.key.set(key);
+        int position = indexOf(hashKey());
+        if (position < 0) {
+            return -1;
+        }
+        long recordAddress = recordAddress(position);
+        int valueLength = OS.memory().readInt(recordAddress + RECORD_VALUE_LENGTH_OFFSET);
+        if (usingValue.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (usingValue.remaining() < valueLength) {
+            throw new BufferOverflowException();
+        }
+        long valueAddress = recordAddress + RECORD_HEADER_LENGTH + this.key.length;
+        if (usingValue.isDirect()) {
+            OS.memory().copyMemory(valueAddress,
+                    ((DirectBuffer) usingValue).address() + usingValue.position(), valueLength);
+        } else {
+            OS.memory().copyMemory(valueAddress, usingValue.array(), Unsafe.ARRAY_BYTE_BASE_OFFSET
+                    + usingValue.arrayOffset() + usingValue.position(), valueLength);
+        }
+        usingValue.position(usingValue.position() + valueLength);
+        return valueLength;
+    }
+
+    /**
+     * @return true if this map contains a mapping for the given key.
+     */
+    public boolean containsKey(byte[] key) {
+        this.key.set(key, 0, key.length);
+        return indexOf(hashKey()) >= 0;
+    }
+
+    /**
+     * @return true if this map contains a mapping for the remaining bytes of the given buffer.
+     */
+    public boolean containsKey(ByteBuffer key) {
+        this.key.set(key);
+        return indexOf(hashKey()) >= 0;
+    }
+
+    /**
+     * Removes the mapping for the given key from this map if it is present.
+     *
+     * @return true if there was a mapping for the key.
+     */
+    public boolean remove(byte[] key) {
+        return remove(key, 0, key.length);
+    }
+
+    /**
+     * Removes the mapping for the given slice of bytes from this map if it is present.
+     *
+     * @return true if there was a mapping for the key.
+     */
+    public boolean remove(byte[] key, int keyOffset, int keyLength) {
+        this.key.set(key, keyOffset, keyLength);
+        return remove();
+    }
+
+    /**
+     * Removes the mapping for the remaining bytes of the given buffer from this map if it is
+     * present.
+     *
+     * @return true if there was a mapping for the key.
+     */
+    public boolean remove(ByteBuffer key) {
+        this.key.set(key);
+        return remove();
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return no. of arena bytes taken by the records, including the dead ones.
+     */
+    public long allocatedArenaBytes() {
+        return arena.allocatedBytes();
+    }
+
+    /**
+     * @return no. of arena bytes taken by records that were replaced or removed.
+     */
+    public long deadArenaBytes() {
+        return arena.deadBytes();
+    }
+
+    /**
+     * Copies the live records into a new arena, in Hash Table order, and releases the current
+     * arena. This happens automatically once the dead bytes pass the compaction threshold, so it
+     * only needs to be called to release memory right away, e.g. after a lot of removals.
+     */
+    public void compact() {
+        SlabArena compactedArena = new SlabArena(slabSize, memoryResourceFactory);
+        int hashTableSize = modulo + 1;
+        for (int i = 0; i < hashTableSize; i++) {
+            long slotAddress = slotAddress(i);
+            long reference = OS.memory().readLong(slotAddress + REFERENCE_OFFSET);
+            if (reference == EMPTY_REFERENCE) {
+                continue;
+            }
+            long recordAddress = arena.address(reference);
+            int recordLength = recordLength(recordAddress);
+            long compactedReference = compactedArena.allocate(recordLength);
+            OS.memory().copyMemory(recordAddress, compactedArena.address(compactedReference),
+                    recordLength);
+            OS.memory().writeLong(slotAddress + REFERENCE_OFFSET, compactedReference);
+        }
+        SlabArena oldArena = arena;
+        arena = compactedArena;
+        try {
+            oldArena.close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map. The first arena slab is kept for reuse.
+     */
+    public void clear() {
+        OS.memory().setMemory(address, memoryResource.capacityInBytes(), (byte) 0);
+        arena.clear();
+        size = 0;
+    }
+
+    /**
+     * Closes the map thereby releasing the off-heap memory.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            arena.close();
+        } finally {
+            memoryResource.close();
+        }
+    }
+
+    private boolean put() {
+        long newRecordLength = (long) RECORD_HEADER_LENGTH + key.length + value.length;
+        if (newRecordLength > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException(String.format(
+                    "Key length %s and value length %s are too large", key.length, value.length));
+        }
+        int hash = hashKey();
+        int position = hash & modulo;
+        do {
+            long slotAddress = slotAddress(position);
+            long reference = OS.memory().readLong(slotAddress + REFERENCE_OFFSET);
+            if (reference == EMPTY_REFERENCE) {
+                OS.memory().writeInt(slotAddress + HASH_OFFSET, hash);
+                OS.memory().writeInt(slotAddress + KEY_LENGTH_OFFSET, key.length);
+                OS.memory().writeLong(slotAddress + REFERENCE_OFFSET,
+                        writeRecord((int) newRecordLength));
+                size++;
+                if (size > threshold) {
+                    rehash();
+                }
+                return true;
+            }
+            if (matches(slotAddress, hash)) {
+                long recordAddress = arena.address(reference);
+                int oldRecordLength = recordLength(recordAddress);
+                if (SlabArena.alignedLength(oldRecordLength)
+                        == SlabArena.alignedLength((int) newRecordLength)) {
+                    OS.memory().writeInt(recordAddress + RECORD_VALUE_LENGTH_OFFSET, value.length);
+                    value.copyTo(recordAddress + RECORD_HEADER_LENGTH + key.length);
+                } else {
+                    OS.memory().writeLong(slotAddress + REFERENCE_OFFSET,
+                            writeRecord((int) newRecordLength));
+                    arena.free(oldRecordLength);
+                    compactIfNeeded();
+                }
+                return false;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    private boolean remove() {
+        int position = indexOf(hashKey());
+        if (position < 0) {
+            return false;
+        }
+        arena.free(recordLength(recordAddress(position)));
+        shiftSlots(position);
+        size--;
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * @return the position of the slot with the current key, or -1 if there is none.
+     */
+    private int indexOf(int hash) {
+        int position = hash & modulo;
+        do {
+            long slotAddress = slotAddress(position);
+            long reference = OS.memory().readLong(slotAddress + REFERENCE_OFFSET);
+            if (reference == EMPTY_REFERENCE) {
+                return -1;
+            }
+            if (matches(slotAddress, hash)) {
+                return position;
+            }
+            position = (position + 1) & modulo;
+        } while (true);
+    }
+
+    /**
+     * Compares the hash and the key length of the slot before the key bytes of its record.
+     */
+    private boolean matches(long slotAddress, int hash) {
+        if (OS.memory().readInt(slotAddress + HASH_OFFSET) != hash
+                || OS.memory().readInt(slotAddress + KEY_LENGTH_OFFSET) != key.length) {
+            return false;
+        }
+        long keyAddress = arena.address(OS.memory().readLong(slotAddress + REFERENCE_OFFSET))
+                + RECORD_HEADER_LENGTH;
+        int length = key.length;
+        int i = 0;
+        for (; i < length - 7; i += 8) {
+            if (OS.memory().readLong(keyAddress + i) != key.readLong(i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (OS.memory().readByte(keyAddress + i) != key.readByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hashKey() {
+        int length = key.length;
+        long hash = length;
+        int i = 0;
+        for (; i < length - 7; i += 8) {
+            hash = 31 * hash + key.readLong(i);
+        }
+        for (; i < length; i++) {
+            hash = 31 * hash + key.readByte(i);
+        }
+        return (int) MapUtils.phiMix64(hash);
+    }
+
+    private long writeRecord(int recordLength) {
+        long reference = arena.allocate(recordLength);
+        long recordAddress = arena.address(reference);
+        OS.memory().writeInt(recordAddress + RECORD_KEY_LENGTH_OFFSET, key.length);
+        OS.memory().writeInt(recordAddress + RECORD_VALUE_LENGTH_OFFSET, value.length);
+        key.copyTo(recordAddress + RECORD_HEADER_LENGTH);
+        value.copyTo(recordAddress + RECORD_HEADER_LENGTH + key.length);
+        return reference;
+    }
+
+    private void compactIfNeeded() {
+        long allocatedBytes = arena.allocatedBytes();
+        if (allocatedBytes >= slabSize
+                && arena.deadBytes() > compactionThreshold * allocatedBytes) {
+            compact();
+        }
+    }
+
+    private static int recordLength(long recordAddress) {
+        return RECORD_HEADER_LENGTH
+                + OS.memory().readInt(recordAddress + RECORD_KEY_LENGTH_OFFSET)
+                + OS.memory().readInt(recordAddress + RECORD_VALUE_LENGTH_OFFSET);
+    }
+
+    private long recordAddress(int position) {
+        return arena.address(OS.memory().readLong(slotAddress(position) + REFERENCE_OFFSET));
+    }
+
+    private long slotAddress(int position) {
+        return address + ((long) position << SLOT_LENGTH_SHIFT);
+    }
+
+    private void shiftSlots(int currentPosition) {
+        int freeSlot;
+        int currentKeySlot;
+        do {
+            freeSlot = currentPosition;
+            currentPosition = (currentPosition + 1) & modulo;
+            while (true) {
+                long currentSlotAddress = slotAddress(currentPosition);
+                if (OS.memory().readLong(currentSlotAddress + REFERENCE_OFFSET)
+                        == EMPTY_REFERENCE) {
+                    OS.memory().setMemory(slotAddress(freeSlot), 1 << SLOT_LENGTH_SHIFT,
+                            (byte) 0);
+                    return;
+                }
+                currentKeySlot = OS.memory().readInt(currentSlotAddress + HASH_OFFSET) & modulo;
+                if (freeSlot <= currentPosition) {
+                    if (freeSlot >= currentKeySlot || currentKeySlot > currentPosition) {
+                        break;
+                    }
+                } else {
+                    if (currentPosition < currentKeySlot && currentKeySlot <= freeSlot) {
+                        break;
+                    }
+                }
+                currentPosition = (currentPosition + 1) & modulo;
+            }
+            OS.memory().copyMemory(slotAddress(currentPosition), slotAddress(freeSlot),
+                    1 << SLOT_LENGTH_SHIFT);
+        } while (true);
+    }
+
+    /**
+     * Doubles the Hash Table. Slots are placed by their stored hash, so the records aren't read.
+     */
+    private void rehash() {
+        int oldHashTableSize = modulo + 1;
+        if (oldHashTableSize >= MAX_HASH_TABLE_SIZE) {
+            throw new IllegalStateException(String
+                    .format("Storage gets too large with size %s, load factor %s", size,
+                            loadFactor));
+        }
+        MemoryResource oldMemoryResource = memoryResource;
+        long oldAddress = address;
+        allocate(oldHashTableSize << 1);
+        try {
+            for (int i = 0; i < oldHashTableSize; i++) {
+                long oldSlotAddress = oldAddress + ((long) i << SLOT_LENGTH_SHIFT);
+                if (OS.memory().readLong(oldSlotAddress + REFERENCE_OFFSET) == EMPTY_REFERENCE) {
+                    continue;
+                }
+                int newPosition = OS.memory().readInt(oldSlotAddress + HASH_OFFSET) & modulo;
+                while (OS.memory().readLong(slotAddress(newPosition) + REFERENCE_OFFSET)
+                        != EMPTY_REFERENCE) {
+                    newPosition = (newPosition + 1) & modulo;
+                }
+                OS.memory().copyMemory(oldSlotAddress, slotAddress(newPosition),
+                        1 << SLOT_LENGTH_SHIFT);
+            }
+        } finally {
+            try {
+                oldMemoryResource.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void allocate(int hashTableSize) {
+        this.memoryResource = memoryResourceFactory.apply(hashTableSize << SLOT_LENGTH_SHIFT);
+        this.address = memoryResource.getAddress();
+        this.modulo = hashTableSize - 1;
+        this.threshold = Math.max(1, (int) (hashTableSize * loadFactor));
+    }
+
+    /**
+     * Location of the bytes of a key or a value, as (base, offset), where base is null for
+     * off-heap memory and the offset is then an address.
+     */
+    private static final class Slice {
+
+        private Object base;
+        private long offset;
+        private int length;
+        private byte[] copy = new byte[0];
+
+        private void set(byte[] bytes, int offset, int length) {
+            if (offset < 0 || length < 0 || offset > bytes.length - length) {
+                throw new IndexOutOfBoundsException(String.format(
+                        "Offset %s and length %s are out of bounds of %s bytes", offset, length,
+                        bytes.length));
+            }
+            this.base = bytes;
+            this.offset = Unsafe.ARRAY_BYTE_BASE_OFFSET + offset;
+            this.length = length;
+        }
+
+        private void set(ByteBuffer buffer) {
+            int length = buffer.remaining();
+            if (buffer.isDirect()) {
+                this.base = null;
+                this.offset = ((DirectBuffer) buffer).address() + buffer.position();
+                this.length = length;
+            } else if (buffer.hasArray()) {
+                set(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            } else {
+                // read-only heap buffers don't expose their array.
+                if (copy.length < length) {
+                    copy = new byte[length];
+                }
+                buffer.duplicate().get(copy, 0, length);
+                set(copy, 0, length);
+            }
+        }
+
+        private long readLong(int index) {
+            return base == null ? OS.memory().readLong(offset + index)
+                    : OS.memory().readLong(base, offset + index);
+        }
+
+        private byte readByte(int index) {
+            return base == null ? OS.memory().readByte(offset + index)
+                    : OS.memory().readByte(base, offset + index);
+        }
+
+        private void copyTo(long address) {
+            UnsafeMemory.UNSAFE.copyMemory(base, offset, null, address, length);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.github.udaysagar2177.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.LongHolder;
+import io.github.udaysagar2177.maps.sedeserializers.LongLongEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.SeededEntrySeDeserializer;
+
+public class FrozenOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testFreeze() throws Exception {
+        int numElements = 100_000;
+        Map<Integer, Integer> expected = new HashMap<>();
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder getValue = new IntHolder();
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(numElements,
+                0.66f, new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new)) {
+            source.put(key.setInt(0), value.setInt(-1), null);
+            expected.put(0, -1);
+            while (expected.size() < numElements) {
+                int k = RANDOM.nextInt();
+                int v = RANDOM.nextInt();
+                source.put(key.setInt(k), value.setInt(v), null);
+                expected.put(k, v);
+            }
+            try (FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.freeze(source,
+                    new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                    IntHolder::new, IntHolder::new)) {
+                assertEquals(numElements, map.size());
+                for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), getValue).getInt());
+                }
+                for (int i = 0; i < numElements; i++) {
+                    int k = RANDOM.nextInt();
+                    if (!expected.containsKey(k)) {
+                        assertNull(map.get(key.setInt(k), getValue));
+                    }
+                }
+                Map<Integer, Integer> visited = new HashMap<>();
+                map.forEach((k, v) -> visited.put(k.getInt(), v.getInt()));
+                assertEquals(expected, visited);
+                // the entries plus a few bits per key.
+                long entriesSize = (long) numElements * Integer.BYTES * 2;
+                assertTrue(map.sizeInBytes() < entriesSize + numElements);
+            }
+        }
+    }
+
+    @Test
+    public void testFreezeWithCollidingHashes() throws Exception {
+        int numElements = 1_000;
+        // only 16 distinct hashes, so most of the keys end up in the fallback table.
+        IntIntEntrySeDeserializer entrySeDeserializer = new IntIntEntrySeDeserializer() {
+            @Override
+            public int hash(IntHolder key) {
+                return key.getInt() & 15;
+            }
+        };
+        Map<Integer, Integer> expected = new HashMap<>();
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder getValue = new IntHolder();
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(numElements,
+                0.66f, new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new)) {
+            for (int i = 0; i < numElements; i++) {
+                source.put(key.setInt(i), value.setInt(i * 3), null);
+                expected.put(i, i * 3);
+            }
+            try (FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.freeze(source,
+                    entrySeDeserializer, DirectMemoryResource::new,
+                    IntHolder::new, IntHolder::new)) {
+                assertEquals(numElements, map.size());
+                for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), getValue).getInt());
+                }
+                assertNull(map.get(key.setInt(numElements), getValue));
+                assertNull(map.get(key.setInt(-1), getValue));
+            }
+        }
+    }
+
+    @Test
+    public void testFreezeEmptyMap() throws Exception {
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+             FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.freeze(source,
+                     new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                     IntHolder::new, IntHolder::new)) {
+            assertEquals(0, map.size());
+            assertNull(map.get(new IntHolder().setInt(0), new IntHolder()));
+            assertTrue(!map.cursor().next());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPutIsUnsupported() throws Exception {
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+             FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.freeze(source,
+                     new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                     IntHolder::new, IntHolder::new)) {
+            map.put(new IntHolder().setInt(1), new IntHolder().setInt(1), null);
+        }
+    }
+
+    @Test
+    public void testPublishAndRefresh() throws Exception {
+        int numElements = 10_000;
+        File directory = Files.createTempDirectory("frozenOffHeapMap").toFile();
+        File file = new File(directory, "intIntMap.image");
+        IntHolder key = new IntHolder();
+        IntHolder getValue = new IntHolder();
+        try {
+            publish(file, numElements, 1);
+            try (FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.open(file,
+                    new IntIntEntrySeDeserializer(), IntHolder::new, IntHolder::new)) {
+                assertEquals(numElements, map.size());
+                for (int i = 0; i < numElements; i++) {
+                    assertEquals(i, map.get(key.setInt(i), getValue).getInt());
+                }
+                assertNull(map.get(key.setInt(numElements), getValue));
+            }
+
+            try (PublishedOffHeapMap<IntHolder, IntHolder> map = new PublishedOffHeapMap<>(file,
+                    new IntIntEntrySeDeserializer(), IntHolder::new, IntHolder::new)) {
+                assertEquals(numElements, map.size());
+                assertFalse(map.refresh());
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                Thread reader = new Thread(() -> {
+                    IntHolder readerKey = new IntHolder();
+                    IntHolder readerValue = new IntHolder();
+                    try {
+                        while (!done.get()) {
+                            int k = RANDOM.nextInt(numElements);
+                            int v = map.get(readerKey.setInt(k), readerValue).getInt();
+                            // every image maps each key to a multiple of it.
+                            assertEquals(0, k == 0 ? v : v % k);
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                });
+                reader.start();
+                for (int version = 2; version <= 5; version++) {
+                    publish(file, numElements, version);
+                    assertTrue(map.refresh());
+                    assertEquals(version, map.get(key.setInt(1), getValue).getInt());
+                }
+                done.set(true);
+                reader.join();
+                assertNull(failure.get());
+                assertFalse(map.refresh());
+            }
+        } finally {
+            for (File child : directory.listFiles()) {
+                child.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenWithDifferentEntrySeDeserializer() throws Exception {
+        File file = File.createTempFile("frozenOffHeapMap", ".image");
+        try {
+            publish(file, 10, 1);
+            FrozenOffHeapMap.open(file, new LongLongEntrySeDeserializer(), LongHolder::new,
+                    LongHolder::new);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPublishWithSeed() throws Exception {
+        File file = File.createTempFile("frozenOffHeapMap", ".image");
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(10, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new, IntHolder::new,
+                IntHolder::new)) {
+            for (int i = 0; i < 10; i++) {
+                source.put(key.setInt(i), value.setInt(i), null);
+            }
+            try (FrozenOffHeapMap<IntHolder, IntHolder> map = FrozenOffHeapMap.freeze(source,
+                    new SeededEntrySeDeserializer<>(new IntIntEntrySeDeserializer()),
+                    DirectMemoryResource::new, IntHolder::new, IntHolder::new)) {
+                assertEquals(7, map.get(key.setInt(7), value).getInt());
+                map.publish(file);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void publish(File file, int numElements, int multiplier) throws Exception {
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        try (OffHeapMapImpl<IntHolder, IntHolder> source = new OffHeapMapImpl<>(numElements,
+                0.66f, new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+             FrozenOffHeapMap<IntHolder, IntHolder> map = buildFrozen(source, numElements,
+                     multiplier, key, value)) {
+            map.publish(file);
+        }
+    }
+
+    private static FrozenOffHeapMap<IntHolder, IntHolder> buildFrozen(
+            OffHeapMapImpl<IntHolder, IntHolder> source, int numElements, int multiplier,
+            IntHolder key, IntHolder value) {
+        for (int i = 0; i < numElements; i++) {
+            source.put(key.setInt(i), value.setInt(i * multiplier), null);
+        }
+        return FrozenOffHeapMap.freeze(source, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+    }
+}
@@ -1,18 +1,33 @@
 package io.github.udaysagar2177.maps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.function.Function;
+
+import javax.management.ObjectName;
 
 import org.junit.Test;
 
 
 import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.memory.MemoryResource;
+import io.github.udaysagar2177.maps.memory.MmapMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.GenerationalEntrySeDeserializer;
 import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
 import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.LongHolder;
+import io.github.udaysagar2177.maps.sedeserializers.LongLongEntrySeDeserializer;
 
 public class IntIntOffHeapMapTest {
 
@@ -114,4 +129,549 @@ public class IntIntOffHeapMapTest {
             map.close();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIncrementalRehash() throws Exception {
+        int numElements = 100000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new, RehashMode.INCREMENTAL);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        boolean sawMigration = false;
+        try {
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(numElements);
+                key.setInt(randInt);
+                if (RANDOM.nextInt(10) < 2) {
+                    Integer removedValue = hashMap.remove(randInt);
+                    IntHolder removedValueHolder = map.remove(key, valueFlyweight);
+                    if (removedValue == null) {
+                        assertNull(removedValueHolder);
+                    } else {
+                        assertEquals((int) removedValue, removedValueHolder.getInt());
+                    }
+                } else {
+                    Integer previousValue = hashMap.put(randInt, i);
+                    IntHolder previousValueHolder = map.put(key, value.setInt(i), valueFlyweight);
+                    if (previousValue == null) {
+                        assertNull(previousValueHolder);
+                    } else {
+                        assertEquals((int) previousValue, previousValueHolder.getInt());
+                    }
+                }
+                sawMigration |= map.isMigrating();
+                assertEquals(hashMap.size(), map.size());
+            }
+            assertTrue(sawMigration);
+            for (int i = 0; i < numElements; i++) {
+                Integer expected = hashMap.get(i);
+                IntHolder actual = map.get(key.setInt(i), valueFlyweight);
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertEquals((int) expected, actual.getInt());
+                }
+            }
+            assertFalse(map.isMigrating());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testRehashOfFullTable() throws Exception {
+        for (RehashMode rehashMode : RehashMode.values()) {
+            // 2 slots and a threshold of 1, so the second put rehashes a table without an empty
+            // slot.
+            OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                    new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                    IntHolder::new, IntHolder::new, rehashMode);
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            try {
+                assertEquals(2, map.stats().getHashTableSize());
+                map.put(key.setInt(1), value.setInt(10), null);
+                map.put(key.setInt(2), value.setInt(20), null);
+                assertEquals(1, map.stats().getRehashCount());
+                assertFalse(map.isMigrating());
+                assertEquals(10, map.get(key.setInt(1), value).getInt());
+                assertEquals(20, map.get(key.setInt(2), value).getInt());
+                assertEquals(2, map.size());
+            } finally {
+                map.close();
+            }
+        }
+    }
+
+    @Test
+    public void testInPlaceRehash() throws Exception {
+        testInPlaceRehash(DirectMemoryResource::new);
+    }
+
+    @Test
+    public void testInPlaceRehashOfMmapTable() throws Exception {
+        File directory = Files.createTempDirectory("inPlaceRehash").toFile();
+        try {
+            testInPlaceRehash((capacityInBytes) -> new MmapMemoryResource(
+                    directory.getAbsolutePath(), "map", capacityInBytes));
+            assertEquals(0, directory.listFiles().length);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void testInPlaceRehash(Function<Integer, MemoryResource> memoryResourceFactory)
+            throws Exception {
+        int numElements = 100000;
+        List<MemoryResource> memoryResources = new ArrayList<>();
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.9f,
+                new IntIntEntrySeDeserializer(), (capacityInBytes) -> {
+                    MemoryResource memoryResource = memoryResourceFactory.apply(capacityInBytes);
+                    memoryResources.add(memoryResource);
+                    return memoryResource;
+                }, IntHolder::new, IntHolder::new, RehashMode.IN_PLACE);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(numElements);
+                key.setInt(randInt);
+                if (RANDOM.nextInt(10) < 2) {
+                    Integer removedValue = hashMap.remove(randInt);
+                    IntHolder removedValueHolder = map.remove(key, valueFlyweight);
+                    if (removedValue == null) {
+                        assertNull(removedValueHolder);
+                    } else {
+                        assertEquals((int) removedValue, removedValueHolder.getInt());
+                    }
+                } else {
+                    hashMap.put(randInt, i);
+                    map.put(key, value.setInt(i), null);
+                }
+            }
+            assertTrue(map.stats().getRehashCount() > 10);
+            assertEquals(hashMap.size(), map.size());
+            for (int i = 0; i < numElements; i++) {
+                Integer expected = hashMap.get(i);
+                IntHolder actual = map.get(key.setInt(i), valueFlyweight);
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertEquals((int) expected, actual.getInt());
+                }
+            }
+            if (memoryResources.get(0) instanceof MmapMemoryResource) {
+                // the file of the first table was extended on every rehash.
+                assertEquals(1, memoryResources.size());
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        int numElements = 100000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(numElements, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            map.put(key.setInt(0), value.setInt(-1), valueFlyweight);
+            hashMap.put(0, -1);
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(100000000);
+                map.put(key.setInt(randInt), value.setInt(randInt * 2), valueFlyweight);
+                hashMap.put(randInt, randInt * 2);
+            }
+            Map<Integer, Integer> visited = new HashMap<>();
+            map.forEach((k, v) -> assertNull(visited.put(k.getInt(), v.getInt())));
+            assertEquals(hashMap, visited);
+
+            // remove every even key through the cursor, which includes the free key.
+            Cursor<IntHolder, IntHolder> cursor = map.cursor();
+            visited.clear();
+            while (cursor.next()) {
+                assertNull(visited.put(cursor.key().getInt(), cursor.value().getInt()));
+                if (cursor.key().getInt() % 2 == 0) {
+                    cursor.remove();
+                }
+            }
+            assertEquals(hashMap, visited);
+            hashMap.keySet().removeIf(k -> k % 2 == 0);
+            assertEquals(hashMap.size(), map.size());
+            for (Map.Entry<Integer, Integer> entry : visited.entrySet()) {
+                IntHolder actual = map.get(key.setInt(entry.getKey()), valueFlyweight);
+                if (entry.getKey() % 2 == 0) {
+                    assertNull(actual);
+                } else {
+                    assertEquals((int) entry.getValue(), actual.getInt());
+                }
+            }
+
+            map.clear();
+            assertFalse(map.cursor().next());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testGetAll() throws Exception {
+        int numElements = 100000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(numElements, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            map.put(key.setInt(0), value.setInt(1), null);
+            hashMap.put(0, 1);
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(2 * numElements);
+                map.put(key.setInt(randInt), value.setInt(i), null);
+                hashMap.put(randInt, i);
+            }
+            // 1003 is not a multiple of the group size, which covers the last partial group.
+            IntHolder[] keys = new IntHolder[1003];
+            IntHolder[] values = new IntHolder[keys.length];
+            boolean[] found = new boolean[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new IntHolder();
+                values[i] = new IntHolder();
+            }
+            for (int k = 0; k < 10; k++) {
+                int expectedFound = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i].setInt(RANDOM.nextInt(2 * numElements));
+                    expectedFound += hashMap.containsKey(keys[i].getInt()) ? 1 : 0;
+                }
+                assertEquals(expectedFound, map.getAll(keys, values, found));
+                for (int i = 0; i < keys.length; i++) {
+                    Integer expected = hashMap.get(keys[i].getInt());
+                    assertEquals(expected != null, found[i]);
+                    if (expected != null) {
+                        assertEquals((int) expected, values[i].getInt());
+                    }
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testGenerationalClear() throws Exception {
+        int numElements = 1000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(numElements, 0.66f,
+                new GenerationalEntrySeDeserializer<>(new IntIntEntrySeDeserializer()),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int k = 0; k < 100; k++) {
+                map.clear();
+                hashMap.clear();
+                assertEquals(0, map.size());
+                assertFalse(map.cursor().next());
+                for (int i = 0; i < numElements; i++) {
+                    int randInt = RANDOM.nextInt(2 * numElements);
+                    key.setInt(randInt);
+                    if (RANDOM.nextInt(10) < 2) {
+                        Integer removedValue = hashMap.remove(randInt);
+                        IntHolder removedValueHolder = map.remove(key, valueFlyweight);
+                        if (removedValue == null) {
+                            assertNull(removedValueHolder);
+                        } else {
+                            assertEquals((int) removedValue, removedValueHolder.getInt());
+                        }
+                    } else {
+                        Integer previousValue = hashMap.put(randInt, i);
+                        IntHolder previousValueHolder = map.put(key, value.setInt(i),
+                                valueFlyweight);
+                        if (previousValue == null) {
+                            assertNull(previousValueHolder);
+                        } else {
+                            assertEquals((int) previousValue, previousValueHolder.getInt());
+                        }
+                    }
+                }
+                assertEquals(hashMap.size(), map.size());
+                Map<Integer, Integer> visited = new HashMap<>();
+                map.forEach((k1, v1) -> assertNull(visited.put(k1.getInt(), v1.getInt())));
+                assertEquals(hashMap, visited);
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testRobinHoodProbing() throws Exception {
+        for (RehashMode rehashMode : RehashMode.values()) {
+            testRobinHoodProbing(rehashMode);
+        }
+    }
+
+    private void testRobinHoodProbing(RehashMode rehashMode) throws Exception {
+        int numElements = 100000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.9f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new, rehashMode, ProbingScheme.ROBIN_HOOD);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(numElements);
+                key.setInt(randInt);
+                if (RANDOM.nextInt(10) < 3) {
+                    Integer removedValue = hashMap.remove(randInt);
+                    IntHolder removedValueHolder = map.remove(key, valueFlyweight);
+                    if (removedValue == null) {
+                        assertNull(removedValueHolder);
+                    } else {
+                        assertEquals((int) removedValue, removedValueHolder.getInt());
+                    }
+                } else {
+                    Integer previousValue = hashMap.put(randInt, i);
+                    IntHolder previousValueHolder = map.put(key, value.setInt(i), valueFlyweight);
+                    if (previousValue == null) {
+                        assertNull(previousValueHolder);
+                    } else {
+                        assertEquals((int) previousValue, previousValueHolder.getInt());
+                    }
+                }
+                assertEquals(hashMap.size(), map.size());
+            }
+            Cursor<IntHolder, IntHolder> cursor = map.cursor();
+            while (cursor.next()) {
+                if (cursor.key().getInt() % 3 == 0) {
+                    cursor.remove();
+                }
+            }
+            hashMap.keySet().removeIf(k -> k % 3 == 0);
+            assertEquals(hashMap.size(), map.size());
+            for (int i = 0; i < 2 * numElements; i++) {
+                Integer expected = hashMap.get(i);
+                IntHolder actual = map.get(key.setInt(i), valueFlyweight);
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertEquals((int) expected, actual.getInt());
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        int numElements = 10000;
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        try {
+            ObjectName objectName = map.registerStatsMXBean("testStats");
+            for (int i = 1; i <= numElements; i++) {
+                map.put(key.setInt(i), value.setInt(i), null);
+            }
+            MapStats stats = map.stats();
+            assertFalse(stats.isScanned());
+            assertEquals(numElements, stats.getSize());
+            assertEquals(16384, stats.getHashTableSize());
+            assertEquals(13, stats.getRehashCount());
+            assertEquals(16384 * 8, stats.getCommittedBytes());
+            assertTrue(stats.getActualLoadFactor() <= 0.66);
+
+            MapStats scanStats = map.scanStats();
+            assertTrue(scanStats.isScanned());
+            long numEntries = 0;
+            for (long count : scanStats.getProbeLengthHistogram()) {
+                numEntries += count;
+            }
+            assertEquals(numElements, numEntries);
+            assertTrue(scanStats.getAverageProbeLength() >= 1);
+            assertTrue(scanStats.getMaxProbeLength() <= scanStats.getMaxClusterSize());
+
+            assertEquals((long) numElements, ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(objectName, "Size"));
+            assertEquals(scanStats.getMaxClusterSize(), ManagementFactory
+                    .getPlatformMBeanServer().getAttribute(objectName, "MaxClusterSize"));
+        } finally {
+            map.close();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("io.github.udaysagar2177.maps:*"), null).isEmpty());
+    }
+
+    @Test
+    public void testPersistentMap() throws Exception {
+        File directory = Files.createTempDirectory("persistentMap").toFile();
+        try {
+            Map<Integer, Integer> expectedMap = new HashMap<>();
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            OffHeapMapImpl<IntHolder, IntHolder> map = OffHeapMapImpl.open(directory, "map", 1,
+                    0.66f, new IntIntEntrySeDeserializer(), IntHolder::new, IntHolder::new);
+            try {
+                for (int i = 0; i < 100_000; i++) {
+                    int k = RANDOM.nextInt(200_000);
+                    expectedMap.put(k, i);
+                    map.put(key.setInt(k), value.setInt(i), null);
+                }
+                expectedMap.put(0, -1);
+                map.put(key.setInt(0), value.setInt(-1), null);
+            } finally {
+                map.close();
+            }
+            // only the header and the files of the last Hash Table are left after the rehashes.
+            assertEquals(2, directory.listFiles().length);
+
+            // the given expected size and load factor don't apply to the existing map.
+            map = OffHeapMapImpl.open(directory, "map", 1, 0.9f, new IntIntEntrySeDeserializer(),
+                    IntHolder::new, IntHolder::new);
+            try {
+                assertEquals(0.66f, map.stats().getLoadFactor(), 0);
+                assertEquals(expectedMap.size(), map.size());
+                for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), value).getInt());
+                }
+                map.remove(key.setInt(0), null);
+                expectedMap.remove(0);
+            } finally {
+                map.close();
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testPersistentMapNotClosed() throws Exception {
+        File directory = Files.createTempDirectory("persistentMap").toFile();
+        try {
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            OffHeapMapImpl<IntHolder, IntHolder> crashedMap = OffHeapMapImpl.open(directory,
+                    "map", 1000, 0.66f, new IntIntEntrySeDeserializer(), IntHolder::new,
+                    IntHolder::new);
+            for (int i = 1; i <= 500; i++) {
+                crashedMap.put(key.setInt(i), value.setInt(i), null);
+            }
+            // the header of the first map still says it's open, so its entries are counted.
+            OffHeapMapImpl<IntHolder, IntHolder> map = OffHeapMapImpl.open(directory, "map", 1,
+                    0.66f, new IntIntEntrySeDeserializer(), IntHolder::new, IntHolder::new);
+            try {
+                assertEquals(500, map.size());
+                assertEquals(250, map.get(key.setInt(250), value).getInt());
+            } finally {
+                map.close();
+                crashedMap.close();
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPersistentMapWithDifferentLayout() throws Exception {
+        File directory = Files.createTempDirectory("persistentMap").toFile();
+        try {
+            OffHeapMapImpl.open(directory, "map", 10, 0.66f, new IntIntEntrySeDeserializer(),
+                    IntHolder::new, IntHolder::new).close();
+            OffHeapMapImpl.open(directory, "map", 10, 0.66f, new LongLongEntrySeDeserializer(),
+                    LongHolder::new, LongHolder::new);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        for (ProbingScheme probingScheme : ProbingScheme.values()) {
+            int numElements = 200_000;
+            Map<Integer, Integer> expected = new HashMap<>();
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            File directory = Files.createTempDirectory("snapshot").toFile();
+            File file = new File(directory, "map.snapshot");
+            try (OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(16, 0.75f,
+                    new IntIntEntrySeDeserializer(), DirectMemoryResource::new, IntHolder::new,
+                    IntHolder::new, RehashMode.ALL_AT_ONCE, probingScheme)) {
+                map.put(key.setInt(0), value.setInt(7), null);
+                expected.put(0, 7);
+                for (int i = 0; i < numElements; i++) {
+                    int k = RANDOM.nextInt();
+                    map.put(key.setInt(k), value.setInt(i), null);
+                    expected.put(k, i);
+                    if (i % 3 == 0) {
+                        map.remove(key, value);
+                        expected.remove(k);
+                    }
+                }
+                map.snapshotTo(file.toPath(), 4);
+            }
+            try (OffHeapMapImpl<IntHolder, IntHolder> map = OffHeapMapImpl.loadFrom(
+                    file.toPath(), new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                    IntHolder::new, IntHolder::new, 4)) {
+                assertEquals(expected.size(), map.size());
+                for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), value).getInt());
+                }
+                Map<Integer, Integer> visited = new HashMap<>();
+                map.forEach((k, v) -> visited.put(k.getInt(), v.getInt()));
+                assertEquals(expected, visited);
+                // the loaded map stays fully functional.
+                for (Integer k : expected.keySet()) {
+                    assertEquals(expected.get(k).intValue(),
+                            map.remove(key.setInt(k), value).getInt());
+                }
+                assertEquals(0, map.size());
+            } finally {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotWithDifferentLayout() throws Exception {
+        File directory = Files.createTempDirectory("snapshot").toFile();
+        File file = new File(directory, "map.snapshot");
+        try {
+            try (OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(10, 0.66f,
+                    new IntIntEntrySeDeserializer(), DirectMemoryResource::new, IntHolder::new,
+                    IntHolder::new)) {
+                map.snapshotTo(file.toPath());
+            }
+            OffHeapMapImpl.loadFrom(file.toPath(), new LongLongEntrySeDeserializer(),
+                    DirectMemoryResource::new, LongHolder::new, LongHolder::new);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        for (File file : directory.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.udaysagar2177.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+
+public class JournaledOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testReopen() throws Exception {
+        File directory = Files.createTempDirectory("journaledMap").toFile();
+        Map<Integer, Integer> expected = new HashMap<>();
+        try {
+            for (JournalForcePolicy forcePolicy : JournalForcePolicy.values()) {
+                try (JournaledOffHeapMap<IntHolder, IntHolder> map = open(directory,
+                        forcePolicy)) {
+                    assertMapEquals(expected, map);
+                    modify(map, expected, 20_000);
+                    if (forcePolicy == JournalForcePolicy.PERIODIC) {
+                        map.checkpoint();
+                        assertEquals(12, map.journalSizeInBytes());
+                        modify(map, expected, 20_000);
+                    }
+                }
+            }
+            try (JournaledOffHeapMap<IntHolder, IntHolder> map = open(directory,
+                    JournalForcePolicy.NEVER)) {
+                assertMapEquals(expected, map);
+                map.clear();
+                expected.clear();
+                map.put(new IntHolder().setInt(5), new IntHolder().setInt(6), null);
+                expected.put(5, 6);
+            }
+            try (JournaledOffHeapMap<IntHolder, IntHolder> map = open(directory,
+                    JournalForcePolicy.NEVER)) {
+                assertMapEquals(expected, map);
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testCrashRecovery() throws Exception {
+        File directory = Files.createTempDirectory("journaledMap").toFile();
+        Map<Integer, Integer> expected = new HashMap<>();
+        try {
+            JournaledOffHeapMap<IntHolder, IntHolder> crashedMap = open(directory,
+                    JournalForcePolicy.ALWAYS);
+            modify(crashedMap, expected, 1_000);
+            crashedMap.checkpoint();
+            modify(crashedMap, expected, 1_000);
+            // not closed, as if the process crashed.
+            try (RandomAccessFile journal = new RandomAccessFile(
+                    new File(directory, "map.journal"), "rw")) {
+                // a torn record at the end.
+                journal.seek(journal.length());
+                journal.write(new byte[] {MapJournal.PUT, 1, 2, 3});
+            }
+            try (JournaledOffHeapMap<IntHolder, IntHolder> map = open(directory,
+                    JournalForcePolicy.ALWAYS)) {
+                assertMapEquals(expected, map);
+                modify(map, expected, 100);
+            } finally {
+                crashedMap.close();
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static JournaledOffHeapMap<IntHolder, IntHolder> open(File directory,
+                                                                  JournalForcePolicy policy) {
+        return JournaledOffHeapMap.open(directory, "map", 16, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new, IntHolder::new,
+                IntHolder::new, policy, 5);
+    }
+
+    private static void modify(OffHeapMap<IntHolder, IntHolder> map,
+                               Map<Integer, Integer> expected, int numOperations) {
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        for (int i = 0; i < numOperations; i++) {
+            int k = RANDOM.nextInt(numOperations);
+            if (RANDOM.nextInt(4) == 0) {
+                Integer removed = expected.remove(k);
+                IntHolder result = map.remove(key.setInt(k), value);
+                if (removed == null) {
+                    assertNull(result);
+                } else {
+                    assertEquals(removed.intValue(), result.getInt());
+                }
+            } else {
+                int v = RANDOM.nextInt();
+                map.put(key.setInt(k), value.setInt(v), null);
+                expected.put(k, v);
+            }
+        }
+    }
+
+    private static void assertMapEquals(Map<Integer, Integer> expected,
+                                        OffHeapMap<IntHolder, IntHolder> map) {
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach((k, v) -> actual.put(k.getInt(), v.getInt()));
+        assertEquals(expected, actual);
+    }
+
+    private static void deleteDirectory(File directory) {
+        for (File file : directory.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+    }
+}
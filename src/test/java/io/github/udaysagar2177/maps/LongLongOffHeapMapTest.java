@@ -1,18 +1,27 @@
 package io.github.udaysagar2177.maps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 
 
 import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
 import io.github.udaysagar2177.maps.sedeserializers.LongHolder;
+import io.github.udaysagar2177.maps.sedeserializers.HashStrategy;
 import io.github.udaysagar2177.maps.sedeserializers.LongLongEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.SeededEntrySeDeserializer;
+import io.github.udaysagar2177.maps.utils.MapUtils;
 
 public class LongLongOffHeapMapTest {
 
@@ -114,4 +123,96 @@ public class LongLongOffHeapMapTest {
             map.close();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRehash() throws Exception {
+        int numElements = 100000;
+        OffHeapMapImpl<LongHolder, LongHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                new LongLongEntrySeDeserializer(), DirectMemoryResource::new,
+                LongHolder::new, LongHolder::new);
+        LongHolder key = new LongHolder();
+        LongHolder value = new LongHolder();
+        LongHolder valueFlyweight = new LongHolder();
+        Map<Long, Long> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                long randLong = RANDOM.nextLong();
+                hashMap.put(randLong, randLong * 2);
+                map.put(key.setLong(randLong), value.setLong(randLong * 2), null);
+            }
+            assertEquals(hashMap.size(), map.size());
+            for (Map.Entry<Long, Long> entry : hashMap.entrySet()) {
+                key.setLong(entry.getKey());
+                assertEquals((long) entry.getValue(), map.get(key, valueFlyweight).getLong());
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testPhiMixOfKeysWithEqualLowerBits() {
+        Set<Integer> positions = new HashSet<>();
+        for (long i = 0; i < 1024; i++) {
+            positions.add(MapUtils.phiMix(i << 32) & 1023);
+        }
+        assertTrue(positions.size() > 512);
+    }
+
+    @Test
+    public void testReseedOnLongProbes() throws Exception {
+        int numElements = 100000;
+        // every key collides with the first seed.
+        HashStrategy hashStrategy = (hash, seed) -> seed == 0 ? 0 : MapUtils.fmix64(hash ^ seed);
+        SeededEntrySeDeserializer<LongHolder, LongHolder> entrySeDeserializer =
+                new SeededEntrySeDeserializer<>(new LongLongEntrySeDeserializer(), hashStrategy,
+                        0);
+        OffHeapMapImpl<LongHolder, LongHolder> map = new OffHeapMapImpl<>(numElements, 0.66f,
+                entrySeDeserializer, DirectMemoryResource::new, LongHolder::new, LongHolder::new,
+                RehashMode.ALL_AT_ONCE, ProbingScheme.LINEAR, 64);
+        LongHolder key = new LongHolder();
+        LongHolder value = new LongHolder();
+        LongHolder valueFlyweight = new LongHolder();
+        Map<Long, Long> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                // timestamps in the upper bits, as a sequence no. would be in the lower ones.
+                long k = (long) i << 32;
+                if (k == 0) {
+                    continue;
+                }
+                hashMap.put(k, (long) i);
+                map.put(key.setLong(k), value.setLong(i), null);
+            }
+            assertNotEquals(0, entrySeDeserializer.getSeed());
+            assertEquals(1, map.stats().getRehashCount());
+            assertTrue(map.scanStats().getMaxProbeLength() <= 64);
+            assertEquals(hashMap.size(), map.size());
+            for (Map.Entry<Long, Long> entry : hashMap.entrySet()) {
+                assertEquals((long) entry.getValue(),
+                        map.get(key.setLong(entry.getKey()), valueFlyweight).getLong());
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxProbeLengthWithoutSeed() {
+        new OffHeapMapImpl<>(10, 0.66f, new LongLongEntrySeDeserializer(),
+                DirectMemoryResource::new, LongHolder::new, LongHolder::new,
+                RehashMode.ALL_AT_ONCE, ProbingScheme.LINEAR, 64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenWithSeed() throws Exception {
+        File directory = Files.createTempDirectory("seededMap").toFile();
+        try {
+            OffHeapMapImpl.open(directory, "map", 10, 0.66f,
+                    new SeededEntrySeDeserializer<>(new LongLongEntrySeDeserializer()),
+                    LongHolder::new, LongHolder::new, ProbingScheme.LINEAR);
+        } finally {
+            assertTrue(directory.delete());
+        }
+    }
+}
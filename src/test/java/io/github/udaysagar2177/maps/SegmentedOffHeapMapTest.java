@@ -0,0 +1,134 @@
+package io.github.udaysagar2177.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.GenerationalEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+
+public class SegmentedOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPowerOfTwoSegments() {
+        new SegmentedOffHeapMap<>(10, 0.66f, 3, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerationalEntrySeDeserializer() {
+        new SegmentedOffHeapMap<>(10, 0.66f, 2,
+                new GenerationalEntrySeDeserializer<>(new IntIntEntrySeDeserializer()),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+    }
+
+    @Test
+    public void testPutGetsWithRandomData() throws Exception {
+        int numElements = 100000;
+        SegmentedOffHeapMap<IntHolder, IntHolder> map = new SegmentedOffHeapMap<>(1, 0.66f, 8,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        IntHolder valueFlyweight = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(numElements);
+                key.setInt(randInt);
+                if (RANDOM.nextInt(10) < 2) {
+                    Integer removedValue = hashMap.remove(randInt);
+                    IntHolder removedValueHolder = map.remove(key, valueFlyweight);
+                    if (removedValue == null) {
+                        assertNull(removedValueHolder);
+                    } else {
+                        assertEquals((int) removedValue, removedValueHolder.getInt());
+                    }
+                } else {
+                    Integer previousValue = hashMap.put(randInt, i);
+                    IntHolder previousValueHolder = map.put(key, value.setInt(i), valueFlyweight);
+                    if (previousValue == null) {
+                        assertNull(previousValueHolder);
+                    } else {
+                        assertEquals((int) previousValue, previousValueHolder.getInt());
+                    }
+                }
+            }
+            assertEquals(hashMap.size(), map.size());
+            Map<Integer, Integer> visited = new HashMap<>();
+            map.forEach((k, v) -> assertNull(visited.put(k.getInt(), v.getInt())));
+            assertEquals(hashMap, visited);
+            visited.clear();
+            Cursor<IntHolder, IntHolder> cursor = map.cursor();
+            while (cursor.next()) {
+                assertNull(visited.put(cursor.key().getInt(), cursor.value().getInt()));
+            }
+            assertEquals(hashMap, visited);
+            map.clear();
+            assertEquals(0, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentPutGets() throws Exception {
+        int numThreads = 4;
+        int numElementsPerThread = 100000;
+        SegmentedOffHeapMap<IntHolder, IntHolder> map = new SegmentedOffHeapMap<>(1, 0.66f, 16,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new, RehashMode.INCREMENTAL);
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int firstKey = t * numElementsPerThread;
+                futures.add(executorService.submit(() -> {
+                    IntHolder key = new IntHolder();
+                    IntHolder value = new IntHolder();
+                    IntHolder valueFlyweight = new IntHolder();
+                    for (int i = firstKey; i < firstKey + numElementsPerThread; i++) {
+                        assertNull(map.put(key.setInt(i), value.setInt(-i), valueFlyweight));
+                        assertEquals(-i, map.get(key, valueFlyweight).getInt());
+                        if (i % 2 == 0) {
+                            assertEquals(-i, map.remove(key, valueFlyweight).getInt());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(numThreads * numElementsPerThread / 2, map.size());
+            IntHolder key = new IntHolder();
+            IntHolder valueFlyweight = new IntHolder();
+            for (int i = 0; i < numThreads * numElementsPerThread; i++) {
+                IntHolder value = map.get(key.setInt(i), valueFlyweight);
+                if (i % 2 == 0) {
+                    assertNull(value);
+                } else {
+                    assertEquals(-i, value.getInt());
+                }
+            }
+        } finally {
+            executorService.shutdown();
+            map.close();
+        }
+    }
+}
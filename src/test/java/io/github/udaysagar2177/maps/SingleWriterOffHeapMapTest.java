@@ -0,0 +1,96 @@
+package io.github.udaysagar2177.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.LongHolder;
+import io.github.udaysagar2177.maps.sedeserializers.LongLongEntrySeDeserializer;
+
+public class SingleWriterOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testConcurrentReadsWithRehash() throws Exception {
+        testConcurrentReads(RehashMode.ALL_AT_ONCE);
+    }
+
+    @Test
+    public void testConcurrentReadsWithIncrementalRehash() throws Exception {
+        testConcurrentReads(RehashMode.INCREMENTAL);
+    }
+
+    @Test
+    public void testConcurrentReadsWithInPlaceRehash() throws Exception {
+        // replaced tables must stay readable, so the map falls back to a full rehash.
+        testConcurrentReads(RehashMode.IN_PLACE);
+    }
+
+    private void testConcurrentReads(RehashMode rehashMode) throws Exception {
+        int numReaders = 3;
+        int numElements = 200000;
+        SingleWriterOffHeapMap<LongHolder, LongHolder> map = new SingleWriterOffHeapMap<>(1,
+                0.66f, new LongLongEntrySeDeserializer(), DirectMemoryResource::new,
+                LongHolder::new, LongHolder::new, rehashMode);
+        AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService executorService = Executors.newFixedThreadPool(numReaders);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numReaders; t++) {
+                futures.add(executorService.submit(() -> {
+                    LongHolder key = new LongHolder();
+                    LongHolder valueFlyweight = new LongHolder();
+                    while (!done.get()) {
+                        long k = ThreadLocalRandom.current().nextInt(numElements);
+                        LongHolder value = map.get(key.setLong(k), valueFlyweight);
+                        // every value ever written for a key is derived from the key.
+                        if (value != null) {
+                            assertEquals(0, (value.getLong() - k) % numElements);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            LongHolder key = new LongHolder();
+            LongHolder value = new LongHolder();
+            LongHolder valueFlyweight = new LongHolder();
+            for (int i = 0; i < numElements; i++) {
+                map.put(key.setLong(i), value.setLong(i + (long) numElements * i), null);
+                if (RANDOM.nextInt(10) < 2) {
+                    key.setLong(RANDOM.nextInt(i + 1));
+                    map.remove(key, valueFlyweight);
+                }
+            }
+            done.set(true);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertNull(map.get(key.setLong(numElements), valueFlyweight));
+            long size = 0;
+            for (int i = 0; i < numElements; i++) {
+                if (map.get(key.setLong(i), valueFlyweight) != null) {
+                    assertEquals(i + (long) numElements * i, valueFlyweight.getLong());
+                    size++;
+                }
+            }
+            assertEquals(size, map.sizeAsLong());
+        } finally {
+            done.set(true);
+            executorService.shutdown();
+            map.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.udaysagar2177.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+import io.github.udaysagar2177.maps.sedeserializers.ByteArrByteArrEntrySeDeserializer;
+import io.github.udaysagar2177.maps.sedeserializers.ByteArrHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+
+public class SwissOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyMapCreation() {
+        new SwissOffHeapMap<>(0, 0.66f, new IntIntEntrySeDeserializer(),
+                DirectMemoryResource::new, IntHolder::new, IntHolder::new);
+    }
+
+    @Test
+    public void testFreeKeyValue() throws Exception {
+        SwissOffHeapMap<IntHolder, IntHolder> map = new SwissOffHeapMap<>(10, 0.66f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder putValue = new IntHolder();
+        IntHolder getValue = new IntHolder();
+        try {
+            key.setInt(0);
+            assertNull(map.put(key, putValue.setInt(1), getValue));
+            assertEquals(1, map.get(key, getValue).getInt());
+            assertEquals(1, map.put(key, putValue.setInt(11), getValue).getInt());
+            assertEquals(1, map.size());
+            assertEquals(11, map.remove(key, getValue).getInt());
+            assertNull(map.remove(key, getValue));
+            assertEquals(0, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testPutGetsWithRandomData() throws Exception {
+        int numElements = 100000;
+        int keyLength = 24;
+        int valueLength = 8;
+        SwissOffHeapMap<ByteArrHolder, ByteArrHolder> map = new SwissOffHeapMap<>(1, 0.875f,
+                new ByteArrByteArrEntrySeDeserializer(keyLength, valueLength),
+                DirectMemoryResource::new, () -> new ByteArrHolder(keyLength),
+                () -> new ByteArrHolder(valueLength));
+        ByteArrHolder key = new ByteArrHolder(keyLength);
+        ByteArrHolder value = new ByteArrHolder(valueLength);
+        ByteArrHolder valueFlyweight = new ByteArrHolder(valueLength);
+        byte[] keyBytes = new byte[keyLength];
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int k = 0; k < 3; k++) {
+                map.clear();
+                hashMap.clear();
+                for (int i = 0; i < numElements; i++) {
+                    // few distinct keys, so that removes often hit present keys.
+                    int randInt = RANDOM.nextInt(numElements / 2);
+                    key.setBytes(toKeyBytes(keyBytes, randInt));
+                    if (RANDOM.nextInt(10) < 4) {
+                        Integer removedValue = hashMap.remove(randInt);
+                        ByteArrHolder removedValueHolder = map.remove(key, valueFlyweight);
+                        if (removedValue == null) {
+                            assertNull(removedValueHolder);
+                        } else {
+                            assertEquals((long) removedValue, toLong(removedValueHolder));
+                        }
+                    } else {
+                        Integer previousValue = hashMap.put(randInt, i);
+                        value.setBytes(ByteBuffer.allocate(valueLength).putLong(i).array());
+                        ByteArrHolder previousValueHolder = map.put(key, value, valueFlyweight);
+                        if (previousValue == null) {
+                            assertNull(previousValueHolder);
+                        } else {
+                            assertEquals((long) previousValue, toLong(previousValueHolder));
+                        }
+                    }
+                    assertEquals(hashMap.size(), map.size());
+                }
+                for (int i = 0; i < numElements / 2; i++) {
+                    Integer expected = hashMap.get(i);
+                    ByteArrHolder actual = map.get(key.setBytes(toKeyBytes(keyBytes, i)),
+                            valueFlyweight);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertEquals((long) expected, toLong(actual));
+                    }
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        int numElements = 10000;
+        SwissOffHeapMap<IntHolder, IntHolder> map = new SwissOffHeapMap<>(1, 0.875f,
+                new IntIntEntrySeDeserializer(), DirectMemoryResource::new,
+                IntHolder::new, IntHolder::new);
+        IntHolder key = new IntHolder();
+        IntHolder value = new IntHolder();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(2 * numElements);
+                map.put(key.setInt(randInt), value.setInt(i), null);
+                hashMap.put(randInt, i);
+            }
+            Map<Integer, Integer> visited = new HashMap<>();
+            Cursor<IntHolder, IntHolder> cursor = map.cursor();
+            while (cursor.next()) {
+                assertNull(visited.put(cursor.key().getInt(), cursor.value().getInt()));
+                if (cursor.key().getInt() % 2 == 0) {
+                    cursor.remove();
+                }
+            }
+            assertEquals(hashMap, visited);
+            hashMap.keySet().removeIf(k -> k % 2 == 0);
+            visited.clear();
+            map.forEach((k, v) -> assertNull(visited.put(k.getInt(), v.getInt())));
+            assertEquals(hashMap, visited);
+            map.clear();
+            assertFalse(map.cursor().next());
+            assertEquals(0, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    private static byte[] toKeyBytes(byte[] keyBytes, int i) {
+        byte[] prefix = ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
+        // keys share a long common prefix to make key comparisons expensive.
+        for (int j = 0; j < keyBytes.length - prefix.length; j++) {
+            keyBytes[j] = 7;
+        }
+        System.arraycopy(prefix, 0, keyBytes, keyBytes.length - prefix.length, prefix.length);
+        return keyBytes;
+    }
+
+    private static long toLong(ByteArrHolder holder) {
+        return ByteBuffer.wrap(holder.getBytes()).getLong();
+    }
+}
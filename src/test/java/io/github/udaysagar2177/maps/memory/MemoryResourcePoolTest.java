@@ -0,0 +1,117 @@
+package io.github.udaysagar2177.maps.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import net.openhft.chronicle.core.OS;
+
+public class MemoryResourcePoolTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testRecycledResourcesAreZeroed() throws Exception {
+        try (MemoryResourcePool pool = new MemoryResourcePool(DirectMemoryResource::new, 1 << 20)) {
+            MemoryResource resource = pool.acquire(1000);
+            assertEquals(1000, resource.capacityInBytes());
+            long address = resource.getAddress();
+            OS.memory().setMemory(address, 1000, (byte) 7);
+            resource.close();
+            assertEquals(1024, pool.retainedBytes());
+
+            // same size class
+            resource = pool.acquire(600);
+            assertEquals(address, resource.getAddress());
+            assertEquals(0, pool.retainedBytes());
+            for (int i = 0; i < 600; i++) {
+                assertEquals(0, OS.memory().readByte(address + i));
+            }
+            resource.close();
+            assertEquals(1, pool.numHits());
+            assertEquals(1, pool.numMisses());
+        }
+    }
+
+    @Test
+    public void testBackgroundZeroing() throws Exception {
+        try (MemoryResourcePool pool = new MemoryResourcePool(DirectMemoryResource::new, 1 << 20,
+                Runnable::run)) {
+            MemoryResource resource = pool.acquire(4096);
+            long address = resource.getAddress();
+            OS.memory().setMemory(address, 4096, (byte) 7);
+            resource.close();
+            resource = pool.acquire(4096);
+            assertEquals(address, resource.getAddress());
+            for (int i = 0; i < 4096; i++) {
+                assertEquals(0, OS.memory().readByte(address + i));
+            }
+            resource.close();
+        }
+    }
+
+    @Test
+    public void testRetainedBytesBudget() throws Exception {
+        try (MemoryResourcePool pool = new MemoryResourcePool(DirectMemoryResource::new, 2048)) {
+            MemoryResource first = pool.acquire(1024);
+            MemoryResource second = pool.acquire(1024);
+            MemoryResource third = pool.acquire(1024);
+            first.close();
+            second.close();
+            third.close();
+            assertEquals(2048, pool.retainedBytes());
+            // closing twice doesn't return the resource twice
+            third.close();
+            assertEquals(2048, pool.retainedBytes());
+            // a different size class isn't served from the retained resources
+            MemoryResource other = pool.acquire(4096);
+            assertNotEquals(first.getAddress(), other.getAddress());
+            assertEquals(2048, pool.retainedBytes());
+            other.close();
+        }
+    }
+
+    @Test
+    public void testMapsWithPooledResources() throws Exception {
+        try (MemoryResourcePool pool = new MemoryResourcePool(DirectMemoryResource::new,
+                1 << 24)) {
+            long numMissesOfFirstRound = 0;
+            for (int round = 0; round < 5; round++) {
+                Map<Integer, Integer> expectedMap = new HashMap<>();
+                OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                        new IntIntEntrySeDeserializer(), pool::acquire, IntHolder::new,
+                        IntHolder::new);
+                try {
+                    IntHolder key = new IntHolder();
+                    IntHolder value = new IntHolder();
+                    for (int i = 0; i < 10_000; i++) {
+                        int k = RANDOM.nextInt(5_000);
+                        expectedMap.put(k, i);
+                        map.put(key.setInt(k), value.setInt(i), null);
+                    }
+                    assertEquals(expectedMap.size(), map.size());
+                    for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                        assertEquals(entry.getValue().intValue(),
+                                map.get(key.setInt(entry.getKey()), value).getInt());
+                    }
+                } finally {
+                    map.close();
+                }
+                if (round == 0) {
+                    numMissesOfFirstRound = pool.numMisses();
+                }
+            }
+            // the later rounds only reuse the tables of the first round.
+            assertEquals(numMissesOfFirstRound, pool.numMisses());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.udaysagar2177.maps.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.ProbingScheme;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+
+public class MmapFlushSchedulerTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        MmapFlushScheduler flushScheduler = new MmapFlushScheduler(1, Long.MAX_VALUE);
+        try {
+            MemoryResource resource = flushScheduler.memoryResourceFactory("/tmp", "flushTest")
+                    .apply(1 << 20);
+            try {
+                assertEquals(1, flushScheduler.getNumMemoryResources());
+                long deadline = System.currentTimeMillis() + 10_000;
+                // flushes may have run before the resource was registered.
+                while (flushScheduler.getForcedBytes() < 3 << 20
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertTrue(flushScheduler.getForcedBytes() >= 3 << 20);
+                assertTrue(flushScheduler.getNumFlushes() >= 3);
+                assertTrue(flushScheduler.getMaxFlushTimeNanos() > 0);
+            } finally {
+                resource.close();
+            }
+        } finally {
+            flushScheduler.close();
+        }
+    }
+
+    @Test
+    public void testFlushOnMaxDirtyBytes() throws Exception {
+        MmapFlushScheduler flushScheduler = new MmapFlushScheduler(Long.MAX_VALUE, 1000);
+        try {
+            MmapMemoryResource resource = flushScheduler.register(
+                    new MmapMemoryResource("/tmp", "flushTest", 1 << 20));
+            resource.close();
+            flushScheduler.recordWrite(1000);
+            assertEquals(0, flushScheduler.getNumFlushes());
+            assertEquals(1000, flushScheduler.getDirtyBytes());
+            flushScheduler.recordWrite(1);
+            assertEquals(1, flushScheduler.getNumFlushes());
+            assertEquals(0, flushScheduler.getDirtyBytes());
+            assertEquals(1001, flushScheduler.getFlushedDirtyBytes());
+            // closed resources are dropped by the next flush.
+            assertEquals(0, flushScheduler.getNumMemoryResources());
+        } finally {
+            flushScheduler.close();
+        }
+    }
+
+    @Test
+    public void testPersistentMapWithFlushScheduler() throws Exception {
+        File directory = Files.createTempDirectory("flushScheduler").toFile();
+        MmapFlushScheduler flushScheduler = new MmapFlushScheduler(Long.MAX_VALUE, 1 << 16);
+        try {
+            Map<Integer, Integer> expectedMap = new HashMap<>();
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            OffHeapMapImpl<IntHolder, IntHolder> map = OffHeapMapImpl.open(directory, "map", 1,
+                    0.66f, new IntIntEntrySeDeserializer(), IntHolder::new, IntHolder::new,
+                    ProbingScheme.LINEAR, flushScheduler);
+            try {
+                for (int i = 0; i < 100_000; i++) {
+                    int k = RANDOM.nextInt(200_000);
+                    expectedMap.put(k, i);
+                    map.put(key.setInt(k), value.setInt(i), null);
+                }
+                assertTrue(flushScheduler.getNumFlushes() > 0);
+                map.flush();
+            } finally {
+                map.close();
+            }
+            flushScheduler.flush();
+            // the files of the replaced Hash Tables are unregistered once closed.
+            assertEquals(0, flushScheduler.getNumMemoryResources());
+
+            map = OffHeapMapImpl.open(directory, "map", 1, 0.66f, new IntIntEntrySeDeserializer(),
+                    IntHolder::new, IntHolder::new, ProbingScheme.LINEAR, flushScheduler);
+            try {
+                assertEquals(1, flushScheduler.getNumMemoryResources());
+                assertEquals(expectedMap.size(), map.size());
+                for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), value).getInt());
+                }
+            } finally {
+                map.close();
+            }
+        } finally {
+            flushScheduler.close();
+            for (File file : directory.listFiles()) {
+                assertTrue(file.delete());
+            }
+            assertTrue(directory.delete());
+        }
+    }
+}
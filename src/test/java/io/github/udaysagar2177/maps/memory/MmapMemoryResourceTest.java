@@ -0,0 +1,86 @@
+package io.github.udaysagar2177.maps.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import net.openhft.chronicle.core.OS;
+
+public class MmapMemoryResourceTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testPreallocateAndPrefault() throws Exception {
+        int capacityInBytes = (1 << 22) + 100;
+        MmapMemoryResource resource = new MmapMemoryResource("/tmp", "mmapTest", capacityInBytes,
+                true, true, null);
+        try {
+            assertTrue(resource.whenPrefaulted().isDone());
+            long address = resource.getAddress();
+            for (int i = 0; i < capacityInBytes - 7; i += 1000) {
+                assertEquals(0, OS.memory().readLong(address + i));
+            }
+        } finally {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void testBackgroundPrefault() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Map<Integer, Integer> expectedMap = new HashMap<>();
+            // puts run concurrently with the prefaulting of the same pages.
+            OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1_000_000, 0.66f,
+                    new IntIntEntrySeDeserializer(),
+                    (capacityInBytes) -> new MmapMemoryResource("/tmp", "mmapTest",
+                            capacityInBytes, false, true, executor),
+                    IntHolder::new, IntHolder::new);
+            try {
+                IntHolder key = new IntHolder();
+                IntHolder value = new IntHolder();
+                for (int i = 0; i < 500_000; i++) {
+                    int k = RANDOM.nextInt();
+                    expectedMap.put(k, i);
+                    map.put(key.setInt(k), value.setInt(i), null);
+                }
+                for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                    assertEquals(entry.getValue().intValue(),
+                            map.get(key.setInt(entry.getKey()), value).getInt());
+                }
+            } finally {
+                map.close();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testCloseBeforePrefault() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MmapMemoryResource resource = new MmapMemoryResource("/tmp", "mmapTest", 1 << 26,
+                    false, true, executor);
+            resource.close();
+            resource.whenPrefaulted().get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
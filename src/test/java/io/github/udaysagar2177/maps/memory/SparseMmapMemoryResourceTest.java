@@ -0,0 +1,63 @@
+package io.github.udaysagar2177.maps.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.OffHeapMapImpl;
+import io.github.udaysagar2177.maps.sedeserializers.IntHolder;
+import io.github.udaysagar2177.maps.sedeserializers.IntIntEntrySeDeserializer;
+import net.openhft.chronicle.core.OS;
+
+public class SparseMmapMemoryResourceTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testZeroedAndWritable() {
+        int capacityInBytes = 1 << 24;
+        SparseMmapMemoryResource resource = new SparseMmapMemoryResource(capacityInBytes);
+        try {
+            long address = resource.getAddress();
+            assertEquals(capacityInBytes, resource.capacityInBytes());
+            for (int i = 0; i < capacityInBytes; i += 4096) {
+                assertEquals(0, OS.memory().readLong(address + i));
+                OS.memory().writeLong(address + i, i);
+            }
+            for (int i = 0; i < capacityInBytes; i += 4096) {
+                assertEquals(i, OS.memory().readLong(address + i));
+            }
+        } finally {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void testMap() throws Exception {
+        Map<Integer, Integer> expectedMap = new HashMap<>();
+        OffHeapMapImpl<IntHolder, IntHolder> map = new OffHeapMapImpl<>(1, 0.66f,
+                new IntIntEntrySeDeserializer(), SparseMmapMemoryResource::new, IntHolder::new,
+                IntHolder::new);
+        try {
+            IntHolder key = new IntHolder();
+            IntHolder value = new IntHolder();
+            for (int i = 0; i < 100_000; i++) {
+                int k = RANDOM.nextInt();
+                expectedMap.put(k, i);
+                map.put(key.setInt(k), value.setInt(i), null);
+            }
+            assertEquals(expectedMap.size(), map.size());
+            for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                assertEquals(entry.getValue().intValue(),
+                        map.get(key.setInt(entry.getKey()), value).getInt());
+            }
+        } finally {
+            map.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.udaysagar2177.maps.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+
+public class IntIntOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyMapCreation() {
+        new IntIntOffHeapMap(0, 0.66f, DirectMemoryResource::new);
+    }
+
+    @Test
+    public void testSingleElementMap() throws Exception {
+        IntIntOffHeapMap map = new IntIntOffHeapMap(1, 0.66f, DirectMemoryResource::new, -1);
+        try {
+            // test put and get
+            assertEquals(-1, map.put(-1, 2));
+            assertEquals(2, map.get(-1));
+            assertTrue(map.containsKey(-1));
+            assertEquals(1, map.size());
+            // test remove
+            assertEquals(2, map.remove(-1));
+            assertEquals(-1, map.remove(-1));
+            assertFalse(map.containsKey(-1));
+            assertEquals(0, map.size());
+            // test clear
+            map.put(5, 10);
+            map.clear();
+            assertEquals(0, map.size());
+            assertEquals(7, map.get(5, 7));
+            // test additional puts
+            int numElements = 10;
+            for (int i = 0; i < numElements; i++) {
+                assertEquals(-1, map.put(i, i * 2));
+                assertEquals(i * 2, map.get(i));
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testRehashOfFullTable() throws Exception {
+        // 2 slots and a threshold of 1, so the second put rehashes a table without an empty slot.
+        IntIntOffHeapMap map = new IntIntOffHeapMap(1, 0.66f, DirectMemoryResource::new, -1);
+        try {
+            assertEquals(-1, map.put(1, 10));
+            assertEquals(-1, map.put(2, 20));
+            assertEquals(10, map.get(1));
+            assertEquals(20, map.get(2));
+            assertEquals(2, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testFreeKeyValue() throws Exception {
+        IntIntOffHeapMap map = new IntIntOffHeapMap(10, 0.66f, DirectMemoryResource::new);
+        try {
+            assertEquals(0, map.put(0, 1));
+            assertEquals(1, map.get(0));
+            assertEquals(1, map.put(0, 11));
+            assertEquals(11, map.get(0));
+            assertEquals(1, map.size());
+            assertEquals(11, map.remove(0));
+            assertFalse(map.containsKey(0));
+            assertEquals(-5, map.get(0, -5));
+            assertEquals(0, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testPutGetsWithRandomData() throws Exception {
+        int numElements = 100000;
+        IntIntOffHeapMap map = new IntIntOffHeapMap(1, 0.66f, DirectMemoryResource::new,
+                Integer.MIN_VALUE);
+        int removeKey = 0;
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            for (int k = 0; k < 5; k++) {
+                map.clear();
+                hashMap.clear();
+                for (int i = 0; i < numElements; i++) {
+                    int randInt = RANDOM.nextInt(100000000);
+                    if (RANDOM.nextInt(10) < 2) {
+                        Integer removedValue = hashMap.remove(removeKey);
+                        int removedMapValue = map.remove(removeKey);
+                        assertEquals(removedValue == null ? Integer.MIN_VALUE : removedValue,
+                                removedMapValue);
+                        removeKey = randInt; // copy next key for deletion next time
+                    }
+                    Integer previousValue = hashMap.put(randInt, randInt * 2);
+                    int previousMapValue = map.put(randInt, randInt * 2);
+                    assertEquals(previousValue == null ? Integer.MIN_VALUE : previousValue,
+                            previousMapValue);
+                }
+                assertEquals(hashMap.size(), map.size());
+                for (Map.Entry<Integer, Integer> entry : hashMap.entrySet()) {
+                    assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testGetAll() throws Exception {
+        int numElements = 100000;
+        IntIntOffHeapMap map = new IntIntOffHeapMap(numElements, 0.66f, DirectMemoryResource::new,
+                Integer.MIN_VALUE);
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        try {
+            map.put(0, 1);
+            hashMap.put(0, 1);
+            for (int i = 0; i < numElements; i++) {
+                int randInt = RANDOM.nextInt(2 * numElements);
+                map.put(randInt, i);
+                hashMap.put(randInt, i);
+            }
+            // 1003 is not a multiple of the group size, which covers the last partial group.
+            int[] keys = new int[1003];
+            int[] values = new int[keys.length];
+            for (int k = 0; k < 10; k++) {
+                int expectedFound = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = RANDOM.nextInt(2 * numElements);
+                    expectedFound += hashMap.containsKey(keys[i]) ? 1 : 0;
+                }
+                assertEquals(expectedFound, map.getAll(keys, values));
+                for (int i = 0; i < keys.length; i++) {
+                    assertEquals((int) hashMap.getOrDefault(keys[i], Integer.MIN_VALUE),
+                            values[i]);
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.udaysagar2177.maps.varlen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+import io.github.udaysagar2177.maps.memory.DirectMemoryResource;
+
+public class VarLenOffHeapMapTest {
+
+    private static final Random RANDOM = new Random();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyMapCreation() {
+        new VarLenOffHeapMap(0, 0.66f, DirectMemoryResource::new);
+    }
+
+    @Test
+    public void testSingleElementMap() throws Exception {
+        VarLenOffHeapMap map = new VarLenOffHeapMap(1, 0.66f, DirectMemoryResource::new);
+        try {
+            byte[] key = "https://example.com/a".getBytes();
+            // test put and get
+            assertTrue(map.put(key, "{}".getBytes()));
+            assertArrayEquals("{}".getBytes(), map.get(key));
+            assertTrue(map.containsKey(key));
+            assertEquals(1, map.size());
+            // test overrides with same and different lengths
+            assertFalse(map.put(key, "[]".getBytes()));
+            assertArrayEquals("[]".getBytes(), map.get(key));
+            assertFalse(map.put(key, "{\"a\": [1, 2, 3]}".getBytes()));
+            assertArrayEquals("{\"a\": [1, 2, 3]}".getBytes(), map.get(key));
+            assertEquals(1, map.size());
+            // test empty key and value
+            assertTrue(map.put(new byte[0], new byte[0]));
+            assertArrayEquals(new byte[0], map.get(new byte[0]));
+            // test remove
+            assertTrue(map.remove(key));
+            assertFalse(map.remove(key));
+            assertNull(map.get(key));
+            assertEquals(1, map.size());
+            // test clear
+            map.clear();
+            assertEquals(0, map.size());
+            assertEquals(0, map.allocatedArenaBytes());
+            assertFalse(map.containsKey(new byte[0]));
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testByteBuffers() throws Exception {
+        VarLenOffHeapMap map = new VarLenOffHeapMap(10, 0.66f, DirectMemoryResource::new);
+        try {
+            byte[] bytes = "__key__value__".getBytes();
+            ByteBuffer heapKey = ByteBuffer.wrap(bytes, 2, 3).slice();
+            ByteBuffer directValue = ByteBuffer.allocateDirect(16);
+            directValue.put("value".getBytes());
+            directValue.flip();
+            assertTrue(map.put(heapKey, directValue));
+            assertEquals(0, heapKey.position());
+            assertEquals(0, directValue.position());
+
+            // the same key through a byte[] slice, a direct buffer and a read-only buffer
+            assertArrayEquals("value".getBytes(), map.get(bytes, 2, 3));
+            ByteBuffer directKey = ByteBuffer.allocateDirect(3);
+            directKey.put("key".getBytes());
+            directKey.flip();
+            assertTrue(map.containsKey(directKey));
+            assertTrue(map.containsKey(ByteBuffer.wrap("key".getBytes()).asReadOnlyBuffer()));
+
+            ByteBuffer usingValue = ByteBuffer.allocate(10);
+            usingValue.put((byte) 1);
+            assertEquals(5, map.get(directKey, usingValue));
+            assertEquals(6, usingValue.position());
+            usingValue.flip();
+            usingValue.get();
+            byte[] value = new byte[5];
+            usingValue.get(value);
+            assertArrayEquals("value".getBytes(), value);
+            assertEquals(-1, map.get(ByteBuffer.wrap("value".getBytes()), usingValue));
+
+            assertTrue(map.remove(directKey));
+            assertEquals(0, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        int slabSize = 1024;
+        VarLenOffHeapMap map = new VarLenOffHeapMap(100, 0.66f, slabSize, 0.5f,
+                DirectMemoryResource::new);
+        try {
+            byte[] key = new byte[8];
+            for (int i = 0; i < 1000; i++) {
+                // every put replaces the record with one of a different length
+                map.put(key, new byte[i % 2 == 0 ? 16 : 64]);
+                assertTrue(map.deadArenaBytes() <= map.allocatedArenaBytes() / 2 + slabSize);
+            }
+            assertEquals(64, map.get(key).length);
+            map.compact();
+            assertEquals(0, map.deadArenaBytes());
+            assertEquals(8 + 8 + 64, map.allocatedArenaBytes());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        int numOperations = 200_000;
+        Map<ByteBuffer, byte[]> expectedMap = new HashMap<>();
+        VarLenOffHeapMap map = new VarLenOffHeapMap(16, 0.66f, 4096, 0.5f,
+                DirectMemoryResource::new);
+        try {
+            for (int i = 0; i < numOperations; i++) {
+                byte[] key = randomBytes(1 + RANDOM.nextInt(3), 20);
+                int operation = RANDOM.nextInt(10);
+                if (operation < 5) {
+                    byte[] value = randomBytes(RANDOM.nextInt(100), 128);
+                    assertEquals(expectedMap.put(ByteBuffer.wrap(key), value) == null,
+                            map.put(key, value));
+                } else if (operation < 8) {
+                    assertArrayEquals(expectedMap.get(ByteBuffer.wrap(key)), map.get(key));
+                } else {
+                    assertEquals(expectedMap.remove(ByteBuffer.wrap(key)) != null,
+                            map.remove(key));
+                }
+                assertEquals(expectedMap.size(), map.size());
+            }
+            for (Map.Entry<ByteBuffer, byte[]> entry : expectedMap.entrySet()) {
+                assertArrayEquals(entry.getValue(), map.get(entry.getKey().array()));
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    private static byte[] randomBytes(int maxLength, int bound) {
+        byte[] bytes = new byte[RANDOM.nextInt(maxLength + 1)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) RANDOM.nextInt(bound);
+        }
+        return bytes;
+    }
+}